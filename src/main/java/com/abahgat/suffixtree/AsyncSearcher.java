@@ -0,0 +1,177 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.util.Collection;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs the queries of a GeneralizedSuffixTree on an Executor, so that the calling thread
+ * does not block while large subtrees are collected.
+ *
+ * The futures returned by this class support cancellation: cancelling a future raises a flag that
+ * the traversal of the tree checks periodically, so an abandoned query stops consuming CPU shortly
+ * after, instead of running to completion. A query that is cancelled before it starts is never run.
+ *
+ * As for the synchronous methods, queries must not run concurrently with put: feed the tree
+ * through an IngestPipeline (and query it through IngestPipeline.read) if both are needed.
+ *
+ * <pre>
+ * AsyncSearcher searcher = new AsyncSearcher(tree, Executors.newFixedThreadPool(4));
+ * CompletableFuture&lt;Collection&lt;Integer&gt;&gt; results = searcher.search("ca");
+ * ...
+ * results.cancel(true);
+ * </pre>
+ */
+public class AsyncSearcher {
+
+    private final GeneralizedSuffixTree tree;
+    private final Executor executor;
+
+    /**
+     * @param tree the tree to search
+     * @param executor the executor the queries run on
+     */
+    public AsyncSearcher(GeneralizedSuffixTree tree, Executor executor) {
+        this.tree = tree;
+        this.executor = executor;
+    }
+
+    /**
+     * @see GeneralizedSuffixTree#search(String)
+     */
+    public CompletableFuture<Collection<Integer>> search(final String word) {
+        return search(word, -1);
+    }
+
+    /**
+     * @see GeneralizedSuffixTree#search(String, int)
+     */
+    public CompletableFuture<Collection<Integer>> search(final String word, final int results) {
+        return submit(new Task<Collection<Integer>>() {
+            @Override
+            Collection<Integer> run() {
+                return tree.search(word, results);
+            }
+        });
+    }
+
+    /**
+     * @see GeneralizedSuffixTree#startsWith(String)
+     */
+    public CompletableFuture<Collection<Integer>> startsWith(final String word) {
+        return submit(new Task<Collection<Integer>>() {
+            @Override
+            Collection<Integer> run() {
+                return tree.startsWith(word);
+            }
+        });
+    }
+
+    /**
+     * @see GeneralizedSuffixTree#endsWith(String)
+     */
+    public CompletableFuture<Collection<Integer>> endsWith(final String word) {
+        return submit(new Task<Collection<Integer>>() {
+            @Override
+            Collection<Integer> run() {
+                return tree.endsWith(word);
+            }
+        });
+    }
+
+    /**
+     * @see GeneralizedSuffixTree#searchWord(String)
+     */
+    public CompletableFuture<Collection<Integer>> searchWord(final String word) {
+        return submit(new Task<Collection<Integer>>() {
+            @Override
+            Collection<Integer> run() {
+                return tree.searchWord(word);
+            }
+        });
+    }
+
+    /**
+     * @see GeneralizedSuffixTree#searchWithCount(String, int)
+     */
+    public CompletableFuture<GeneralizedSuffixTree.ResultInfo> searchWithCount(final String word, final int to) {
+        return submit(new Task<GeneralizedSuffixTree.ResultInfo>() {
+            @Override
+            GeneralizedSuffixTree.ResultInfo run() {
+                return tree.searchWithCount(word, to);
+            }
+        });
+    }
+
+    /**
+     * @see GeneralizedSuffixTree#query(Query)
+     */
+    public CompletableFuture<Collection<Integer>> query(final Query query) {
+        return submit(new Task<Collection<Integer>>() {
+            @Override
+            Collection<Integer> run() {
+                return tree.query(query);
+            }
+        });
+    }
+
+    private <T> CompletableFuture<T> submit(final Task<T> task) {
+        final CancellableFuture<T> future = new CancellableFuture<T>();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (future.isDone()) {
+                    return;
+                }
+                future.cancellation.install();
+                try {
+                    future.complete(task.run());
+                } catch (CancellationException e) {
+                    // the flag was raised while the query was running: make sure the future
+                    // completes, even if the flag was not raised by cancel
+                    future.cancel(false);
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                } finally {
+                    Cancellation.uninstall();
+                }
+            }
+        });
+        return future;
+    }
+
+    private abstract static class Task<T> {
+
+        abstract T run();
+    }
+
+    /**
+     * A future that raises the cancellation flag of its query when it is cancelled
+     */
+    private static final class CancellableFuture<T> extends CompletableFuture<T> {
+
+        private final Cancellation cancellation = new Cancellation();
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            cancellation.cancel();
+            return super.cancel(mayInterruptIfRunning);
+        }
+    }
+}
@@ -0,0 +1,381 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Loads newline-delimited files into suffix trees, parsing them on several threads.
+ *
+ * The file is divided in segments of (about) the same size; every segment is memory mapped and
+ * parsed by a worker thread, that splits it into lines and normalizes them in place, at the byte
+ * level. A line belongs to the segment it starts in, so workers only need to look past the end of
+ * their segment to complete its last line: they map a bounded overrun past the segment, and map
+ * a larger one only when a line does not fit in it. Lines are never turned into Strings: they are passed to
+ * GeneralizedSuffixTree.put as ranges of the segment buffer (see ByteSequence).
+ *
+ * The i-th line of the file (counting from 0) is added with index <tt>firstIndex + i</tt>.
+ * Empty lines are skipped, but still consume their index, so indexes are line numbers.
+ *
+ * Lines can either go to a single tree, in which case puts are applied in file order by the calling
+ * thread while the workers parse the following segments, or to several shards built in parallel,
+ * each receiving a contiguous range of segments.
+ */
+public class BulkLoader {
+
+    /**
+     * Rewrites a line in place before it is added to the tree
+     */
+    public interface Normalizer {
+
+        /**
+         * Normalizes the line stored in the given range of the buffer.
+         *
+         * @return the length of the normalized line, which must not exceed <tt>length</tt>
+         */
+        int normalize(byte[] buffer, int offset, int length);
+    }
+
+    /**
+     * Removes the carriage return of lines terminated by CRLF
+     */
+    public static final Normalizer TRIM_CR = new Normalizer() {
+        @Override
+        public int normalize(byte[] buffer, int offset, int length) {
+            return length > 0 && buffer[offset + length - 1] == '\r' ? length - 1 : length;
+        }
+    };
+
+    /**
+     * Removes the carriage return of lines terminated by CRLF and turns ASCII letters to lower case
+     */
+    public static final Normalizer ASCII_LOWER_CASE = new Normalizer() {
+        @Override
+        public int normalize(byte[] buffer, int offset, int length) {
+            length = TRIM_CR.normalize(buffer, offset, length);
+            for (int i = offset; i < offset + length; i++) {
+                byte b = buffer[i];
+                if (b >= 'A' && b <= 'Z') {
+                    buffer[i] = (byte) (b + ('a' - 'A'));
+                }
+            }
+            return length;
+        }
+    };
+
+    /**
+     * The number of bytes mapped past the end of a segment, to complete its last line; doubled
+     * as long as the line does not fit
+     */
+    private static final long MAP_OVERRUN = 64 << 10;
+
+    private final int parallelism;
+    private final int segmentSize;
+    private final Normalizer normalizer;
+
+    /**
+     * Creates a loader using all the available processors, 64MB segments and the TRIM_CR normalizer
+     */
+    public BulkLoader() {
+        this(Runtime.getRuntime().availableProcessors(), 64 << 20, TRIM_CR);
+    }
+
+    /**
+     * @param parallelism the number of threads parsing the file
+     * @param segmentSize the number of bytes parsed by a task
+     * @param normalizer the normalization applied to every line
+     */
+    public BulkLoader(int parallelism, int segmentSize, Normalizer normalizer) {
+        if (parallelism <= 0 || segmentSize <= 0) {
+            throw new IllegalArgumentException("Parallelism and segment size must be positive");
+        }
+        this.parallelism = parallelism;
+        this.segmentSize = segmentSize;
+        this.normalizer = normalizer;
+    }
+
+    /**
+     * Loads all the lines of the given file into the tree.
+     *
+     * @param file the file to load
+     * @param tree the tree to add the lines to
+     * @param firstIndex the index of the first line; it must not be less than the indexes already in the tree
+     * @return the number of lines read
+     * @throws IOException if the file cannot be read
+     */
+    public long load(Path file, GeneralizedSuffixTree tree, int firstIndex) throws IOException {
+        ExecutorService workers = newWorkers();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            int segments = segmentCount(channel.size());
+            // parse at most two segments per worker ahead of the puts
+            int window = 2 * parallelism;
+            List<Future<Segment>> pending = new ArrayList<Future<Segment>>();
+            int submitted = 0;
+            long lines = 0;
+            for (int s = 0; s < segments; s++) {
+                while (submitted < segments && submitted < s + window) {
+                    pending.add(workers.submit(parseTask(channel, submitted++)));
+                }
+                Segment segment = get(pending.get(s));
+                pending.set(s, null);
+                segment.putInto(tree, firstIndex + lines);
+                lines += segment.lines;
+            }
+            return lines;
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Loads all the lines of the given file into new trees, built in parallel.
+     *
+     * @param file the file to load
+     * @param shards the number of trees to build
+     * @param firstIndex the index of the first line
+     * @return the trees, wrapped in a ShardedIndex
+     * @throws IOException if the file cannot be read
+     */
+    public ShardedIndex loadShards(Path file, int shards, final int firstIndex) throws IOException {
+        if (shards <= 0) {
+            throw new IllegalArgumentException("The number of shards must be positive");
+        }
+        ExecutorService workers = newWorkers();
+        ExecutorService builders = Executors.newFixedThreadPool(shards, daemonThreads("suffixtree-shard"));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            int segments = segmentCount(channel.size());
+            final List<Future<Segment>> parsed = new ArrayList<Future<Segment>>();
+            // the line counts outlive the segments, which are released by their shard
+            final List<CompletableFuture<Integer>> counts = new ArrayList<CompletableFuture<Integer>>();
+            for (int s = 0; s < segments; s++) {
+                final CompletableFuture<Integer> count = new CompletableFuture<Integer>();
+                final Callable<Segment> parse = parseTask(channel, s);
+                counts.add(count);
+                parsed.add(workers.submit(new Callable<Segment>() {
+                    @Override
+                    public Segment call() throws Exception {
+                        try {
+                            Segment segment = parse.call();
+                            count.complete(segment.lines);
+                            return segment;
+                        } catch (Exception e) {
+                            count.completeExceptionally(e);
+                            throw e;
+                        }
+                    }
+                }));
+            }
+
+            List<Future<GeneralizedSuffixTree>> built = new ArrayList<Future<GeneralizedSuffixTree>>();
+            for (int shard = 0; shard < shards; shard++) {
+                final int from = (int) ((long) segments * shard / shards);
+                final int to = (int) ((long) segments * (shard + 1) / shards);
+                built.add(builders.submit(new Callable<GeneralizedSuffixTree>() {
+                    @Override
+                    public GeneralizedSuffixTree call() throws Exception {
+                        // the index of the first line of the shard depends on the lines of the previous segments
+                        long lines = 0;
+                        for (int s = 0; s < from; s++) {
+                            lines += counts.get(s).get();
+                        }
+                        GeneralizedSuffixTree tree = new GeneralizedSuffixTree();
+                        for (int s = from; s < to; s++) {
+                            Segment segment = parsed.get(s).get();
+                            // only this shard reads the segment, drop it once consumed
+                            parsed.set(s, null);
+                            segment.putInto(tree, firstIndex + lines);
+                            lines += segment.lines;
+                        }
+                        return tree;
+                    }
+                }));
+            }
+
+            GeneralizedSuffixTree[] trees = new GeneralizedSuffixTree[shards];
+            for (int shard = 0; shard < shards; shard++) {
+                trees[shard] = get(built.get(shard));
+            }
+            return new ShardedIndex(trees);
+        } finally {
+            builders.shutdownNow();
+            workers.shutdownNow();
+        }
+    }
+
+    private int segmentCount(long size) {
+        long segments = (size + segmentSize - 1) / segmentSize;
+        if (segments > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many segments, use a bigger segment size");
+        }
+        return (int) segments;
+    }
+
+    private Callable<Segment> parseTask(final FileChannel channel, final int segment) {
+        return new Callable<Segment>() {
+            @Override
+            public Segment call() throws IOException {
+                return parse(channel, (long) segment * segmentSize);
+            }
+        };
+    }
+
+    /**
+     * Parses the lines starting in [start, start + segmentSize)
+     */
+    private Segment parse(FileChannel channel, long start) throws IOException {
+        long size = channel.size();
+        long nominalEnd = Math.min(size, start + segmentSize);
+        // map one byte before the segment, to tell whether it starts with a new line
+        long mapStart = Math.max(0, start - 1);
+        int segmentEnd = (int) (nominalEnd - mapStart);
+
+        MappedByteBuffer map;
+        int first;
+        int end;
+        for (long overrun = MAP_OVERRUN; ; overrun *= 2) {
+            long mapEnd = Math.min(size, nominalEnd + overrun);
+            if (mapEnd - mapStart > Integer.MAX_VALUE) {
+                throw new IOException("Line too long at offset " + start);
+            }
+            map = channel.map(FileChannel.MapMode.READ_ONLY, mapStart, mapEnd - mapStart);
+            // whether a line running to the end of the mapping ends there
+            boolean atEof = mapEnd == size;
+
+            first = (int) (start - mapStart);
+            if (start > 0 && map.get(0) != '\n') {
+                // the first line belongs to the previous segment
+                while (first < map.limit() && map.get(first) != '\n') {
+                    first++;
+                }
+                if (first == map.limit() && !atEof) {
+                    continue;
+                }
+                first++;
+            }
+            end = first;
+            if (first < segmentEnd) {
+                // extend the segment to the end of its last line
+                end = segmentEnd;
+                while (end < map.limit() && map.get(end - 1) != '\n') {
+                    end++;
+                }
+                if (map.get(end - 1) != '\n' && !atEof) {
+                    continue;
+                }
+            }
+            break;
+        }
+
+        byte[] bytes = new byte[Math.max(0, end - first)];
+        map.position(Math.min(first, map.limit()));
+        map.get(bytes);
+
+        int[] starts = new int[16];
+        int[] lengths = new int[16];
+        int lines = 0;
+        int lineStart = 0;
+        for (int i = 0; i <= bytes.length; i++) {
+            if (i == bytes.length ? i > lineStart : bytes[i] == '\n') {
+                if (lines == starts.length) {
+                    starts = Arrays.copyOf(starts, lines * 2);
+                    lengths = Arrays.copyOf(lengths, lines * 2);
+                }
+                starts[lines] = lineStart;
+                lengths[lines] = normalizer.normalize(bytes, lineStart, i - lineStart);
+                lines++;
+                lineStart = i + 1;
+            }
+        }
+        return new Segment(bytes, starts, lengths, lines);
+    }
+
+    private ExecutorService newWorkers() {
+        return Executors.newFixedThreadPool(parallelism, daemonThreads("suffixtree-loader"));
+    }
+
+    private static ThreadFactory daemonThreads(final String name) {
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, name);
+                t.setDaemon(true);
+                return t;
+            }
+        };
+    }
+
+    private static <T> T get(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * The lines of a segment, as ranges of a private copy of its bytes
+     */
+    private static final class Segment {
+
+        private final byte[] bytes;
+        private final int[] starts;
+        private final int[] lengths;
+        private final int lines;
+
+        Segment(byte[] bytes, int[] starts, int[] lengths, int lines) {
+            this.bytes = bytes;
+            this.starts = starts;
+            this.lengths = lengths;
+            this.lines = lines;
+        }
+
+        void putInto(GeneralizedSuffixTree tree, long firstIndex) {
+            if (firstIndex + lines - 1 > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Too many lines, indexes would overflow");
+            }
+            for (int i = 0; i < lines; i++) {
+                if (lengths[i] > 0) {
+                    tree.put(bytes, starts[i], lengths[i], (int) firstIndex + i);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A read-only CharSequence view over a range of bytes, which avoids decoding them into a String.
+ *
+ * Every byte b is seen as the char (char) b, the same mapping EdgeBag and the array-based indexes
+ * use to store characters in a single byte: ASCII bytes map to the corresponding characters, while
+ * bytes above 0x7F map to chars 0xFF80-0xFFFF. Keys put as bytes must be searched as bytes (or
+ * through the same mapping).
+ *
+ * The view does not copy the bytes, so they must not change while it is in use.
+ *
+ * @see GeneralizedSuffixTree#put(byte[], int, int, int)
+ */
+public final class ByteSequence implements CharSequence {
+
+    private final byte[] array;
+    private final ByteBuffer buffer;
+    private final int offset;
+    private final int length;
+
+    private ByteSequence(byte[] array, ByteBuffer buffer, int offset, int length) {
+        this.array = array;
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * Returns a view over <tt>length</tt> bytes of the given array, starting from <tt>offset</tt>
+     *
+     * @throws IndexOutOfBoundsException if the range is not within the array
+     */
+    public static ByteSequence wrap(byte[] bytes, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > bytes.length - length) {
+            throw new IndexOutOfBoundsException("Range [" + offset + ", " + offset + " + " + length
+                    + ") out of bounds for length " + bytes.length);
+        }
+        return new ByteSequence(bytes, null, offset, length);
+    }
+
+    /**
+     * Returns a view over the remaining bytes of the given buffer (from its position to its limit).
+     * The position of the buffer is not changed.
+     */
+    public static ByteSequence wrap(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            return new ByteSequence(buffer.array(), null, buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+        return new ByteSequence(null, buffer, buffer.position(), buffer.remaining());
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length);
+        }
+        return (char) (array != null ? array[offset + index] : buffer.get(offset + index));
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || start > end || end > length) {
+            throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") out of bounds for length " + length);
+        }
+        return new ByteSequence(array, buffer, offset + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = charAt(i);
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * A cancellation flag, checked by the long running traversals of the tree (such as Node.getData).
+ *
+ * The flag of the current thread is installed by AsyncSearcher while a query runs, so that the
+ * synchronous query methods do not need an extra parameter: when no flag is installed the checks
+ * are skipped.
+ */
+final class Cancellation {
+
+    /**
+     * The number of nodes a traversal may visit between two checks
+     */
+    static final int CHECK_INTERVAL = 256;
+
+    private static final ThreadLocal<Cancellation> CURRENT = new ThreadLocal<Cancellation>();
+
+    private volatile boolean cancelled = false;
+
+    /**
+     * Returns the flag installed for the current thread, or null
+     */
+    static Cancellation current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Throws a CancellationException if the given flag (possibly null) was raised
+     */
+    static void check(Cancellation cancellation) {
+        if (cancellation != null && cancellation.cancelled) {
+            throw new CancellationException("The query was cancelled");
+        }
+    }
+
+    void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Installs this flag for the current thread
+     */
+    void install() {
+        CURRENT.set(this);
+    }
+
+    /**
+     * Removes the flag of the current thread
+     */
+    static void uninstall() {
+        CURRENT.remove();
+    }
+}
@@ -0,0 +1,177 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.util.Arrays;
+
+/**
+ * A set of (key, index) pairs concatenated into a single text, used to build the
+ * array-based indexes of this package.
+ *
+ * Every key is wrapped by the start and end symbols, exactly as GeneralizedSuffixTree.put
+ * does, so the text looks like <tt>^key0$^key1$...^keyN$</tt>. Keys must only contain
+ * byte-range characters (as in EdgeBag) and are stored one byte per character.
+ */
+final class Corpus {
+
+    private final char startSymbol;
+    private final char endSymbol;
+    private byte[] text = new byte[64];
+    private int length = 0;
+    /**
+     * starts[d] is the offset of the start symbol of the d-th key
+     */
+    private int[] starts = new int[16];
+    /**
+     * values[d] is the index associated with the d-th key
+     */
+    private int[] values = new int[16];
+    private int documents = 0;
+
+    Corpus(char startSymbol, char endSymbol) {
+        this.startSymbol = startSymbol;
+        this.endSymbol = endSymbol;
+    }
+
+    /**
+     * Appends the given key to the text.
+     *
+     * Entries must be added so that their indexes are in non-decreasing order,
+     * as in GeneralizedSuffixTree.put
+     *
+     * @throws IllegalStateException if an invalid index is passed as input
+     * @throws IllegalArgumentException if the key contains non byte-range characters
+     */
+    void add(String key, int index) {
+        if (documents > 0 && index < values[documents - 1]) {
+            throw new IllegalStateException("The input index must not be less than any of the previously inserted ones. Got "
+                    + index + ", expected at least " + values[documents - 1]);
+        }
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c != (char) (byte) c) {
+                throw new IllegalArgumentException("Illegal input character " + c + ".");
+            }
+        }
+        if (length + key.length() + 2 < 0) {
+            throw new IllegalStateException("The corpus cannot be larger than 2GB");
+        }
+
+        ensureCapacity(length + key.length() + 2);
+        if (documents == starts.length) {
+            starts = Arrays.copyOf(starts, documents * 2);
+            values = Arrays.copyOf(values, documents * 2);
+        }
+        starts[documents] = length;
+        values[documents] = index;
+        documents++;
+
+        text[length++] = (byte) startSymbol;
+        for (int i = 0; i < key.length(); i++) {
+            text[length++] = (byte) key.charAt(i);
+        }
+        text[length++] = (byte) endSymbol;
+    }
+
+    char getStartSymbol() {
+        return startSymbol;
+    }
+
+    char getEndSymbol() {
+        return endSymbol;
+    }
+
+    /**
+     * Returns the length of the text
+     */
+    int length() {
+        return length;
+    }
+
+    /**
+     * Returns the character at the given offset of the text
+     */
+    byte byteAt(int offset) {
+        return text[offset];
+    }
+
+    int getDocuments() {
+        return documents;
+    }
+
+    /**
+     * Returns the indexes of all the keys, ordered by insertion
+     */
+    int[] getValues() {
+        return Arrays.copyOf(values, documents);
+    }
+
+    /**
+     * Returns a copy of the text, trimmed to its length
+     */
+    byte[] getText() {
+        return Arrays.copyOf(text, length);
+    }
+
+    /**
+     * Returns the offsets of the start symbols of all the keys, ordered by insertion
+     */
+    int[] getStarts() {
+        return Arrays.copyOf(starts, documents);
+    }
+
+    /**
+     * Returns the ordinal of the key the given offset of the text belongs to
+     */
+    int documentAt(int offset) {
+        int pos = Arrays.binarySearch(starts, 0, documents, offset);
+        return pos >= 0 ? pos : -pos - 2;
+    }
+
+    /**
+     * Returns the text as a sequence of symbols in [1, 256], followed by a unique 0 terminator,
+     * as expected by SuffixArrays.sort
+     */
+    int[] toSymbols() {
+        int[] symbols = new int[length + 1];
+        for (int i = 0; i < length; i++) {
+            symbols[i] = (text[i] & 0xFF) + 1;
+        }
+        symbols[length] = 0;
+        return symbols;
+    }
+
+    /**
+     * Tests whether the sentinels only appear where they can match a wrapped key:
+     * the start symbol at the beginning and the end symbol at the end of the query.
+     * Other matches would span two consecutive keys of the concatenated text.
+     */
+    static boolean isValidQuery(String word, char startSymbol, char endSymbol) {
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if ((c == startSymbol && i > 0) || (c == endSymbol && i < word.length() - 1)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > text.length) {
+            text = Arrays.copyOf(text, Math.max(capacity, (int) Math.min(Integer.MAX_VALUE - 8, text.length * 2L)));
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A fixed-size block of off-heap memory, made of direct ByteBuffers and addressed by long offsets.
+ *
+ * A single direct buffer cannot be larger than 2GB, so the arena is split into chunks of
+ * CHUNK_SIZE bytes. Callers must make sure that ints and longs are stored at offsets that are
+ * multiples of their size, so that they never straddle two chunks.
+ *
+ * The memory is given back to the operating system by release, when the runtime allows
+ * freeing direct buffers explicitly (Java 9 and later), or when the buffers are garbage
+ * collected otherwise.
+ */
+final class DirectArena {
+
+    private static final int CHUNK_BITS = 30;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (Exception e) {
+            // Java 8 or a restricted runtime: buffers will be freed by the garbage collector
+            unsafe = null;
+            invokeCleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private final long capacity;
+    private ByteBuffer[] chunks;
+
+    /**
+     * Allocates a new arena
+     *
+     * @param capacity the size of the arena, in bytes
+     */
+    DirectArena(long capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+        }
+        this.capacity = capacity;
+        int count = (int) ((capacity + CHUNK_SIZE - 1) >>> CHUNK_BITS);
+        chunks = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long size = Math.min(CHUNK_SIZE, capacity - ((long) i << CHUNK_BITS));
+            chunks[i] = ByteBuffer.allocateDirect((int) size).order(ByteOrder.nativeOrder());
+        }
+    }
+
+    long getCapacity() {
+        return capacity;
+    }
+
+    byte getByte(long address) {
+        return chunks[(int) (address >>> CHUNK_BITS)].get((int) (address & CHUNK_MASK));
+    }
+
+    void putByte(long address, byte value) {
+        chunks[(int) (address >>> CHUNK_BITS)].put((int) (address & CHUNK_MASK), value);
+    }
+
+    int getInt(long address) {
+        return chunks[(int) (address >>> CHUNK_BITS)].getInt((int) (address & CHUNK_MASK));
+    }
+
+    void putInt(long address, int value) {
+        chunks[(int) (address >>> CHUNK_BITS)].putInt((int) (address & CHUNK_MASK), value);
+    }
+
+    long getLong(long address) {
+        return chunks[(int) (address >>> CHUNK_BITS)].getLong((int) (address & CHUNK_MASK));
+    }
+
+    void putLong(long address, long value) {
+        chunks[(int) (address >>> CHUNK_BITS)].putLong((int) (address & CHUNK_MASK), value);
+    }
+
+    /**
+     * Frees the memory of this arena. The arena must not be used afterwards.
+     */
+    void release() {
+        ByteBuffer[] released = chunks;
+        chunks = null;
+        if (released == null || INVOKE_CLEANER == null) {
+            return;
+        }
+        for (ByteBuffer chunk : released) {
+            try {
+                INVOKE_CLEANER.invoke(UNSAFE, chunk);
+            } catch (Exception e) {
+                // leave it to the garbage collector
+            }
+        }
+    }
+}
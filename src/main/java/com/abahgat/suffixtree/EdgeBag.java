@@ -17,6 +17,7 @@ package com.abahgat.suffixtree;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
 
@@ -24,118 +25,253 @@ import java.util.Set;
  * A specialized implementation of Map that uses native char types and sorted
  * arrays to keep minimize the memory footprint.
  * Implements only the operations that are needed within the suffix tree context.
+ * Edges are represented by their destination nodes, that hold the edge labels, and are keyed
+ * by the first character of their label.
+ *
+ * The layout of the bag adapts to the number of children, as the nodes of an adaptive
+ * radix tree do:
+ * <ul>
+ * <li>up to 16 children, keys and values are kept in sorted arrays whose capacity doubles as
+ * they fill up, so most nodes (that only have a couple of children) stay small;</li>
+ * <li>up to 48 children, a 256 entries index maps every key to a slot of the values array;</li>
+ * <li>above that, values are stored in a 256 entries table addressed by the key itself.</li>
+ * </ul>
+ * Lookups take constant time in the last two layouts, which are the ones used by the root
+ * and by the other hot nodes close to it.
  */
-class EdgeBag implements Map<Character, Edge> {
+class EdgeBag implements Map<Character, Node> {
+    /**
+     * The sorted keys, or the index of the slots of values (storing slot + 1, 0 meaning absent),
+     * or null when the values are addressed directly
+     */
     private byte[] chars;
-    private Edge[] values;
+    private Node[] values;
+    private int size;
+    /**
+     * The smallest and largest index stored in the subtrees of these nodes and in their parent,
+     * cached by Node#computeAndCacheCount
+     */
+    private int lowestIndex;
+    private int highestIndex;
     private static final int BSEARCH_THRESHOLD = 6;
+    private static final int SORTED_MAX = 16;
+    private static final int INDEXED_MAX = 48;
+    private static final int DIRECT_SIZE = 256;
+    /**
+     * The estimated heap size of an EdgeBag, excluding its arrays
+     * @see MemoryLayout
+     */
+    static final int SHALLOW_SIZE = MemoryLayout.object(2, 3);
+
+    void setIndexBounds(int lowest, int highest) {
+        lowestIndex = lowest;
+        highestIndex = highest;
+    }
+
+    int getLowestIndex() {
+        return lowestIndex;
+    }
+
+    int getHighestIndex() {
+        return highestIndex;
+    }
 
     @Override
-    public Edge put(Character character, Edge e) {
+    public Node put(Character character, Node e) {
         char c = character.charValue();
         if (c != (char) (byte) c) {
             throw new IllegalArgumentException("Illegal input character " + c + ".");
         }
-        
-        if (chars == null) {
-            chars = new byte[0];
-            values = new Edge[0];
+        int key = c & 0xFF;
+
+        if (values == null) {
+            chars = new byte[1];
+            values = new Node[1];
         }
-        int idx = search(c);
-        Edge previous = null;
 
-        if (idx < 0) {
-            int currsize = chars.length;
-            byte[] copy = new byte[currsize + 1];
-            System.arraycopy(chars, 0, copy, 0, currsize);
-            chars = copy;
-            Edge[] copy1 = new Edge[currsize + 1];
-            System.arraycopy(values, 0, copy1, 0, currsize);
-            values = copy1;
-            chars[currsize] = (byte) c;
-            values[currsize] = e;
-            currsize++;
-            if (currsize > BSEARCH_THRESHOLD) {
-                sortArrays();
+        if (values.length == DIRECT_SIZE) {
+            Node previous = values[key];
+            values[key] = e;
+            if (previous == null) {
+                size++;
             }
-        } else {
-            previous = values[idx];
+            return previous;
+        }
+
+        if (values.length == INDEXED_MAX) {
+            int slot = chars[key];
+            if (slot != 0) {
+                Node previous = values[slot - 1];
+                values[slot - 1] = e;
+                return previous;
+            }
+            if (size == INDEXED_MAX) {
+                growToDirect();
+                return put(character, e);
+            }
+            values[size++] = e;
+            chars[key] = (byte) size;
+            return null;
+        }
+
+        int idx = search(key);
+        if (idx >= 0) {
+            Node previous = values[idx];
             values[idx] = e;
+            return previous;
+        }
+        if (size == values.length) {
+            if (size == SORTED_MAX) {
+                growToIndexed();
+                return put(character, e);
+            }
+            chars = Arrays.copyOf(chars, size * 2);
+            values = Arrays.copyOf(values, size * 2);
         }
-        return previous;
+        int insertion = -idx - 1;
+        System.arraycopy(chars, insertion, chars, insertion + 1, size - insertion);
+        System.arraycopy(values, insertion, values, insertion + 1, size - insertion);
+        chars[insertion] = (byte) c;
+        values[insertion] = e;
+        size++;
+        return null;
     }
     
     @Override
-    public Edge get(Object maybeCharacter) {
+    public Node get(Object maybeCharacter) {
         return get(((Character) maybeCharacter).charValue());  // throws if cast fails.
     }
 
-    public Edge get(char c) {
+    public Node get(char c) {
         if (c != (char) (byte) c) {
             throw new IllegalArgumentException("Illegal input character " + c + ".");
         }
-        
-        int idx = search(c);
+        if (values == null) {
+            return null;
+        }
+        int key = c & 0xFF;
+        if (values.length == DIRECT_SIZE) {
+            return values[key];
+        }
+        if (values.length == INDEXED_MAX) {
+            int slot = chars[key];
+            return slot == 0 ? null : values[slot - 1];
+        }
+        int idx = search(key);
         if (idx < 0) {
             return null;
         }
         return values[idx];
     }
 
-    private int search(char c) {
-        if (chars == null)
-            return -1;
-        
-        if (chars.length > BSEARCH_THRESHOLD) {
-            return java.util.Arrays.binarySearch(chars, (byte) c);
+    /**
+     * Searches the given key among the sorted keys, comparing them as unsigned values.
+     *
+     * @return the index of the key, or (-(insertion point) - 1) if the key is not there
+     */
+    private int search(int key) {
+        if (size <= BSEARCH_THRESHOLD) {
+            for (int i = 0; i < size; i++) {
+                int current = chars[i] & 0xFF;
+                if (current == key) {
+                    return i;
+                } else if (current > key) {
+                    return -i - 1;
+                }
+            }
+            return -size - 1;
         }
 
-        for (int i = 0; i < chars.length; i++) {
-            if (c == chars[i]) {
-                return i;
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int current = chars[mid] & 0xFF;
+            if (current < key) {
+                low = mid + 1;
+            } else if (current > key) {
+                high = mid - 1;
+            } else {
+                return mid;
             }
         }
-        return -1;
+        return -low - 1;
     }
 
-    @Override
-    public Collection<Edge> values() {
-        return Arrays.asList(values == null ? new Edge[0] : values);
+    /**
+     * Turns the full sorted arrays into an index over 48 slots
+     */
+    private void growToIndexed() {
+        byte[] index = new byte[DIRECT_SIZE];
+        Node[] slots = new Node[INDEXED_MAX];
+        for (int i = 0; i < size; i++) {
+            slots[i] = values[i];
+            index[chars[i] & 0xFF] = (byte) (i + 1);
+        }
+        chars = index;
+        values = slots;
     }
-    
+
+    /**
+     * Turns the full index into a table addressed by the keys
+     */
+    private void growToDirect() {
+        Node[] table = new Node[DIRECT_SIZE];
+        for (int key = 0; key < DIRECT_SIZE; key++) {
+            if (chars[key] != 0) {
+                table[key] = values[chars[key] - 1];
+            }
+        }
+        chars = null;
+        values = table;
+    }
+
     /**
-     * A trivial implementation of sort, used to sort chars[] and values[] according to the data in chars.
-     * 
-     * It was preferred to faster sorts (like qsort) because of the small sizes (<=36) of the collections involved.
+     * Returns the estimated heap size of the arrays backing this bag
      */
-    private void sortArrays() {
-        for (int i = 0; i < chars.length; i++) {
-         for (int j = i; j > 0; j--) {
-            if (chars[j-1] > chars[j]) {
-               byte swap = chars[j];
-               chars[j] = chars[j-1];
-               chars[j-1] = swap;
-
-               Edge swapEdge = values[j];
-               values[j] = values[j-1];
-               values[j-1] = swapEdge;
+    long getArraysBytes() {
+        if (values == null) {
+            return 0;
+        }
+        return (chars == null ? 0 : MemoryLayout.byteArray(chars.length)) + MemoryLayout.referenceArray(values.length);
+    }
+
+    /**
+     * Returns the edges of this bag, ordered by their (unsigned) first character
+     */
+    @Override
+    public Collection<Node> values() {
+        if (values == null) {
+            return Collections.emptyList();
+        }
+        if (values.length != DIRECT_SIZE && values.length != INDEXED_MAX) {
+            return Arrays.asList(values).subList(0, size);
+        }
+        Node[] ordered = new Node[size];
+        int i = 0;
+        for (int key = 0; key < DIRECT_SIZE; key++) {
+            Node e = values.length == DIRECT_SIZE
+                    ? values[key]
+                    : (chars[key] == 0 ? null : values[chars[key] - 1]);
+            if (e != null) {
+                ordered[i++] = e;
             }
-         }
-      }
+        }
+        return Arrays.asList(ordered);
     }
     
     @Override
     public boolean isEmpty() {
-        return chars == null || chars.length == 0;
+        return size == 0;
     }
     
     @Override
     public int size() {
-        return chars == null ? 0 : chars.length;
+        return size;
     }
     
     @Override
-    public Set<Map.Entry<Character, Edge>> entrySet() {
+    public Set<Map.Entry<Character, Node>> entrySet() {
         throw new UnsupportedOperationException("Not implemented");
     }
     
@@ -150,12 +286,12 @@ class EdgeBag implements Map<Character, Edge> {
     }
     
     @Override
-    public void putAll(Map<? extends Character, ? extends Edge> m) {
+    public void putAll(Map<? extends Character, ? extends Node> m) {
         throw new UnsupportedOperationException("Not implemented");
     }
     
     @Override
-    public Edge remove(Object key) {
+    public Node remove(Object key) {
         throw new UnsupportedOperationException("Not implemented");
     }
     
@@ -0,0 +1,301 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A compressed, read-only substring index based on the FM-index.
+ *
+ * The keys are concatenated into a single text (see Corpus), whose Burrows-Wheeler transform
+ * is stored in a WaveletMatrix with rank support. A query is answered by backward search,
+ * which finds the range of suffixes starting with the query in O(m log sigma) time;
+ * the indexes are then read from a bit-packed document array, which maps every suffix to the
+ * key it belongs to.
+ *
+ * The index answers the same queries as GeneralizedSuffixTree, with the same semantics
+ * (startsWith, endsWith and searchWord use the same start and end symbols), but it takes
+ * a few bytes per input character instead of the tens of bytes of the pointer-based tree.
+ *
+ * FMIndex instances are immutable and can be queried concurrently. They are built with
+ * FMIndex.Builder:
+ *
+ * <pre>
+ * FMIndex.Builder builder = new FMIndex.Builder();
+ * builder.put("cacao", 0);
+ * builder.put("banana", 1);
+ * FMIndex index = builder.build();
+ * </pre>
+ */
+public class FMIndex implements SubstringIndex {
+
+    private final char startSymbol;
+    private final char endSymbol;
+    /**
+     * The length of the indexed text, including the terminator
+     */
+    private final int length;
+    private final WaveletMatrix bwt;
+    /**
+     * codes[b & 0xFF] is the symbol code of byte b in the wavelet matrix, or -1 if b is not in the text
+     */
+    private final int[] codes;
+    /**
+     * counts[c] is the number of symbols in the text that are smaller than the symbol with code c
+     */
+    private final int[] counts;
+    /**
+     * The document array: the ordinal of the key each suffix belongs to, in suffix array order
+     */
+    private final long[] documents;
+    private final int documentBits;
+    private final int[] values;
+
+    private FMIndex(Corpus corpus) {
+        this.startSymbol = corpus.getStartSymbol();
+        this.endSymbol = corpus.getEndSymbol();
+        this.values = corpus.getValues();
+
+        int[] text = corpus.toSymbols();
+        this.length = text.length;
+        int[] sa = SuffixArrays.sort(text, 257);
+
+        // compact the alphabet: code 0 is the terminator
+        int[] symbolCodes = new int[257];
+        java.util.Arrays.fill(symbolCodes, -1);
+        int[] symbolCounts = new int[257];
+        for (int symbol : text) {
+            symbolCounts[symbol]++;
+        }
+        int sigma = 0;
+        for (int symbol = 0; symbol < 257; symbol++) {
+            if (symbolCounts[symbol] > 0) {
+                symbolCodes[symbol] = sigma++;
+            }
+        }
+        this.counts = new int[sigma + 1];
+        this.codes = new int[256];
+        for (int symbol = 0; symbol < 257; symbol++) {
+            if (symbolCodes[symbol] >= 0) {
+                counts[symbolCodes[symbol] + 1] = counts[symbolCodes[symbol]] + symbolCounts[symbol];
+                if (symbol > 0) {
+                    codes[symbol - 1] = symbolCodes[symbol];
+                }
+            } else if (symbol > 0) {
+                codes[symbol - 1] = -1;
+            }
+        }
+
+        // the BWT and the document array, in suffix array order
+        this.documentBits = bitsFor(Math.max(1, values.length - 1));
+        this.documents = new long[(int) (((long) length * documentBits + 63) >>> 6)];
+        int[] bwtCodes = new int[length];
+        for (int i = 0; i < length; i++) {
+            int pos = sa[i];
+            bwtCodes[i] = symbolCodes[text[pos == 0 ? length - 1 : pos - 1]];
+            if (pos < length - 1) {
+                setDocument(i, corpus.documentAt(pos));
+            }
+        }
+        sa = null;
+        text = null;
+        this.bwt = new WaveletMatrix(bwtCodes, bitsFor(Math.max(1, sigma - 1)));
+    }
+
+    /**
+     * Searches for the word that starts the string
+     * @param word the key that starts the string
+     * @return the collection of indexes associated with the input <tt>word</tt>
+     */
+    public Collection<Integer> startsWith(String word) {
+        if (word == null || word.isEmpty()) {
+            return Collections.EMPTY_LIST;
+        }
+        return search(startSymbol + word);
+    }
+
+    /**
+     * Searches for the word that ends the string
+     * @param word the key that ends the string
+     * @return the collection of indexes associated with the input <tt>word</tt>
+     */
+    public Collection<Integer> endsWith(String word) {
+        if (word == null || word.isEmpty()) {
+            return Collections.EMPTY_LIST;
+        }
+        return search(word + endSymbol);
+    }
+
+    /**
+     * Searches for the word within the index.
+     * @param word the word to search for
+     * @return the collection of indexes associated with the input <tt>word</tt>
+     */
+    public Collection<Integer> searchWord(String word) {
+        if (word == null || word.isEmpty()) {
+            return Collections.EMPTY_LIST;
+        }
+        return search(startSymbol + word + endSymbol);
+    }
+
+    /**
+     * Searches for the given word within the index.
+     *
+     * @param word the key to search for
+     * @return the collection of indexes associated with the input <tt>word</tt>
+     */
+    public Collection<Integer> search(String word) {
+        return search(word, -1);
+    }
+
+    /**
+     * Searches for the given word within the index and returns at most the given number of matches.
+     *
+     * @param word the key to search for
+     * @param results the max number of results to return. Use -1 to get all
+     * @return at most <tt>results</tt> values for the given word
+     */
+    public Collection<Integer> search(String word, int results) {
+        int[] range = findRange(word);
+        if (range == null) {
+            return Collections.EMPTY_LIST;
+        }
+        Set<Integer> ret = new HashSet<Integer>();
+        for (int row = range[0]; row < range[1]; row++) {
+            ret.add(values[getDocument(row)]);
+            if (ret.size() == results) {
+                break;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the number of occurrences of the given word in the indexed keys, counting
+     * repeated occurrences within the same key
+     *
+     * @param word the key to search for
+     * @return the number of occurrences of <tt>word</tt>
+     */
+    public int countOccurrences(String word) {
+        int[] range = findRange(word);
+        return range == null ? 0 : range[1] - range[0];
+    }
+
+    /**
+     * Returns the estimated heap size of this index, in bytes
+     */
+    public long getSizeInBytes() {
+        return MemoryLayout.object(5, 4)
+                + bwt.getSizeInBytes()
+                + MemoryLayout.intArray(codes.length)
+                + MemoryLayout.intArray(counts.length)
+                + MemoryLayout.align((long) MemoryLayout.ARRAY_HEADER + documents.length * 8L)
+                + MemoryLayout.intArray(values.length);
+    }
+
+    /**
+     * Performs the backward search of the given word.
+     *
+     * @return the [start, end) range of the suffixes starting with <tt>word</tt>, or null if there are none
+     */
+    private int[] findRange(String word) {
+        if (word.isEmpty() || values.length == 0 || !Corpus.isValidQuery(word, startSymbol, endSymbol)) {
+            return null;
+        }
+        int start = 0;
+        int end = length;
+        for (int i = word.length() - 1; i >= 0 && start < end; i--) {
+            char ch = word.charAt(i);
+            if (ch != (char) (byte) ch) {
+                throw new IllegalArgumentException("Illegal input character " + ch + ".");
+            }
+            int code = codes[ch & 0xFF];
+            if (code < 0) {
+                return null;
+            }
+            start = counts[code] + bwt.rank(code, start);
+            end = counts[code] + bwt.rank(code, end);
+        }
+        return start < end ? new int[] {start, end} : null;
+    }
+
+    private int getDocument(int row) {
+        long bit = (long) row * documentBits;
+        int word = (int) (bit >>> 6);
+        int offset = (int) (bit & 63);
+        long value = documents[word] >>> offset;
+        if (offset + documentBits > 64) {
+            value |= documents[word + 1] << (64 - offset);
+        }
+        return (int) (value & ((1L << documentBits) - 1));
+    }
+
+    private void setDocument(int row, int document) {
+        long bit = (long) row * documentBits;
+        int word = (int) (bit >>> 6);
+        int offset = (int) (bit & 63);
+        documents[word] |= (long) document << offset;
+        if (offset + documentBits > 64) {
+            documents[word + 1] |= (long) document >>> (64 - offset);
+        }
+    }
+
+    private static int bitsFor(int maxValue) {
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(maxValue));
+    }
+
+    /**
+     * Collects the (key, index) pairs to build an FMIndex from
+     */
+    public static class Builder {
+
+        private final Corpus corpus;
+
+        /**
+         * Creates a builder that uses the same start and end symbols as GeneralizedSuffixTree
+         */
+        public Builder() {
+            this.corpus = new Corpus('^', '$');
+        }
+
+        /**
+         * Adds the specified <tt>index</tt> to the index under the given <tt>key</tt>.
+         *
+         * Entries must be inserted so that their indexes are in non-decreasing order,
+         * otherwise an IllegalStateException will be raised.
+         *
+         * @param key the string key that will be added to the index
+         * @param index the value that will be added to the index
+         * @return this builder
+         * @throws IllegalStateException if an invalid index is passed as input
+         */
+        public Builder put(String key, int index) throws IllegalStateException {
+            corpus.add(key, index);
+            return this;
+        }
+
+        /**
+         * Builds the index out of all the keys added so far
+         */
+        public FMIndex build() {
+            return new FMIndex(corpus);
+        }
+    }
+}
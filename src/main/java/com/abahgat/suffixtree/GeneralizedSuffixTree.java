@@ -15,9 +15,14 @@
  */
 package com.abahgat.suffixtree;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import com.abahgat.suffixtree.TreeMetrics.Operation;
 
 /**
  * A Generalized Suffix Tree, based on the Ukkonen's paper "On-line construction of suffix trees"
@@ -53,7 +58,7 @@ import java.util.Collections;
  * This kind of "implicit path" is important in the testAndSplit method.
  *  
  */
-public class GeneralizedSuffixTree {
+public class GeneralizedSuffixTree implements SubstringIndex {
 
     /**
      * The index of the last item that was added to the GST
@@ -78,17 +83,130 @@ public class GeneralizedSuffixTree {
      */
     private char startSymbol = '^';
 
+    /**
+     * The metrics collected for this tree, null when instrumentation is disabled
+     */
+    private volatile TreeMetrics metrics = null;
+
+    /**
+     * The max length of the queries answered by the tree alone in depth-limited mode, 0 if unlimited
+     */
+    private final int maxDepth;
+    /**
+     * The symbol that ends the windows of a key that are cut in depth-limited mode. Since it must
+     * not appear anywhere else, depth-limited trees reject the keys that contain it.
+     */
+    static final char TRUNCATION_SYMBOL = '\uFFFF';
+    /**
+     * The min distance between the starts of two windows in depth-limited mode: windows overlap,
+     * so a short stride adds many leaves, while a long one makes labels longer
+     */
+    private static final int MIN_WINDOW_STRIDE = 64;
+    /**
+     * In depth-limited mode, the keys (surrounded by the start and end symbols) and their indexes,
+     * in insertion order, used to verify longer queries
+     */
+    private String[] sourceKeys;
+    private int[] sourceIndexes;
+    private int sources = 0;
+    /**
+     * Whether identical subtrees have been merged, in which case the tree cannot be extended anymore
+     */
+    private volatile boolean minimized = false;
+    /**
+     * Whether the counts and index bounds cached by computeCount describe the current tree
+     */
+    private boolean countsCurrent = false;
+    /**
+     * Whether put logs the references it creates instead of propagating them along the suffix links
+     */
+    private boolean deferredReferences = false;
+    /**
+     * The references logged by put in deferred mode, in insertion order: pendingIndexes[i] must be
+     * added to pendingNodes[i] and to its suffixes
+     */
+    private Node[] pendingNodes = new Node[0];
+    private int[] pendingIndexes = new int[0];
+    private int pending = 0;
+
+    /**
+     * Creates a tree that indexes every suffix of the keys to its full length
+     */
+    public GeneralizedSuffixTree() {
+        this.maxDepth = 0;
+    }
+
+    /**
+     * Creates a depth-limited tree, that only indexes short substrings of the keys.
+     *
+     * Every key (surrounded by the start and end symbols) is cut into windows that overlap by
+     * maxDepth + 1 characters, and only the windows are added to the tree, so that no path is
+     * longer than a window. Every substring of up to maxDepth + 2 characters is contained in one of the
+     * windows, so any query whose word is not longer than maxDepth (startsWith, endsWith and searchWord
+     * included) is answered exactly as by an unlimited tree. Longer queries are answered by looking up
+     * their first characters, and then by checking the candidates against the keys, that the tree
+     * keeps for this purpose.
+     *
+     * The labels of the leaves are bounded by the window size rather than by the length of the keys,
+     * which saves most of the memory taken by long keys, at the price of slower long queries.
+     *
+     * The cut windows end with a reserved character, '\uFFFF' (the byte 0xFF of a ByteSequence),
+     * so keys containing it are rejected, and queries containing it match nothing.
+     *
+     * @param maxDepth the max length of the queries answered by the tree alone
+     */
+    public GeneralizedSuffixTree(int maxDepth) {
+        if (maxDepth <= 0) {
+            throw new IllegalArgumentException("The max depth must be positive");
+        }
+        this.maxDepth = maxDepth;
+        this.sourceKeys = new String[16];
+        this.sourceIndexes = new int[16];
+    }
+
+    /**
+     * Returns the max length of the queries answered by the tree alone, or 0 if the tree is not depth-limited
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
     /**
      * Searches for the word that starts the string
      * @param word the key that starts the string
      * @return the collection of indexes associated with the input <tt>word</tt>
      */
     public Collection<Integer> startsWith(String word) {
-        if (word == null || word.isEmpty()) {
+        return startsWith((CharSequence) word);
+    }
+
+    /**
+     * Searches for the word that starts the string, without copying it
+     * @see GeneralizedSuffixTree#startsWith(String)
+     */
+    public Collection<Integer> startsWith(CharSequence word) {
+        return startsWith(word, -1);
+    }
+
+    /**
+     * Searches for the word that starts the string and returns at most the given number of
+     * matches, without copying the word
+     *
+     * @param word the key that starts the string
+     * @param results the max number of results to return. Use -1 to get all
+     * @return at most <tt>results</tt> indexes of the keys that start with <tt>word</tt>
+     */
+    public Collection<Integer> startsWith(CharSequence word, int results) {
+        if (word == null || word.length() == 0) {
             return Collections.EMPTY_LIST;
         }
-        String searchKey = startSymbol + word;
-        return this.search(searchKey);
+        TreeMetrics m = metrics;
+        long start = null == m ? 0 : System.nanoTime();
+        Collection<Integer> ret = collect(new WrappedKey(word, startSymbol, (char) 0), results);
+        if (null != m) {
+            m.record(Operation.STARTS_WITH, start, word.length(), ret.size());
+        }
+        return ret;
     }
 
 
@@ -98,11 +216,24 @@ public class GeneralizedSuffixTree {
      * @return the collection of indexes associated with the input <tt>word</tt>
      */
     public Collection<Integer> endsWith(String word) {
-        if (word == null || word.isEmpty()) {
+        return endsWith((CharSequence) word);
+    }
+
+    /**
+     * Searches for the word that ends the string, without copying it
+     * @see GeneralizedSuffixTree#endsWith(String)
+     */
+    public Collection<Integer> endsWith(CharSequence word) {
+        if (word == null || word.length() == 0) {
             return Collections.EMPTY_LIST;
         }
-        String searchKey = word + endSymbol;
-        return this.search(searchKey);
+        TreeMetrics m = metrics;
+        long start = null == m ? 0 : System.nanoTime();
+        Collection<Integer> ret = collect(new WrappedKey(word, (char) 0, endSymbol), -1);
+        if (null != m) {
+            m.record(Operation.ENDS_WITH, start, word.length(), ret.size());
+        }
+        return ret;
     }
 
     /**
@@ -111,11 +242,24 @@ public class GeneralizedSuffixTree {
      * @return the collection of indexes associated with the input <tt>word</tt>
      */
     public Collection<Integer> searchWord(String word) {
-        if (word == null || word.isEmpty()) {
+        return searchWord((CharSequence) word);
+    }
+
+    /**
+     * Searches for the word within the GST, without copying it
+     * @see GeneralizedSuffixTree#searchWord(String)
+     */
+    public Collection<Integer> searchWord(CharSequence word) {
+        if (word == null || word.length() == 0) {
             return Collections.EMPTY_LIST;
         }
-        String keyString = startSymbol + word + endSymbol;
-        return this.search(keyString);
+        TreeMetrics m = metrics;
+        long start = null == m ? 0 : System.nanoTime();
+        Collection<Integer> ret = collect(new WrappedKey(word, startSymbol, endSymbol), -1);
+        if (null != m) {
+            m.record(Operation.SEARCH_WORD, start, word.length(), ret.size());
+        }
+        return ret;
     }
 
     /**
@@ -139,11 +283,90 @@ public class GeneralizedSuffixTree {
      * @return at most <tt>results</tt> values for the given word
      */
     public Collection<Integer> search(String word, int results) {
-        Node tmpNode = searchNode(word);
-        if (tmpNode == null) {
-            return Collections.EMPTY_LIST;
+        return search((CharSequence) word, results);
+    }
+
+    /**
+     * Searches for the given word within the GST, without copying it
+     * @see GeneralizedSuffixTree#search(String)
+     */
+    public Collection<Integer> search(CharSequence word) {
+        return search(word, -1);
+    }
+
+    /**
+     * Searches for the given word within the GST and returns at most the given number of matches,
+     * without copying the word
+     * @see GeneralizedSuffixTree#search(String, int)
+     */
+    public Collection<Integer> search(CharSequence word, int results) {
+        TreeMetrics m = metrics;
+        long start = null == m ? 0 : System.nanoTime();
+        Collection<Integer> ret = collect(word, results);
+        if (null != m) {
+            m.record(Operation.SEARCH, start, word.length(), ret.size());
+        }
+        return ret;
+    }
+
+    /**
+     * Searches for the given word within the GST and returns the largest matching indexes.
+     *
+     * Since indexes are added in increasing order, these are the most recently added keys.
+     * The sorted payloads of the matching nodes are merged lazily, without copying or sorting
+     * all the matches. If computeCount was called after the last change to the tree, subtrees
+     * are only visited when their largest index can still be among the results, so the cost
+     * grows with <tt>results</tt> rather than with the size of the matching subtree; otherwise
+     * every node below the match is visited once.
+     *
+     * @param word the key to search for
+     * @param results the max number of results to return. Use -1 to get all
+     * @return at most <tt>results</tt> indexes for the given word, in decreasing order
+     * @see OrderedMerge
+     */
+    public List<Integer> searchNewest(String word, int results) {
+        return searchOrdered(word, results, true);
+    }
+
+    /**
+     * Searches for the given word within the GST and returns the smallest matching indexes,
+     * i.e. the keys that were added first.
+     *
+     * @param word the key to search for
+     * @param results the max number of results to return. Use -1 to get all
+     * @return at most <tt>results</tt> indexes for the given word, in increasing order
+     * @see GeneralizedSuffixTree#searchNewest(String, int)
+     */
+    public List<Integer> searchOldest(String word, int results) {
+        return searchOrdered(word, results, false);
+    }
+
+    private List<Integer> searchOrdered(CharSequence word, int results, boolean newest) {
+        TreeMetrics m = metrics;
+        long start = null == m ? 0 : System.nanoTime();
+        List<Integer> ret = Collections.emptyList();
+        Node tmpNode = results == 0 ? null : termNode(word);
+        if (tmpNode != null) {
+            String pattern = needsVerification(word) ? word.toString() : null;
+            OrderedMerge merge = new OrderedMerge(tmpNode, newest, countsCurrent);
+            ret = new ArrayList<Integer>();
+            int visited = 0;
+            while ((results == -1 || ret.size() < results) && merge.hasNext()) {
+                int index = merge.next();
+                visited++;
+                if (pattern == null || verify(index, pattern)) {
+                    ret.add(index);
+                }
+            }
+            ret = Collections.unmodifiableList(ret);
+            if (null != m) {
+                m.collectedIndexes(visited);
+            }
+        }
+        if (null != m) {
+            m.record(newest ? Operation.SEARCH_NEWEST : Operation.SEARCH_OLDEST, start, word.length(), ret.size());
         }
-        return tmpNode.getData(results);
+        return ret;
     }
 
     /**
@@ -155,46 +378,231 @@ public class GeneralizedSuffixTree {
      * @see GeneralizedSuffixTree#ResultInfo
      */
     public ResultInfo searchWithCount(String word, int to) {
+        TreeMetrics m = metrics;
+        long start = null == m ? 0 : System.nanoTime();
+        ResultInfo ret;
+        if (needsVerification(word)) {
+            Collection<Integer> all = collectVerified(word, -1);
+            ret = new ResultInfo(to == -1 || all.size() <= to ? all : collectVerified(word, to), all.size());
+        } else {
+            Node tmpNode = searchNode(word);
+            if (tmpNode == null) {
+                ret = new ResultInfo(Collections.EMPTY_LIST, 0);
+            } else {
+                ret = new ResultInfo(tmpNode.getData(to, m), tmpNode.getResultCount());
+            }
+        }
+        if (null != m) {
+            m.record(Operation.SEARCH_WITH_COUNT, start, word.length(), ret.results.size());
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the number of indexes search would return for the given word, without building
+     * the collection of results.
+     *
+     * Unlike searchWithCount, this does not depend on a cached count, so it stays exact while
+     * keys are added.
+     *
+     * @param word the key to search for
+     * @return the number of indexes associated with the input <tt>word</tt>
+     */
+    public int count(CharSequence word) {
+        TreeMetrics m = metrics;
+        long start = null == m ? 0 : System.nanoTime();
+        int ret;
+        if (needsVerification(word)) {
+            ret = collectVerified(word, -1).size();
+        } else {
+            Node tmpNode = searchNode(word);
+            ret = tmpNode == null ? 0 : tmpNode.countData(m);
+        }
+        if (null != m) {
+            m.record(Operation.COUNT, start, word.length(), ret);
+        }
+        return ret;
+    }
+
+    /**
+     * Searches for the key made of the given bytes within the GST, without copying them
+     * @see ByteSequence
+     */
+    public Collection<Integer> search(byte[] word, int offset, int length) {
+        return search(ByteSequence.wrap(word, offset, length), -1);
+    }
+
+    /**
+     * Searches for the key made of the remaining bytes of the given buffer within the GST,
+     * without copying them. The position of the buffer is not changed.
+     * @see ByteSequence
+     */
+    public Collection<Integer> search(ByteBuffer word) {
+        return search(ByteSequence.wrap(word), -1);
+    }
+
+    /**
+     * Evaluates a boolean combination of substring conditions.
+     *
+     * @param query the query to evaluate
+     * @return the indexes matched by <tt>query</tt>, as a sorted set
+     * @see Query
+     */
+    public Collection<Integer> query(Query query) {
+        TreeMetrics m = metrics;
+        long start = null == m ? 0 : System.nanoTime();
+        Collection<Integer> ret = new IndexSet.SortedSet(query.evaluate(this));
+        if (null != m) {
+            m.record(Operation.QUERY, start, query.length(), ret.size());
+        }
+        return ret;
+    }
+
+    /**
+     * Returns at most <tt>results</tt> indexes associated with the given word
+     */
+    private Collection<Integer> collect(CharSequence word, int results) {
+        if (needsVerification(word)) {
+            return collectVerified(word, results);
+        }
         Node tmpNode = searchNode(word);
         if (tmpNode == null) {
-            return new ResultInfo(Collections.EMPTY_LIST, 0);
+            return Collections.EMPTY_LIST;
+        }
+        return tmpNode.getData(results, metrics);
+    }
+
+    /**
+     * Tests whether the given search key is too long to be answered by a depth-limited tree alone
+     */
+    boolean needsVerification(CharSequence key) {
+        return maxDepth > 0 && key.length() > maxDepth + 2;
+    }
+
+    /**
+     * Returns the length of the longest search keys answered by the tree alone
+     */
+    int getExactLength() {
+        return maxDepth > 0 ? maxDepth + 2 : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Returns at most <tt>results</tt> indexes associated with a key that is longer than the
+     * indexed depth: the indexes matching its first characters are checked against the source keys.
+     */
+    private Collection<Integer> collectVerified(CharSequence word, int results) {
+        Node tmpNode = searchNode(word.subSequence(0, getExactLength()));
+        if (tmpNode == null) {
+            return Collections.EMPTY_LIST;
         }
+        int[] candidates = Query.toArray(tmpNode.getData(-1, metrics));
+        int[] ret = new int[Math.min(candidates.length, results == -1 ? candidates.length : results)];
+        int count = 0;
+        String pattern = word.toString();
+        for (int i = 0; i < candidates.length && count < ret.length; i++) {
+            if (verify(candidates[i], pattern)) {
+                ret[count++] = candidates[i];
+            }
+        }
+        return new IndexSet.SortedSet(count == ret.length ? ret : Arrays.copyOf(ret, count));
+    }
+
+    /**
+     * Tests whether any of the keys added with the given index contains the given search key
+     */
+    boolean verify(int index, String key) {
+        int low = 0;
+        int high = sources;
+        // find the first source with the given index
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sourceIndexes[mid] < index) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        for (int i = low; i < sources && sourceIndexes[i] == index; i++) {
+            if (sourceKeys[i].contains(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Creates an incremental search session, that behaves like search on a query
+     * that is built one character at a time.
+     *
+     * The session must be discarded after any call to put.
+     * @return a new, empty, search session
+     * @see SearchSession
+     */
+    public SearchSession newSearchSession() {
+        return new SearchSession(this);
+    }
+
+    /**
+     * Creates an incremental search session, that behaves like startsWith on a query
+     * that is built one character at a time.
+     *
+     * The session must be discarded after any call to put.
+     * @return a new, empty, search session
+     * @see SearchSession
+     */
+    public SearchSession newStartsWithSession() {
+        return new SearchSession(this, startSymbol);
+    }
 
-        return new ResultInfo(tmpNode.getData(to), tmpNode.getResultCount());
+    /**
+     * Returns the node whose subtree holds the indexes matching the given key, as used by Query.
+     *
+     * In depth-limited mode, keys longer than the indexed depth are cut: the indexes below the
+     * node must then be checked with verify.
+     */
+    Node termNode(CharSequence key) {
+        return searchNode(needsVerification(key) ? key.subSequence(0, getExactLength()) : key);
     }
 
     /**
      * Returns the tree node (if present) that corresponds to the given string.
      */
-    private Node searchNode(String word) {
+    private Node searchNode(CharSequence word) {
+        flushPending();
+        if (isTruncated(word)) {
+            // only the cut windows contain the symbol, no key does
+            return null;
+        }
         /*
          * Verifies if exists a path from the root to a node such that the concatenation
          * of all the labels on the path is a superstring of the given word.
          * If such a path is found, the last node on it is returned.
          */
         Node currentNode = root;
-        Edge currentEdge;
+        Node child;
 
         for (int i = 0; i < word.length(); ++i) {
             char ch = word.charAt(i);
             // follow the edge corresponding to this char
-            currentEdge = currentNode.getEdge(ch);
-            if (null == currentEdge) {
+            child = currentNode.getChild(ch);
+            if (null == child) {
                 // there is no edge starting with this char
                 return null;
             } else {
-                String label = currentEdge.getLabel();
+                String label = child.getLabel();
                 int lenToMatch = Math.min(word.length() - i, label.length());
-                if (!word.regionMatches(i, label, 0, lenToMatch)) {
-                    // the label on the edge does not correspond to the one in the string to search
-                    return null;
+                for (int j = 1; j < lenToMatch; ++j) {
+                    if (word.charAt(i + j) != label.charAt(j)) {
+                        // the label on the edge does not correspond to the one in the string to search
+                        return null;
+                    }
                 }
 
                 if (label.length() >= word.length() - i) {
-                    return currentEdge.getDest();
+                    return child;
                 } else {
                     // advance to next node
-                    currentNode = currentEdge.getDest();
+                    currentNode = child;
                     i += lenToMatch - 1;
                 }
             }
@@ -212,18 +620,146 @@ public class GeneralizedSuffixTree {
      * @param key the string key that will be added to the index
      * @param index the value that will be added to the index
      * @throws IllegalStateException if an invalid index is passed as input
+     * @throws IllegalArgumentException if the key contains an invalid character, in which case
+     *                                  the tree is left untouched
+     * @see GeneralizedSuffixTree#isValidKey(CharSequence)
      */
     public void put(String key, int index) throws IllegalStateException {
+        put((CharSequence) key, index);
+    }
+
+    /**
+     * Adds the specified <tt>index</tt> to the GST under the key made of the given bytes.
+     *
+     * @param key the array holding the key
+     * @param offset the offset of the key within the array
+     * @param length the length of the key
+     * @param index the value that will be added to the index
+     * @throws IllegalStateException if an invalid index is passed as input
+     * @see ByteSequence
+     */
+    public void put(byte[] key, int offset, int length, int index) throws IllegalStateException {
+        put(ByteSequence.wrap(key, offset, length), index);
+    }
+
+    /**
+     * Adds the specified <tt>index</tt> to the GST under the key made of the remaining bytes of the
+     * given buffer. The position of the buffer is not changed.
+     *
+     * @throws IllegalStateException if an invalid index is passed as input
+     * @see ByteSequence
+     */
+    public void put(ByteBuffer key, int index) throws IllegalStateException {
+        put(ByteSequence.wrap(key), index);
+    }
+
+    /**
+     * Adds the specified <tt>index</tt> to the GST under the given <tt>key</tt>.
+     *
+     * The key, surrounded by the start and end symbols, is copied exactly once.
+     *
+     * @throws IllegalStateException if an invalid index is passed as input
+     * @see GeneralizedSuffixTree#put(String, int)
+     */
+    public void put(CharSequence key, int index) throws IllegalStateException {
+        TreeMetrics m = metrics;
+        long start = null == m ? 0 : System.nanoTime();
+        if (minimized) {
+            throw new IllegalStateException("The tree has been minimized and cannot be modified");
+        }
+        // insert cannot be undone, so the key is checked before the tree is touched
+        checkKey(key);
         if (index < last) {
             throw new IllegalStateException("The input index must not be less than any of the previously inserted ones. Got " + index + ", expected at least " + last);
         } else {
             last = index;
         }
+        countsCurrent = false;
+
+        String remainder = new StringBuilder(key.length() + 2).append(startSymbol).append(key).append(endSymbol).toString();
+        if (maxDepth == 0) {
+            insert(remainder, index);
+        } else {
+            addSource(remainder, index);
+            // windows overlap by maxDepth + 1 characters, so that every substring that short is in one of them
+            int stride = Math.max(maxDepth, MIN_WINDOW_STRIDE);
+            int window = stride + maxDepth + 1;
+            for (int from = 0; ; from += stride) {
+                if (from + window >= remainder.length()) {
+                    insert(remainder.substring(from), index);
+                    break;
+                }
+                insert(remainder.substring(from, from + window) + TRUNCATION_SYMBOL, index);
+            }
+        }
 
+        if (null != m) {
+            m.record(Operation.PUT, start, key.length(), 0);
+        }
+    }
+
+    /**
+     * Tests whether the given key can be added to this tree: every character must fit in a
+     * single byte (either ASCII or a byte above 0x7F, as mapped by ByteSequence), and depth-limited
+     * trees also reject the symbol that ends their cut windows.
+     *
+     * @param key the key to test
+     * @return true if put would accept <tt>key</tt>
+     */
+    public boolean isValidKey(CharSequence key) {
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c != (char) (byte) c || isReserved(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Tests whether the given character is reserved by this tree, i.e. whether it is the symbol
+     * that ends the cut windows of a depth-limited tree: a query holding it cannot match any key
+     */
+    boolean isReserved(char c) {
+        return maxDepth > 0 && c == TRUNCATION_SYMBOL;
+    }
+
+    private boolean isTruncated(CharSequence key) {
+        if (maxDepth > 0) {
+            for (int i = 0; i < key.length(); i++) {
+                if (isReserved(key.charAt(i))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void checkKey(CharSequence key) {
+        if (!isValidKey(key)) {
+            throw new IllegalArgumentException("Illegal input key " + key + ".");
+        }
+    }
+
+    private void addSource(String key, int index) {
+        if (sources == sourceKeys.length) {
+            sourceKeys = Arrays.copyOf(sourceKeys, sources * 2);
+            sourceIndexes = Arrays.copyOf(sourceIndexes, sources * 2);
+        }
+        sourceKeys[sources] = key;
+        sourceIndexes[sources++] = index;
+    }
+
+    /**
+     * Adds all the suffixes of the given string to the tree
+     *
+     * @param remainder the string to add, that must end with a symbol that does not appear elsewhere in it
+     * @param index the value to add to the index
+     */
+    private void insert(String remainder, int index) {
         // reset activeLeaf
         activeLeaf = root;
 
-        String remainder = startSymbol + key + endSymbol;
         Node s = root;
 
         // proceed with tree construction (closely related to procedure in
@@ -249,7 +785,6 @@ public class GeneralizedSuffixTree {
         if (null == activeLeaf.getSuffix() && activeLeaf != root && activeLeaf != s) {
             activeLeaf.setSuffix(s);
         }
-
     }
 
     /**
@@ -279,7 +814,7 @@ public class GeneralizedSuffixTree {
         String str = ret.getSecond();
 
         if (!"".equals(str)) {
-            Edge g = s.getEdge(str.charAt(0));
+            Node g = s.getChild(str.charAt(0));
 
             String label = g.getLabel();
             // must see whether "str" is substring of the label of an edge
@@ -290,44 +825,42 @@ public class GeneralizedSuffixTree {
                 String newlabel = label.substring(str.length());
                 assert (label.startsWith(str));
 
-                // build a new node
-                Node r = new Node();
-                // build a new edge
-                Edge newedge = new Edge(str, r);
+                // build a new node, reached by the first part of the edge
+                Node r = new Node(str);
+                recordSplit();
 
                 g.setLabel(newlabel);
 
                 // link s -> r
-                r.addEdge(newlabel.charAt(0), g);
-                s.addEdge(str.charAt(0), newedge);
+                r.addChild(g);
+                s.addChild(r);
 
                 return new Pair<Boolean, Node>(false, r);
             }
 
         } else {
-            Edge e = s.getEdge(t);
+            Node e = s.getChild(t);
             if (null == e) {
                 // if there is no t-transtion from s
                 return new Pair<Boolean, Node>(false, s);
             } else {
                 if (remainder.equals(e.getLabel())) {
                     // update payload of destination node
-                    e.getDest().addRef(value);
+                    addRef(e, value);
                     return new Pair<Boolean, Node>(true, s);
                 } else if (remainder.startsWith(e.getLabel())) {
                     return new Pair<Boolean, Node>(true, s);
                 } else if (e.getLabel().startsWith(remainder)) {
                     // need to split as above
-                    Node newNode = new Node();
-                    newNode.addRef(value);
-
-                    Edge newEdge = new Edge(remainder, newNode);
+                    Node newNode = new Node(remainder);
+                    recordSplit();
+                    addRef(newNode, value);
 
                     e.setLabel(e.getLabel().substring(remainder.length()));
 
-                    newNode.addEdge(e.getLabel().charAt(0), e);
+                    newNode.addChild(e);
 
-                    s.addEdge(t, newEdge);
+                    s.addChild(newNode);
 
                     return new Pair<Boolean, Node>(false, s);
                 } else {
@@ -352,13 +885,13 @@ public class GeneralizedSuffixTree {
         } else {
             Node currentNode = s;
             String str = inputstr;
-            Edge g = s.getEdge(str.charAt(0));
+            Node g = s.getChild(str.charAt(0));
             // descend the tree as long as a proper label is found
             while (g != null && str.startsWith(g.getLabel())) {
                 str = str.substring(g.getLabel().length());
-                currentNode = g.getDest();
+                currentNode = g;
                 if (str.length() > 0) {
-                    g = currentNode.getEdge(str.charAt(0));
+                    g = currentNode.getChild(str.charAt(0));
                 }
             }
 
@@ -400,17 +933,16 @@ public class GeneralizedSuffixTree {
         // line 2
         while (!endpoint) {
             // line 3
-            Edge tempEdge = r.getEdge(newChar);
-            if (null != tempEdge) {
+            Node existing = r.getChild(newChar);
+            if (null != existing) {
                 // such a node is already present. This is one of the main differences from Ukkonen's case:
                 // the tree can contain deeper nodes at this stage because different strings were added by previous iterations.
-                leaf = tempEdge.getDest();
+                leaf = existing;
             } else {
                 // must build a new leaf
-                leaf = new Node();
-                leaf.addRef(value);
-                Edge newedge = new Edge(rest, leaf);
-                r.addEdge(newChar, newedge);
+                leaf = new Node(rest);
+                addRef(leaf, value);
+                r.addChild(leaf);
             }
 
             // update suffix link for newly created leaf
@@ -455,10 +987,46 @@ public class GeneralizedSuffixTree {
         return new Pair<Node, String>(s, tempstr);
     }
 
+    /**
+     * Adds the given index to the node and to its suffixes, keeping track of the suffix links followed
+     */
+    private void addRef(Node node, int index) {
+        if (deferredReferences) {
+            if (pending == pendingNodes.length) {
+                pendingNodes = Arrays.copyOf(pendingNodes, Math.max(16, pending * 2));
+                pendingIndexes = Arrays.copyOf(pendingIndexes, pendingNodes.length);
+            }
+            pendingNodes[pending] = node;
+            pendingIndexes[pending++] = index;
+            return;
+        }
+        int hops = node.addRef(index);
+        TreeMetrics m = metrics;
+        if (null != m) {
+            m.suffixHops(hops);
+        }
+    }
+
+    private void recordSplit() {
+        TreeMetrics m = metrics;
+        if (null != m) {
+            m.nodeSplit();
+        }
+    }
+
     Node getRoot() {
+        flushPending();
         return root;
     }
 
+    char getStartSymbol() {
+        return startSymbol;
+    }
+
+    char getEndSymbol() {
+        return endSymbol;
+    }
+
     private String safeCutLastChar(String seq) {
         if (seq.length() == 0) {
             return "";
@@ -467,7 +1035,199 @@ public class GeneralizedSuffixTree {
     }
 
     public int computeCount() {
-        return root.computeAndCacheCount();
+        flushPending();
+        int count = root.computeAndCacheCount();
+        countsCurrent = true;
+        return count;
+    }
+
+    /**
+     * Returns the metrics attached to this tree, or null if instrumentation is disabled
+     */
+    public TreeMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Enables (or disables) the collection of latency histograms and work counters.
+     *
+     * Metrics can be switched at any time, also while other threads are using the tree.
+     *
+     * @param metrics the metrics to update, or null to disable instrumentation
+     * @see TreeMetrics
+     */
+    public void setMetrics(TreeMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Walks the whole tree and returns its node counts, shape histograms and
+     * estimated memory footprint.
+     *
+     * @return a snapshot of the current statistics of the tree
+     * @see SuffixTreeMonitor
+     */
+    public TreeStatistics getStatistics() {
+        flushPending();
+        return TreeStatistics.collect(root, minimized);
+    }
+
+    /**
+     * Freezes the tree and merges all its identical subtrees, turning it into a directed acyclic
+     * graph that answers every query exactly as before.
+     *
+     * Subtrees are identical when they have the same edge labels and store the same indexes,
+     * which is common for the suffixes shared by many keys, such as the tails of URLs or the
+     * templates of log lines: the more repetitive the keys, the more memory is saved.
+     * Equal edges, labels and payloads are shared as well.
+     *
+     * Suffix links are dropped, so a minimized tree cannot be extended: any later call to put
+     * raises an IllegalStateException. The tree must not be used by other threads while it is
+     * being minimized; calling this method again has no effect.
+     *
+     * @see TreeMinimizer
+     */
+    public void minimize() {
+        if (minimized) {
+            return;
+        }
+        flushPending();
+        TreeMinimizer.minimize(root);
+        activeLeaf = root;
+        minimized = true;
+    }
+
+    /**
+     * Tests whether minimize has been called, i.e. whether the tree is frozen
+     */
+    public boolean isMinimized() {
+        return minimized;
+    }
+
+    /**
+     * Adds all the keys of another tree to this one, with their indexes, as if they had been put
+     * into this tree.
+     *
+     * The two trees are walked together and <tt>other</tt> is copied where it does not overlap
+     * with this tree, so merging a small tree into a large one costs about the size of the small
+     * one, rather than a rebuild. Indexes may interleave with the ones of this tree: later calls to
+     * put must use indexes not less than any index of either tree.
+     *
+     * <tt>other</tt> is not modified. Like put, merge must not run concurrently with other
+     * operations on this tree, and <tt>other</tt> must not be modified while it is merged.
+     *
+     * @param other the tree whose keys are added to this one
+     * @throws IllegalStateException if this tree has been minimized
+     * @throws IllegalArgumentException if the other tree is minimized, or if the trees have
+     * different depth limits
+     * @see TreeMerger
+     */
+    public void merge(GeneralizedSuffixTree other) {
+        if (minimized) {
+            throw new IllegalStateException("The tree has been minimized and cannot be modified");
+        }
+        if (other == this || other.minimized) {
+            throw new IllegalArgumentException("Cannot merge a tree with itself or with a minimized tree");
+        }
+        if (other.maxDepth != maxDepth) {
+            throw new IllegalArgumentException("Cannot merge trees with different depth limits");
+        }
+        flushPending();
+        other.flushPending();
+
+        TreeMerger.merge(root, other.root);
+        countsCurrent = false;
+        activeLeaf = root;
+        last = Math.max(last, other.last);
+        if (maxDepth > 0) {
+            mergeSources(other);
+        }
+    }
+
+    /**
+     * Merges the keys of a depth-limited tree into the ones of this tree, keeping them sorted by index
+     */
+    private void mergeSources(GeneralizedSuffixTree other) {
+        String[] keys = new String[Math.max(16, sources + other.sources)];
+        int[] indexes = new int[keys.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < sources || j < other.sources) {
+            if (j == other.sources || (i < sources && sourceIndexes[i] <= other.sourceIndexes[j])) {
+                keys[k] = sourceKeys[i];
+                indexes[k++] = sourceIndexes[i++];
+            } else {
+                keys[k] = other.sourceKeys[j];
+                indexes[k++] = other.sourceIndexes[j++];
+            }
+        }
+        sourceKeys = keys;
+        sourceIndexes = indexes;
+        sources = k;
+    }
+
+    /**
+     * Switches the deferred reference mode on or off.
+     *
+     * Every index stored in a node must also be stored in the nodes along its suffix links, that
+     * represent the suffixes of the same substring. In deferred mode, put does not touch the
+     * payloads at all: it only logs the nodes where the index must be added, and the log is
+     * replayed in a single pass by flushReferences. This makes put cheaper, which is useful when
+     * many keys are added in a row, e.g. while loading a corpus, at the price of keeping the log
+     * until the next flush.
+     *
+     * The log is replayed automatically by the first query that follows a put, so a tree in
+     * deferred mode must not be searched concurrently with (or right after) put without calling
+     * flushReferences first: like put, the replay modifies the tree.
+     * Switching the mode off flushes the log.
+     *
+     * @param deferred true to defer the propagation of the references
+     * @see GeneralizedSuffixTree#flushReferences()
+     */
+    public void setDeferredReferences(boolean deferred) {
+        this.deferredReferences = deferred;
+        if (!deferred) {
+            flushReferences();
+        }
+    }
+
+    /**
+     * Tests whether the propagation of the references is deferred
+     */
+    public boolean isDeferredReferences() {
+        return deferredReferences;
+    }
+
+    /**
+     * Propagates the references logged by put in deferred mode, so that the tree can be
+     * searched by several threads at once. Does nothing if there are no pending references.
+     *
+     * @return the number of references that were pending
+     */
+    public int flushReferences() {
+        int count = pending;
+        if (count == 0) {
+            return 0;
+        }
+        long hops = 0;
+        for (int i = 0; i < count; i++) {
+            hops += pendingNodes[i].addRef(pendingIndexes[i]);
+        }
+        pendingNodes = new Node[0];
+        pendingIndexes = new int[0];
+        pending = 0;
+        TreeMetrics m = metrics;
+        if (null != m) {
+            m.suffixHops(hops);
+        }
+        return count;
+    }
+
+    private void flushPending() {
+        if (pending > 0) {
+            flushReferences();
+        }
     }
 
     /**
@@ -0,0 +1,61 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A TokenDictionary that assigns consecutive ids (0, 1, 2...) to the tokens in the order they
+ * are added.
+ *
+ * As the trees, the dictionary can be read by several threads, but it must not be modified
+ * concurrently.
+ */
+public class HashTokenDictionary implements TokenDictionary {
+
+    private final Map<String, Integer> ids = new HashMap<String, Integer>();
+    private final List<String> tokens = new ArrayList<String>();
+
+    @Override
+    public int add(String token) {
+        Integer id = ids.get(token);
+        if (id == null) {
+            id = tokens.size();
+            ids.put(token, id);
+            tokens.add(token);
+        }
+        return id;
+    }
+
+    @Override
+    public int lookup(String token) {
+        Integer id = ids.get(token);
+        return id == null ? NOT_FOUND : id;
+    }
+
+    @Override
+    public String token(int id) {
+        return id >= 0 && id < tokens.size() ? tokens.get(id) : null;
+    }
+
+    @Override
+    public int size() {
+        return tokens.size();
+    }
+}
@@ -0,0 +1,353 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A set of non-negative ints, used to deduplicate the indexes collected from a subtree.
+ *
+ * Indexes are recorded in a bitset as long as it stays small with respect to the number of
+ * elements (i.e. while the ids are dense), and in an open addressing hash table otherwise.
+ * The elements are also appended to a plain array, in insertion order, which makes iteration
+ * and clear proportional to the size of the set rather than to its capacity: the same instance
+ * can be reused for many collections without allocating.
+ */
+final class IndexSet {
+
+    private static final int EMPTY = -1;
+    /**
+     * The bitset never grows beyond this number of words (2MB)
+     */
+    private static final int MAX_DENSE_WORDS = 1 << 18;
+    /**
+     * clear keeps at most this number of bitset words (32KB), so that a reused set does not hold
+     * on to the memory of the largest collection it ever made
+     */
+    private static final int MAX_RETAINED_WORDS = 1 << 12;
+
+    /**
+     * The elements, in insertion order
+     */
+    private int[] values = new int[16];
+    private int size = 0;
+    /**
+     * The dense part: bit i is set when i is in the set, for i < bits.length * 64
+     */
+    private long[] bits;
+    /**
+     * The bitset may always grow up to this number of words, regardless of the size of the set
+     */
+    private final int minDenseWords;
+    /**
+     * The sparse part: the elements not covered by the bitset, EMPTY marking free slots
+     */
+    private int[] table;
+    private int tableSize = 0;
+
+    /**
+     * @param minDenseWords the number of bitset words that can be used regardless of the size
+     *                      of the set: bigger values trade memory for speed
+     */
+    IndexSet(int minDenseWords) {
+        this.minDenseWords = minDenseWords;
+        this.bits = new long[0];
+    }
+
+    /**
+     * Adds the given index to the set
+     *
+     * @return true if the index was not in the set yet
+     */
+    boolean add(int value) {
+        int word = value >>> 6;
+        if (word >= bits.length && !growBits(word)) {
+            if (!addSparse(value)) {
+                return false;
+            }
+        } else {
+            long mask = 1L << value;
+            if ((bits[word] & mask) != 0) {
+                return false;
+            }
+            bits[word] |= mask;
+        }
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+        return true;
+    }
+
+    /**
+     * Adds all the elements of the given set to this one
+     */
+    void addAll(IndexSet other) {
+        for (int i = 0; i < other.size; i++) {
+            add(other.values[i]);
+        }
+    }
+
+    boolean contains(int value) {
+        int word = value >>> 6;
+        if (word < bits.length) {
+            return (bits[word] & (1L << value)) != 0;
+        }
+        return table != null && table[find(value)] == value;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of words currently allocated to the bitset
+     */
+    int getDenseWords() {
+        return bits.length;
+    }
+
+    /**
+     * Returns the i-th element of the set, in insertion order
+     */
+    int get(int i) {
+        return values[i];
+    }
+
+    /**
+     * Removes all the elements, keeping the allocated capacity (up to a limit)
+     */
+    void clear() {
+        if (bits.length > Math.max(minDenseWords, MAX_RETAINED_WORDS)) {
+            bits = new long[0];
+        } else {
+            for (int i = 0; i < size; i++) {
+                int word = values[i] >>> 6;
+                if (word < bits.length) {
+                    bits[word] = 0;
+                }
+            }
+        }
+        if (tableSize > 0) {
+            if (table.length > 1024) {
+                table = null;
+            } else {
+                Arrays.fill(table, EMPTY);
+            }
+            tableSize = 0;
+        }
+        if (values.length > 1 << 16) {
+            values = new int[16];
+        }
+        size = 0;
+    }
+
+    /**
+     * Returns a sorted copy of this set
+     */
+    Set<Integer> toSet() {
+        int[] sorted = Arrays.copyOf(values, size);
+        Arrays.sort(sorted);
+        return new SortedSet(sorted);
+    }
+
+    /**
+     * Grows the bitset to cover the given word, if it does not take more than two words per element.
+     * The elements of the sparse part that fall in the new range are moved to the bitset.
+     *
+     * @return false if the bitset was not grown
+     */
+    private boolean growBits(int word) {
+        int words = Math.max(bits.length * 2, word + 1);
+        if (word >= MAX_DENSE_WORDS || words > Math.max(minDenseWords, 2 * (size + 1))) {
+            return false;
+        }
+        bits = Arrays.copyOf(bits, Math.min(words, MAX_DENSE_WORDS));
+        if (tableSize > 0) {
+            int[] old = table;
+            table = new int[old.length];
+            Arrays.fill(table, EMPTY);
+            tableSize = 0;
+            for (int value : old) {
+                if (value == EMPTY) {
+                    continue;
+                }
+                int w = value >>> 6;
+                if (w < bits.length) {
+                    bits[w] |= 1L << value;
+                } else {
+                    addSparse(value);
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean addSparse(int value) {
+        if (table == null) {
+            table = new int[16];
+            Arrays.fill(table, EMPTY);
+        } else if (2 * (tableSize + 1) > table.length) {
+            int[] old = table;
+            table = new int[old.length * 2];
+            Arrays.fill(table, EMPTY);
+            for (int v : old) {
+                if (v != EMPTY) {
+                    table[find(v)] = v;
+                }
+            }
+        }
+        int slot = find(value);
+        if (table[slot] == value) {
+            return false;
+        }
+        table[slot] = value;
+        tableSize++;
+        return true;
+    }
+
+    /**
+     * Returns the slot holding the given value, or the empty slot where it should be inserted
+     */
+    private int find(int value) {
+        int mask = table.length - 1;
+        int slot = (value * 0x9E3779B9) >>> Integer.numberOfLeadingZeros(mask);
+        while (table[slot] != EMPTY && table[slot] != value) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * A set backed by a sorted array of ints.
+     *
+     * The set is mutable, as the HashSets the searches used to return, but the array is shared
+     * until the first modification: the elements are then copied to a TreeSet, so that the set
+     * stays sorted.
+     */
+    static final class SortedSet extends AbstractSet<Integer> {
+
+        private int[] values;
+        /**
+         * The elements once the set has been modified, null before
+         */
+        private TreeSet<Integer> modified;
+
+        SortedSet(int[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (modified != null) {
+                return modified.contains(o);
+            }
+            return o instanceof Integer && Arrays.binarySearch(values, (Integer) o) >= 0;
+        }
+
+        @Override
+        public int size() {
+            return modified != null ? modified.size() : values.length;
+        }
+
+        @Override
+        public boolean add(Integer value) {
+            return modified().add(value);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            return contains(o) && modified().remove(o);
+        }
+
+        @Override
+        public void clear() {
+            values = new int[0];
+            modified = null;
+        }
+
+        /**
+         * Returns the element at the given position, in ascending order
+         */
+        int get(int i) {
+            return array()[i];
+        }
+
+        /**
+         * Returns the backing array, which must not be modified
+         */
+        int[] array() {
+            if (modified != null) {
+                // back to the array representation, until the next modification
+                values = new int[modified.size()];
+                int i = 0;
+                for (int value : modified) {
+                    values[i++] = value;
+                }
+                modified = null;
+            }
+            return values;
+        }
+
+        private TreeSet<Integer> modified() {
+            if (modified == null) {
+                modified = new TreeSet<Integer>();
+                for (int value : values) {
+                    modified.add(value);
+                }
+            }
+            return modified;
+        }
+
+        @Override
+        public Iterator<Integer> iterator() {
+            if (modified != null) {
+                return modified.iterator();
+            }
+            // iterates over the array it started from, even if the set is modified meanwhile
+            final int[] snapshot = values;
+            return new Iterator<Integer>() {
+                private int next = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return next < snapshot.length;
+                }
+
+                @Override
+                public Integer next() {
+                    if (next == snapshot.length) {
+                        throw new NoSuchElementException();
+                    }
+                    return snapshot[next++];
+                }
+
+                @Override
+                public void remove() {
+                    if (next == 0) {
+                        throw new IllegalStateException();
+                    }
+                    modified().remove(snapshot[next - 1]);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,355 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Feeds a GeneralizedSuffixTree from many producer threads.
+ *
+ * GeneralizedSuffixTree.put must be called by a single thread, with non-decreasing indexes.
+ * The pipeline takes care of both: producers submit keys to a bounded queue, and a single writer
+ * thread assigns them consecutive indexes, in the order they were dequeued, and adds them to the
+ * tree in batches. When the queue is full, submit blocks until the writer catches up.
+ *
+ * Every submission gets a future, completed with the index assigned to its first key once all
+ * of its keys are in the tree. Submissions holding a key that the tree does not accept are rejected
+ * before they are queued: their future fails with an IllegalArgumentException, no index is assigned
+ * to them and the tree is not touched.
+ *
+ * Since put cannot be undone, any other error raised while a batch is applied leaves the tree in
+ * an unknown state: the pipeline then fails, and submit and read throw an IllegalStateException.
+ * The submissions of the batch that were added before the failing one still complete normally,
+ * while that one and all the pending ones complete exceptionally.
+ *
+ * While the pipeline is running, the tree must only be accessed through read, which runs
+ * queries under a read lock: batches are applied under the write lock. Trees in deferred reference
+ * mode are flushed at the end of every batch, so the propagation of the references is batched too.
+ *
+ * The queue is based on java.util.concurrent locks rather than monitors, so producers can be
+ * cheap virtual threads on runtimes that support them; the writer thread is created by the
+ * given ThreadFactory.
+ *
+ * <pre>
+ * IngestPipeline pipeline = new IngestPipeline(tree, 0, 1024, 256);
+ * CompletableFuture&lt;Integer&gt; index = pipeline.submit("cacao");
+ * ...
+ * pipeline.close();
+ * </pre>
+ */
+public class IngestPipeline implements Closeable {
+
+    private static final Submission END = new Submission(new String[0]);
+
+    private final GeneralizedSuffixTree tree;
+    private final BlockingQueue<Submission> queue;
+    private final int batchSize;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    /**
+     * Held (shared) by producers while they enqueue, so that close can put the END marker
+     * after the last submission
+     */
+    private final ReadWriteLock submitLock = new ReentrantReadWriteLock();
+    private final Thread writer;
+    private volatile boolean closed = false;
+    /**
+     * The error that stopped the writer, null while the pipeline is healthy
+     */
+    private volatile RuntimeException failure = null;
+    /**
+     * The index that will be assigned to the next key, only accessed by the writer
+     */
+    private int nextIndex;
+
+    /**
+     * Creates a pipeline whose writer is a daemon thread
+     *
+     * @see IngestPipeline#IngestPipeline(GeneralizedSuffixTree, int, int, int, ThreadFactory)
+     */
+    public IngestPipeline(GeneralizedSuffixTree tree, int firstIndex, int capacity, int batchSize) {
+        this(tree, firstIndex, capacity, batchSize, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "suffixtree-ingest");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Creates a pipeline and starts its writer.
+     *
+     * @param tree the tree to feed, which must not be modified by other threads from now on
+     * @param firstIndex the index assigned to the first key; it must not be less than the
+     *                   indexes already in the tree
+     * @param capacity the max number of submissions waiting in the queue
+     * @param batchSize the max number of keys added to the tree under a single write lock
+     * @param threadFactory the factory of the writer thread
+     */
+    public IngestPipeline(GeneralizedSuffixTree tree, int firstIndex, int capacity, int batchSize,
+            ThreadFactory threadFactory) {
+        if (capacity <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("Capacity and batch size must be positive");
+        }
+        this.tree = tree;
+        this.nextIndex = firstIndex;
+        this.queue = new ArrayBlockingQueue<Submission>(capacity);
+        this.batchSize = batchSize;
+        this.writer = threadFactory.newThread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        });
+        writer.start();
+    }
+
+    /**
+     * Submits a key, blocking while the queue is full.
+     *
+     * @param key the key to add to the tree
+     * @return a future completed with the index assigned to <tt>key</tt>, once it is in the tree
+     * @throws IllegalStateException if the pipeline was closed or has failed
+     * @throws InterruptedException if interrupted while waiting for room in the queue
+     */
+    public CompletableFuture<Integer> submit(String key) throws InterruptedException {
+        return submit(new String[] {key});
+    }
+
+    /**
+     * Submits several keys, which will get consecutive indexes, blocking while the queue is full.
+     *
+     * @param keys the keys to add to the tree
+     * @return a future completed with the index assigned to the first key, once all of them are in the tree
+     * @throws IllegalStateException if the pipeline was closed or has failed
+     * @throws InterruptedException if interrupted while waiting for room in the queue
+     */
+    public CompletableFuture<Integer> submit(Collection<String> keys) throws InterruptedException {
+        return submit(keys.toArray(new String[keys.size()]));
+    }
+
+    private CompletableFuture<Integer> submit(String[] keys) throws InterruptedException {
+        for (String key : keys) {
+            if (key == null) {
+                throw new IllegalArgumentException("Keys cannot be null");
+            }
+            if (!tree.isValidKey(key)) {
+                CompletableFuture<Integer> rejected = new CompletableFuture<Integer>();
+                rejected.completeExceptionally(new IllegalArgumentException("Illegal input key " + key + "."));
+                return rejected;
+            }
+        }
+        Submission submission = new Submission(keys);
+        enqueue(submission);
+        return submission.future;
+    }
+
+    /**
+     * Returns a future completed when all the keys submitted so far are in the tree
+     *
+     * @throws IllegalStateException if the pipeline was closed or has failed
+     * @throws InterruptedException if interrupted while waiting for room in the queue
+     */
+    public CompletableFuture<Void> flush() throws InterruptedException {
+        return submit(new String[0]).thenApply(new Function<Integer, Void>() {
+            @Override
+            public Void apply(Integer index) {
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Runs the given function on the tree, while no batch is being applied.
+     *
+     * @param query the function to run, which must not modify the tree
+     * @return the value returned by <tt>query</tt>
+     * @throws IllegalStateException if the pipeline has failed, leaving the tree inconsistent
+     */
+    public <T> T read(Function<GeneralizedSuffixTree, T> query) {
+        lock.readLock().lock();
+        try {
+            checkFailure();
+            return query.apply(tree);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of submissions waiting in the queue
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * Stops accepting submissions and waits until all the pending ones are in the tree.
+     */
+    @Override
+    public void close() {
+        boolean interrupted = false;
+        submitLock.writeLock().lock();
+        try {
+            if (!closed) {
+                closed = true;
+                while (true) {
+                    try {
+                        queue.put(END);
+                        break;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+        } finally {
+            submitLock.writeLock().unlock();
+        }
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void enqueue(Submission submission) throws InterruptedException {
+        submitLock.readLock().lockInterruptibly();
+        try {
+            if (closed) {
+                throw new IllegalStateException("The pipeline is closed");
+            }
+            checkFailure();
+            queue.put(submission);
+        } finally {
+            submitLock.readLock().unlock();
+        }
+    }
+
+    private void checkFailure() {
+        RuntimeException e = failure;
+        if (e != null) {
+            throw new IllegalStateException("The pipeline has failed", e);
+        }
+    }
+
+    /**
+     * The body of the writer thread: takes batches from the queue until close is called
+     */
+    private void drain() {
+        List<Submission> batch = new ArrayList<Submission>();
+        boolean done = false;
+        while (!done) {
+            batch.clear();
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                // only close stops the writer
+                continue;
+            }
+            int keys = batch.get(0).keys.length;
+            while (keys < batchSize && batch.get(batch.size() - 1) != END) {
+                Submission next = queue.poll();
+                if (next == null) {
+                    break;
+                }
+                batch.add(next);
+                keys += next.keys.length;
+            }
+            done = apply(batch);
+        }
+    }
+
+    /**
+     * Adds a batch to the tree and completes its futures
+     *
+     * @return true if the batch ends with the END marker
+     */
+    private boolean apply(List<Submission> batch) {
+        boolean done = false;
+        int[] firstIndexes = new int[batch.size()];
+        // the submissions before this one are in the tree, the others fail
+        int applied = failure == null ? batch.size() : 0;
+        int current = 0;
+        RuntimeException error = null;
+        lock.writeLock().lock();
+        try {
+            for (; current < applied; current++) {
+                Submission submission = batch.get(current);
+                if (submission == END) {
+                    break;
+                }
+                firstIndexes[current] = nextIndex;
+                for (String key : submission.keys) {
+                    tree.put(key, nextIndex++);
+                }
+            }
+            current = applied;
+            // readers share the lock, so the batch must be complete before they run
+            tree.flushReferences();
+        } catch (RuntimeException e) {
+            // keys were validated on submission, so the tree may now hold part of the failing
+            // submission; if the flush failed, none of the batch can be trusted
+            failure = e;
+            error = e;
+            applied = current < applied ? current : 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        // complete the futures outside of the lock, since they may run callbacks
+        for (int i = 0; i < batch.size(); i++) {
+            Submission submission = batch.get(i);
+            if (submission == END) {
+                done = true;
+                break;
+            }
+            if (i < applied) {
+                submission.future.complete(firstIndexes[i]);
+            } else if (error != null) {
+                submission.future.completeExceptionally(error);
+            } else {
+                submission.future.completeExceptionally(new IllegalStateException("The pipeline has failed", failure));
+            }
+        }
+        return done;
+    }
+
+    private static final class Submission {
+
+        private final String[] keys;
+        private final CompletableFuture<Integer> future = new CompletableFuture<Integer>();
+
+        Submission(String[] keys) {
+            this.keys = keys;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.util.Arrays;
+
+/**
+ * The children of a TokenNode, keyed by the first token of their label.
+ *
+ * This is the int counterpart of EdgeBag: token ids are not bounded by a byte, so the layout
+ * only has two stages:
+ * <ul>
+ * <li>up to 16 children, keys and values are kept in sorted arrays whose capacity doubles as
+ * they fill up;</li>
+ * <li>above that, they are stored in an open addressing hash table with linear probing, kept at
+ * most half full, so that the nodes with a large fan-out (the root has one child per distinct
+ * token) are still looked up in constant time.</li>
+ * </ul>
+ */
+class IntEdgeMap {
+
+    private static final int SORTED_MAX = 16;
+    private static final int EMPTY = Integer.MIN_VALUE;
+
+    /**
+     * The sorted keys, or the hash table of the keys (EMPTY marking free slots)
+     */
+    private int[] keys = new int[1];
+    private TokenNode[] values = new TokenNode[1];
+    private int size = 0;
+    private boolean hashed = false;
+
+    /**
+     * Returns the child whose label starts with the given token, or null
+     */
+    TokenNode get(int key) {
+        if (hashed) {
+            int mask = keys.length - 1;
+            for (int slot = hash(key) & mask; keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+            }
+            return null;
+        }
+        int idx = Arrays.binarySearch(keys, 0, size, key);
+        return idx < 0 ? null : values[idx];
+    }
+
+    /**
+     * Adds a child, replacing the one whose label starts with the same token, if any
+     */
+    void put(TokenNode child) {
+        int key = child.getLabel()[0];
+        if (hashed) {
+            if (putHashed(key, child)) {
+                size++;
+                if (size * 2 > keys.length) {
+                    rehash(keys.length * 2);
+                }
+            }
+            return;
+        }
+
+        int idx = Arrays.binarySearch(keys, 0, size, key);
+        if (idx >= 0) {
+            values[idx] = child;
+            return;
+        }
+        if (size == SORTED_MAX) {
+            rehash(SORTED_MAX * 4);
+            put(child);
+            return;
+        }
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        idx = -idx - 1;
+        System.arraycopy(keys, idx, keys, idx + 1, size - idx);
+        System.arraycopy(values, idx, values, idx + 1, size - idx);
+        keys[idx] = key;
+        values[idx] = child;
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Copies the children to the given array, starting from <tt>offset</tt>, which must have room
+     * for all of them
+     *
+     * @return the number of children copied
+     */
+    int copyValues(TokenNode[] dest, int offset) {
+        if (!hashed) {
+            System.arraycopy(values, 0, dest, offset, size);
+            return size;
+        }
+        int copied = 0;
+        for (int slot = 0; slot < values.length; slot++) {
+            if (keys[slot] != EMPTY) {
+                dest[offset + copied++] = values[slot];
+            }
+        }
+        return copied;
+    }
+
+    /**
+     * @return true if the key was not in the table
+     */
+    private boolean putHashed(int key, TokenNode child) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                values[slot] = child;
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = child;
+        return true;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        TokenNode[] oldValues = values;
+        int oldLength = hashed ? oldKeys.length : size;
+        keys = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        values = new TokenNode[capacity];
+        for (int i = 0; i < oldLength; i++) {
+            if (oldKeys[i] != EMPTY) {
+                putHashed(oldKeys[i], oldValues[i]);
+            }
+        }
+        hashed = true;
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free latency histogram with power-of-two buckets.
+ *
+ * Bucket i counts the samples whose value v (in nanoseconds) satisfies 2^(i-1) &lt;= v &lt; 2^i,
+ * so percentiles are reported with a precision of a factor of two, which is enough to
+ * tell apart microsecond lookups from millisecond subtree walks at a negligible recording cost.
+ *
+ * @see TreeMetrics
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 64;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets[BUCKETS - Long.numberOfLeadingZeros(nanos)].increment();
+        totalNanos.add(nanos);
+        long max = maxNanos.get();
+        while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+            max = maxNanos.get();
+        }
+    }
+
+    /**
+     * Returns the number of recorded samples
+     */
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the sum of all the recorded latencies, in nanoseconds
+     */
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    /**
+     * Returns the highest recorded latency, in nanoseconds
+     */
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * Returns the average latency, in nanoseconds
+     */
+    public double getMeanNanos() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) getTotalNanos() / count;
+    }
+
+    /**
+     * Returns an upper bound of the given percentile of the recorded latencies.
+     *
+     * @param percentile the percentile to compute, between 0 and 100
+     * @return the upper bound (in nanoseconds) of the bucket that contains the percentile
+     */
+    public long getPercentileNanos(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Invalid percentile " + percentile);
+        }
+        long[] counts = getBuckets();
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile / 100 * total);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank && seen > 0) {
+                return Math.min(i == 0 ? 0 : (1L << i) - 1, getMaxNanos());
+            }
+        }
+        return getMaxNanos();
+    }
+
+    /**
+     * Returns a snapshot of the bucket counts: element i counts the latencies
+     * between 2^(i-1) (inclusive) and 2^i (exclusive) nanoseconds
+     */
+    public long[] getBuckets() {
+        long[] ret = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            ret[i] = buckets[i].sum();
+        }
+        return ret;
+    }
+
+    /**
+     * Clears all the recorded samples
+     */
+    public void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        totalNanos.reset();
+        maxNanos.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + getCount()
+                + ", mean=" + (long) getMeanNanos() + "ns"
+                + ", p50=" + getPercentileNanos(50) + "ns"
+                + ", p99=" + getPercentileNanos(99) + "ns"
+                + ", max=" + getMaxNanos() + "ns";
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+/**
+ * Estimates the heap size of the objects the tree is made of.
+ *
+ * The figures assume a 64-bit HotSpot JVM with compressed oops and compact strings
+ * (the default for heaps smaller than 32GB), i.e. 12 bytes object headers, 16 bytes array headers,
+ * 4 bytes references and 8 bytes alignment.
+ */
+final class MemoryLayout {
+
+    static final int OBJECT_HEADER = 12;
+    static final int ARRAY_HEADER = 16;
+    static final int REFERENCE = 4;
+    static final int INT = 4;
+    static final int ALIGNMENT = 8;
+
+    /**
+     * The size of a String object, excluding its backing array (value, hash, coder and hashIsZero fields)
+     */
+    private static final int STRING = align(OBJECT_HEADER + REFERENCE + INT + 2);
+
+    private MemoryLayout() {
+    }
+
+    static int align(int size) {
+        return (size + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+    static long align(long size) {
+        return (size + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+    /**
+     * Returns the size of an object with the given number of reference and int fields
+     */
+    static int object(int references, int ints) {
+        return align(OBJECT_HEADER + references * REFERENCE + ints * INT);
+    }
+
+    static long byteArray(int length) {
+        return align((long) ARRAY_HEADER + length);
+    }
+
+    static long intArray(int length) {
+        return align((long) ARRAY_HEADER + (long) length * INT);
+    }
+
+    static long referenceArray(int length) {
+        return align((long) ARRAY_HEADER + (long) length * REFERENCE);
+    }
+
+    /**
+     * Returns the size of a String made of latin-1 characters, including its backing array
+     */
+    static long string(int length) {
+        return STRING + byteArray(length);
+    }
+}
@@ -15,48 +15,51 @@
  */
 package com.abahgat.suffixtree;
 
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.Collections;
 
 /**
- * Represents a node of the generalized suffix tree graph
+ * Represents a node of the generalized suffix tree graph, together with the edge that leads to it.
+ *
+ * Edges are not objects on their own: since every node but the root has exactly one parent, the
+ * label of the incoming edge is stored in the node, and a node is its parent's edge towards it.
+ * Leaves (most of the nodes) do not allocate a map of children, and nodes without indexes share
+ * the same empty payload.
  * @see GeneralizedSuffixTree
  */
 class Node {
 
+    /**
+     * The estimated heap size of a Node, excluding the objects it references
+     * @see MemoryLayout
+     */
+    static final int SHALLOW_SIZE = MemoryLayout.object(4, 1);
+
     /**
      * The payload array used to store the data (indexes) associated with this node.
      * In this case, it is used to store all property indexes.
      * 
-     * As it is handled, it resembles an ArrayList: when it becomes full it 
-     * is copied to another bigger array (whose size is equals to data.length +
-     * INCREMENT).
+     * The array grows by one element at a time, so it is always full and its length is the
+     * number of indexes: when a new index is added, it is copied to a one element longer array.
      * 
      * Originally it was a List<Integer> but it took too much memory, changing
      * it to int[] take less memory because indexes are stored using native
      * types.
      */
-    private int[] data;
+    private int[] data = EMPTY;
     /**
-     * Represents index of the last position used in the data int[] array.
-     * 
-     * It should always be less than data.length
+     * The payload of all the nodes without indexes
      */
-    private int lastIdx = 0;
+    private static final int[] EMPTY = new int[0];
     /**
-     * The starting size of the int[] array containing the payload
+     * The label of the edge that leads to this node (empty for the root)
      */
-    private static final int START_SIZE = 0;
+    private String label;
     /**
-     * The increment in size used when the payload array is full
+     * The children of this node, keyed by the first character of their label, or null for leaves
      */
-    private static final int INCREMENT = 1;
-    /**
-     * The set of edges starting from this node
-     */
-    private final Map<Character, Edge> edges;
+    private EdgeBag children;
     /**
      * The suffix link as described in Ukkonen's paper.
      * if str is the string denoted by the path from the root to this, this.suffix
@@ -72,14 +75,30 @@ class Node {
      * @see Node#computeAndCacheCount() 
      */
     private int resultCount = -1;
+    /**
+     * The set used by getData to deduplicate indexes, reused by each thread
+     */
+    private static final ThreadLocal<IndexSet> COLLECTOR = new ThreadLocal<IndexSet>() {
+        @Override
+        protected IndexSet initialValue() {
+            return new IndexSet(1024);
+        }
+    };
 
     /**
-     * Creates a new Node
+     * Creates a root node
      */
     Node() {
-        edges = new EdgeBag();
-        suffix = null;
-        data = new int[START_SIZE];
+        this("");
+    }
+
+    /**
+     * Creates a new Node
+     *
+     * @param label the label of the edge that leads to the node
+     */
+    Node(String label) {
+        this.label = label;
     }
 
     /**
@@ -95,80 +114,196 @@ class Node {
      *
      * Gets data from the payload of both this node and its children, the string representation
      * of the path to this node is a substring of the one of the children nodes.
+     *
+     * The subtree is visited depth-first with an explicit stack, so that deep trees cannot
+     * overflow the call stack, and indexes are deduplicated in a per-thread IndexSet that is
+     * reused across calls. The visit stops with a CancellationException if the Cancellation
+     * of the current thread is raised.
      * 
      * @param numElements the number of results to return. Use -1 to get all
-     * @return the first <tt>numElements</tt> associated to this node and children
+     * @return the first <tt>numElements</tt> associated to this node and children, as a sorted set
      */
     Collection<Integer> getData(int numElements) {
-        Set<Integer> ret = new HashSet<Integer>();
-        for (int num : data) {
-            ret.add(num);
-            if (ret.size() == numElements) {
-                return ret;
-            }
-        }
-        // need to get more matches from child nodes. This is what may waste time
-        for (Edge e : edges.values()) {
-            if (-1 == numElements || ret.size() < numElements) {
-                for (int num : e.getDest().getData()) {
-                    ret.add(num);
-                    if (ret.size() == numElements) {
-                        return ret;
-                    }
-                }
+        return getData(numElements, null);
+    }
+
+    /**
+     * Returns the first <tt>numElements</tt> indexes of the subtree, reporting the number of
+     * indexes visited to the given metrics (if not null)
+     * @see Node#getData(int)
+     */
+    Collection<Integer> getData(int numElements, TreeMetrics metrics) {
+        IndexSet collected = COLLECTOR.get();
+        try {
+            int visited = collect(collected, numElements);
+            if (metrics != null) {
+                metrics.collectedIndexes(visited);
             }
+            return collected.toSet();
+        } finally {
+            collected.clear();
         }
-        return ret;
     }
 
     /**
-     * Adds the given <tt>index</tt> to the set of indexes associated with <tt>this</tt>
+     * Returns the number of distinct indexes stored in this node and in its subtree, without
+     * building the set getData would return. The number of indexes visited is reported to the
+     * given metrics, if not null.
      */
-    void addRef(int index) {
-        if (contains(index)) {
-            return;
+    int countData(TreeMetrics metrics) {
+        IndexSet collected = COLLECTOR.get();
+        try {
+            int visited = collect(collected, -1);
+            if (metrics != null) {
+                metrics.collectedIndexes(visited);
+            }
+            return collected.size();
+        } finally {
+            collected.clear();
         }
+    }
 
-        addIndex(index);
+    /**
+     * Adds the indexes of the subtree to the given set, until it holds <tt>numElements</tt> of them
+     *
+     * @return the number of indexes visited, duplicates included
+     */
+    private int collect(IndexSet collected, int numElements) {
+        Cancellation cancellation = Cancellation.current();
+        Node[] stack = new Node[16];
+        int top = 0;
+        int visited = 0;
+        int ids = 0;
+        stack[top++] = this;
+        while (top > 0) {
+            if (++visited % Cancellation.CHECK_INTERVAL == 0) {
+                Cancellation.check(cancellation);
+            }
+            Node node = stack[--top];
+            for (int i = 0; i < node.data.length; i++) {
+                ids++;
+                if (collected.add(node.data[i]) && collected.size() == numElements) {
+                    return ids;
+                }
+            }
+            // visit the children in order: push them in reverse
+            Collection<Node> children = node.getChildren();
+            if (top + children.size() > stack.length) {
+                stack = Arrays.copyOf(stack, Math.max(stack.length * 2, top + children.size()));
+            }
+            int end = top + children.size();
+            for (Node child : children) {
+                stack[--end] = child;
+            }
+            top += children.size();
+        }
+        return ids;
+    }
 
-        // add this reference to all the suffixes as well
-        Node iter = this.suffix;
-        while (iter != null) {
-            if (iter.contains(index)) {
-                break;
+    /**
+     * Returns the subset of the given indexes that is stored in the subtree of this node.
+     *
+     * The subtree is only visited until all the candidates have been found.
+     *
+     * @param candidates sorted indexes, without duplicates
+     * @return the indexes found, sorted
+     */
+    int[] retain(int[] candidates) {
+        boolean[] found = new boolean[candidates.length];
+        int count = 0;
+        Cancellation cancellation = Cancellation.current();
+        Node[] stack = new Node[16];
+        int top = 0;
+        int visited = 0;
+        stack[top++] = this;
+        while (top > 0 && count < candidates.length) {
+            if (++visited % Cancellation.CHECK_INTERVAL == 0) {
+                Cancellation.check(cancellation);
+            }
+            Node node = stack[--top];
+            for (int i = 0; i < node.data.length; i++) {
+                int pos = Arrays.binarySearch(candidates, node.data[i]);
+                if (pos >= 0 && !found[pos]) {
+                    found[pos] = true;
+                    count++;
+                }
+            }
+            Collection<Node> children = node.getChildren();
+            if (top + children.size() > stack.length) {
+                stack = Arrays.copyOf(stack, Math.max(stack.length * 2, top + children.size()));
+            }
+            for (Node child : children) {
+                stack[top++] = child;
             }
-            iter.addRef(index);
-            iter = iter.suffix;
         }
 
+        int[] ret = new int[count];
+        for (int i = 0, j = 0; j < count; i++) {
+            if (found[i]) {
+                ret[j++] = candidates[i];
+            }
+        }
+        return ret;
     }
 
     /**
-     * Tests whether a node contains a reference to the given index.
-     * 
-     * <b>IMPORTANT</b>: it works because the array is sorted by construction
-     * 
-     * @param index the index to look for
-     * @return true <tt>this</tt> contains a reference to index
+     * Estimates the number of different indexes stored in the subtree of this node.
+     *
+     * Returns the cached count if computeAndCacheCount was called (even if the tree changed since),
+     * otherwise the number of postings in the subtree, counting duplicates, up to the given limit.
      */
-    private boolean contains(int index) {
-        int low = 0;
-        int high = lastIdx - 1;
+    int estimateCount(int limit) {
+        if (resultCount >= 0) {
+            return resultCount;
+        }
+        int count = 0;
+        Node[] stack = new Node[16];
+        int top = 0;
+        stack[top++] = this;
+        while (top > 0 && count < limit) {
+            Node node = stack[--top];
+            count += node.data.length;
+            Collection<Node> children = node.getChildren();
+            if (top + children.size() > stack.length) {
+                stack = Arrays.copyOf(stack, Math.max(stack.length * 2, top + children.size()));
+            }
+            for (Node child : children) {
+                stack[top++] = child;
+            }
+        }
+        return Math.min(count, limit);
+    }
 
-        while (low <= high) {
-            int mid = (low + high) >>> 1;
-            int midVal = data[mid];
+    /**
+     * Adds the given <tt>index</tt> to the set of indexes associated with <tt>this</tt>
+     * and to the nodes along its suffix links.
+     *
+     * Indexes are added in non-decreasing order (see GeneralizedSuffixTree#put), so a node
+     * already holds <tt>index</tt> only if it is its last one; the walk stops at the first such node,
+     * since the index was propagated from there already.
+     *
+     * @return the number of suffix links followed to add the index to the suffixes as well
+     */
+    int addRef(int index) {
+        if (endsWith(index)) {
+            return 0;
+        }
+        addIndex(index);
 
-            if (midVal < index)
-            low = mid + 1;
-            else if (midVal > index)
-            high = mid - 1;
-            else
-            return true;
+        // add this reference to all the suffixes as well
+        int hops = 0;
+        for (Node iter = this.suffix; iter != null && !iter.endsWith(index); iter = iter.suffix) {
+            iter.addIndex(index);
+            hops++;
         }
-        return false;
-        // Java 5 equivalent to
-        // return java.util.Arrays.binarySearch(data, 0, lastIdx, index) >= 0;
+        return hops;
+    }
+
+    /**
+     * Tests whether the given index is the last one stored in this node
+     */
+    private boolean endsWith(int index) {
+        return data.length > 0 && data[data.length - 1] == index;
     }
 
     /**
@@ -179,23 +314,89 @@ class Node {
      * @return the number of results
      */
     protected int computeAndCacheCount() {
-        computeAndCacheCountRecursive();
+        computeAndCacheCounts();
         return resultCount;
     }
 
-    private Set<Integer> computeAndCacheCountRecursive() {
-        Set<Integer> ret = new HashSet<Integer>();
-        for (int num : data) {
-            ret.add(num);
+    /**
+     * Computes the counts bottom-up, without recursion: nodes are listed in depth-first order and
+     * then processed backwards, so that every node comes after all of its descendants.
+     * The set of a node is obtained by merging the smaller sets of its children into the larger one.
+     * The smallest and largest index of the subtrees of internal nodes are cached along the way.
+     */
+    private void computeAndCacheCounts() {
+        Node[] order = new Node[16];
+        int[] parents = new int[16];
+        int count = 0;
+        order[count] = this;
+        parents[count++] = -1;
+        for (int i = 0; i < count; i++) {
+            Collection<Node> children = order[i].getChildren();
+            if (count + children.size() > order.length) {
+                order = Arrays.copyOf(order, Math.max(order.length * 2, count + children.size()));
+                parents = Arrays.copyOf(parents, order.length);
+            }
+            for (Node child : children) {
+                order[count] = child;
+                parents[count++] = i;
+            }
         }
-        for (Edge e : edges.values()) {
-            for (int num : e.getDest().computeAndCacheCountRecursive()) {
-                ret.add(num);
+
+        IndexSet[] sets = new IndexSet[count];
+        int[] lowest = new int[count];
+        int[] highest = new int[count];
+        Arrays.fill(lowest, Integer.MAX_VALUE);
+        Arrays.fill(highest, Integer.MIN_VALUE);
+        for (int i = count - 1; i >= 0; i--) {
+            Node node = order[i];
+            IndexSet set = sets[i];
+            if (set == null) {
+                set = new IndexSet(0);
+            }
+            for (int j = 0; j < node.data.length; j++) {
+                set.add(node.data[j]);
+            }
+            node.resultCount = set.size();
+            if (node.data.length > 0) {
+                // payloads are sorted
+                lowest[i] = Math.min(lowest[i], node.data[0]);
+                highest[i] = Math.max(highest[i], node.data[node.data.length - 1]);
+            }
+            if (node.children != null) {
+                node.children.setIndexBounds(lowest[i], highest[i]);
+            }
+            sets[i] = null;
+            order[i] = null;
+
+            int parent = parents[i];
+            if (parent >= 0) {
+                lowest[parent] = Math.min(lowest[parent], lowest[i]);
+                highest[parent] = Math.max(highest[parent], highest[i]);
+                IndexSet siblings = sets[parent];
+                if (siblings == null) {
+                    sets[parent] = set;
+                } else if (siblings.size() >= set.size()) {
+                    siblings.addAll(set);
+                } else {
+                    set.addAll(siblings);
+                    sets[parent] = set;
+                }
             }
         }
+    }
 
-        resultCount = ret.size();
-        return ret;
+    /**
+     * Returns the largest (or the smallest) index stored in the subtree of this node, which must
+     * hold at least one index.
+     *
+     * The bounds of internal nodes are cached by computeAndCacheCount and are not updated when
+     * the subtree changes; leaves read them from their payload.
+     */
+    int getIndexBound(boolean highest) {
+        if (children == null) {
+            return highest ? data[data.length - 1] : data[0];
+        }
+        return highest ? children.getHighestIndex() : children.getLowestIndex();
     }
 
     /**
@@ -217,16 +418,48 @@ class Node {
         return resultCount;
     }
 
-    void addEdge(char ch, Edge e) {
-        edges.put(ch, e);
+    String getLabel() {
+        return label;
+    }
+
+    void setLabel(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Adds the given node as a child of this one, replacing the child whose label starts
+     * with the same character, if any
+     */
+    void addChild(Node child) {
+        if (children == null) {
+            children = new EdgeBag();
+        }
+        children.put(child.label.charAt(0), child);
     }
 
-    Edge getEdge(char ch) {
-        return edges.get(ch);
+    /**
+     * Returns the child whose label starts with the given character, or null
+     */
+    Node getChild(char ch) {
+        return children == null ? null : children.get(ch);
     }
 
-    Map<Character, Edge> getEdges() {
-        return edges;
+    /**
+     * Returns the children of this node, ordered by the first character of their label
+     */
+    Collection<Node> getChildren() {
+        return children == null ? Collections.<Node>emptyList() : children.values();
+    }
+
+    int getChildCount() {
+        return children == null ? 0 : children.size();
+    }
+
+    /**
+     * Returns the estimated heap size of the map of the children, including its arrays
+     */
+    long getChildrenBytes() {
+        return children == null ? 0 : EdgeBag.SHALLOW_SIZE + children.getArraysBytes();
     }
 
     Node getSuffix() {
@@ -237,12 +470,65 @@ class Node {
         this.suffix = suffix;
     }
 
-    private void addIndex(int index) {
-        if (lastIdx == data.length) {
-            int[] copy = new int[data.length + INCREMENT];
-            System.arraycopy(data, 0, copy, 0, data.length);
-            data = copy;
+    /**
+     * Returns the number of indexes stored in this node (excluding its children)
+     */
+    int getDataSize() {
+        return data.length;
+    }
+
+    /**
+     * Returns the payload array of this node, whose length is getDataSize()
+     */
+    int[] getDataArray() {
+        return data;
+    }
+
+    /**
+     * Returns the estimated heap size of the payload array of this node
+     */
+    long getDataBytes() {
+        return data == EMPTY ? 0 : MemoryLayout.intArray(data.length);
+    }
+
+    /**
+     * Adds the first <tt>length</tt> indexes of the given sorted array to the payload of this node,
+     * keeping it sorted and without duplicates
+     */
+    void addAll(int[] indexes, int length) {
+        if (length == 0) {
+            return;
+        }
+        int size = data.length;
+        int[] merged = new int[size + length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < size || j < length) {
+            if (j == length || (i < size && data[i] < indexes[j])) {
+                merged[k++] = data[i++];
+            } else {
+                if (i < size && data[i] == indexes[j]) {
+                    i++;
+                }
+                merged[k++] = indexes[j++];
+            }
         }
-        data[lastIdx++] = index;
+        data = k == merged.length ? merged : Arrays.copyOf(merged, k);
+    }
+
+    /**
+     * Replaces the payload of this node with an equal array, so that nodes storing the same
+     * indexes can share it.
+     * Shared arrays are never written to: since they are full, addIndex copies them first.
+     */
+    void shareData(int[] data) {
+        this.data = data;
+    }
+
+    private void addIndex(int index) {
+        int[] copy = Arrays.copyOf(data, data.length + 1);
+        copy[data.length] = index;
+        data = copy;
     }
 }
@@ -0,0 +1,451 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A read-only copy of a GeneralizedSuffixTree that keeps nodes, edges, labels and payloads in
+ * off-heap memory, so that the size of the index does not affect the heap
+ * size and the GC pauses of the application.
+ *
+ * The tree is built with copyOf and answers the same queries as GeneralizedSuffixTree,
+ * with the same semantics. Off-heap memory is allocated once, with the exact size needed by
+ * the copy, and must be given back explicitly with close; the amount of direct memory
+ * available to the JVM can be set with -XX:MaxDirectMemorySize.
+ *
+ * Every structure is stored in its own DirectArena, as fixed-size records addressed by int handles:
+ * - nodes: NODE_SIZE bytes each, holding the handle of the first outgoing edge, the number of
+ *   outgoing edges and the offset and length of the payload. Suffix links are not needed by
+ *   queries, so they are not copied
+ * - edges: EDGE_SIZE bytes each, holding the offset and length of the label and the handle of
+ *   the destination node. The edges leaving a node are contiguous and sorted by their first
+ *   character, so that they can be binary searched
+ * - labels: one byte per character (edge labels only contain byte-range characters, see EdgeBag)
+ * - postings: the payload of the nodes, as ints
+ *
+ * Queries can be run concurrently; close waits for the running ones to complete.
+ *
+ * @see GeneralizedSuffixTree
+ */
+public class OffHeapSuffixTree implements SubstringIndex, Closeable {
+
+    private static final int ROOT = 0;
+    private static final int NO_NODE = -1;
+
+    /*
+     * Node record layout
+     */
+    private static final int NODE_FIRST_EDGE = 0;
+    private static final int NODE_CHILDREN = 4;
+    private static final int NODE_POSTINGS = 8;
+    private static final int NODE_POSTINGS_LENGTH = 16;
+    private static final int NODE_SIZE = 20;
+
+    /*
+     * Edge record layout
+     */
+    private static final int EDGE_LABEL = 0;
+    private static final int EDGE_LABEL_LENGTH = 8;
+    private static final int EDGE_DEST = 12;
+    private static final int EDGE_SIZE = 16;
+
+    private final DirectArena nodes;
+    private final DirectArena edges;
+    private final DirectArena labels;
+    private final DirectArena postings;
+    private final int nodeCount;
+    private final char startSymbol;
+    private final char endSymbol;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private boolean closed = false;
+    /**
+     * The set used by getData to deduplicate indexes, reused by each thread
+     */
+    private static final ThreadLocal<IndexSet> COLLECTOR = new ThreadLocal<IndexSet>() {
+        @Override
+        protected IndexSet initialValue() {
+            return new IndexSet(1024);
+        }
+    };
+
+    private OffHeapSuffixTree(TreeStatistics stats, char startSymbol, char endSymbol) {
+        if (stats.getNodeCount() > Integer.MAX_VALUE || stats.getEdgeCount() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The tree is too large to be addressed by int handles");
+        }
+        this.nodeCount = (int) stats.getNodeCount();
+        this.startSymbol = startSymbol;
+        this.endSymbol = endSymbol;
+        this.nodes = new DirectArena(stats.getNodeCount() * NODE_SIZE);
+        this.edges = new DirectArena(stats.getEdgeCount() * EDGE_SIZE);
+        this.labels = new DirectArena(stats.getLabelCharacters());
+        this.postings = new DirectArena(stats.getPostings() * MemoryLayout.INT);
+    }
+
+    /**
+     * Copies the given tree into off-heap memory.
+     *
+     * The source tree is not modified and can be discarded afterwards.
+     *
+     * @param tree the tree to copy
+     * @return an off-heap copy of <tt>tree</tt>
+     * @throws IllegalArgumentException if the tree is depth-limited, since the copy does not keep
+     *         the keys needed to verify long queries
+     */
+    public static OffHeapSuffixTree copyOf(GeneralizedSuffixTree tree) {
+        if (tree.getMaxDepth() > 0) {
+            throw new IllegalArgumentException("Depth-limited trees cannot be copied off-heap");
+        }
+        OffHeapSuffixTree copy = new OffHeapSuffixTree(tree.getStatistics(), tree.getStartSymbol(), tree.getEndSymbol());
+        try {
+            copy.copyNodes(tree.getRoot(), tree.isMinimized());
+        } catch (RuntimeException e) {
+            copy.close();
+            throw e;
+        }
+        return copy;
+    }
+
+    /**
+     * Copies the nodes depth-first, with an explicit stack. The handle of a node is assigned when
+     * the edge that leads to it is written, so the edges leaving each node get contiguous handles
+     * and no map from nodes to handles is needed.
+     *
+     * @param shared whether nodes may be reachable through several edges, as in minimized trees:
+     * only then the handles already assigned are kept in a map, so that each node is copied once
+     */
+    private void copyNodes(Node root, boolean shared) {
+        Map<Node, Integer> handles = shared ? new IdentityHashMap<Node, Integer>() : null;
+        Node[] stack = new Node[16];
+        int[] stackHandles = new int[16];
+        int top = 0;
+        Comparator<Node> byFirstByte = new Comparator<Node>() {
+            @Override
+            public int compare(Node a, Node b) {
+                return Byte.compare((byte) a.getLabel().charAt(0), (byte) b.getLabel().charAt(0));
+            }
+        };
+
+        if (handles != null) {
+            handles.put(root, ROOT);
+        }
+        stack[top] = root;
+        stackHandles[top++] = ROOT;
+        int nextNode = 1;
+        int nextEdge = 0;
+        long nextLabel = 0;
+        long nextPosting = 0;
+
+        while (top > 0) {
+            Node node = stack[--top];
+            long record = (long) stackHandles[top] * NODE_SIZE;
+            stack[top] = null;
+
+            int size = node.getDataSize();
+            int[] data = node.getDataArray();
+            for (int i = 0; i < size; i++) {
+                postings.putInt((nextPosting + i) * MemoryLayout.INT, data[i]);
+            }
+            nodes.putLong(record + NODE_POSTINGS, nextPosting);
+            nodes.putInt(record + NODE_POSTINGS_LENGTH, size);
+            nextPosting += size;
+
+            Node[] children = node.getChildren().toArray(new Node[0]);
+            Arrays.sort(children, byFirstByte);
+            nodes.putInt(record + NODE_FIRST_EDGE, nextEdge);
+            nodes.putInt(record + NODE_CHILDREN, children.length);
+            if (top + children.length > stack.length) {
+                stack = Arrays.copyOf(stack, Math.max(stack.length * 2, top + children.length));
+                stackHandles = Arrays.copyOf(stackHandles, stack.length);
+            }
+
+            for (Node child : children) {
+                long edgeRecord = (long) nextEdge++ * EDGE_SIZE;
+                String label = child.getLabel();
+                for (int i = 0; i < label.length(); i++) {
+                    labels.putByte(nextLabel + i, (byte) label.charAt(i));
+                }
+                edges.putLong(edgeRecord + EDGE_LABEL, nextLabel);
+                edges.putInt(edgeRecord + EDGE_LABEL_LENGTH, label.length());
+                nextLabel += label.length();
+
+                Integer dest = handles == null ? null : handles.get(child);
+                if (dest == null) {
+                    dest = nextNode++;
+                    if (handles != null) {
+                        handles.put(child, dest);
+                    }
+                    stack[top] = child;
+                    stackHandles[top++] = dest;
+                }
+                edges.putInt(edgeRecord + EDGE_DEST, dest);
+            }
+        }
+    }
+
+    /**
+     * Searches for the word that starts the string
+     * @param word the key that starts the string
+     * @return the collection of indexes associated with the input <tt>word</tt>
+     * @see GeneralizedSuffixTree#startsWith(String)
+     */
+    public Collection<Integer> startsWith(String word) {
+        if (word == null || word.isEmpty()) {
+            return Collections.EMPTY_LIST;
+        }
+        return search(startSymbol + word);
+    }
+
+    /**
+     * Searches for the word that ends the string
+     * @param word the key that ends the string
+     * @return the collection of indexes associated with the input <tt>word</tt>
+     * @see GeneralizedSuffixTree#endsWith(String)
+     */
+    public Collection<Integer> endsWith(String word) {
+        if (word == null || word.isEmpty()) {
+            return Collections.EMPTY_LIST;
+        }
+        return search(word + endSymbol);
+    }
+
+    /**
+     * Searches for the word within the tree.
+     * @param word the word to search for
+     * @return the collection of indexes associated with the input <tt>word</tt>
+     * @see GeneralizedSuffixTree#searchWord(String)
+     */
+    public Collection<Integer> searchWord(String word) {
+        if (word == null || word.isEmpty()) {
+            return Collections.EMPTY_LIST;
+        }
+        return search(startSymbol + word + endSymbol);
+    }
+
+    /**
+     * Searches for the given word within the tree.
+     *
+     * @param word the key to search for
+     * @return the collection of indexes associated with the input <tt>word</tt>
+     * @see GeneralizedSuffixTree#search(String)
+     */
+    public Collection<Integer> search(String word) {
+        return search(word, -1);
+    }
+
+    /**
+     * Searches for the given word within the tree and returns at most the given number of matches.
+     *
+     * @param word the key to search for
+     * @param results the max number of results to return. Use -1 to get all
+     * @return at most <tt>results</tt> values for the given word
+     * @see GeneralizedSuffixTree#search(String, int)
+     */
+    public Collection<Integer> search(String word, int results) {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            int node = searchNode(word);
+            if (node == NO_NODE) {
+                return Collections.EMPTY_LIST;
+            }
+            return getData(node, results);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Searches for the given word within the tree and returns at most the given number of matches,
+     * together with the total number of matches.
+     *
+     * Unlike GeneralizedSuffixTree, counts are not cached, so no call to computeCount is needed.
+     *
+     * @param word the key to search for
+     * @param to the max number of results to return
+     * @return at most <tt>to</tt> values for the given word, and the number of values associated with it
+     */
+    public GeneralizedSuffixTree.ResultInfo searchWithCount(String word, int to) {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            int node = searchNode(word);
+            if (node == NO_NODE) {
+                return new GeneralizedSuffixTree.ResultInfo(Collections.EMPTY_LIST, 0);
+            }
+            Collection<Integer> all = getData(node, -1);
+            Collection<Integer> results = all;
+            if (to != -1 && all.size() > to) {
+                results = getData(node, to);
+            }
+            return new GeneralizedSuffixTree.ResultInfo(results, all.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of nodes in the tree
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Returns the amount of off-heap memory used by the tree, in bytes
+     */
+    public long getOffHeapBytes() {
+        return nodes.getCapacity() + edges.getCapacity() + labels.getCapacity() + postings.getCapacity();
+    }
+
+    /**
+     * Frees the off-heap memory used by this tree, after the running queries are completed.
+     *
+     * Any query issued after close raises an IllegalStateException.
+     */
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (!closed) {
+                closed = true;
+                nodes.release();
+                edges.release();
+                labels.release();
+                postings.release();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isClosed() {
+        lock.readLock().lock();
+        try {
+            return closed;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("The tree has been closed");
+        }
+    }
+
+    /**
+     * Returns the handle of the node (if present) that corresponds to the given string, or NO_NODE.
+     * Follows the same logic as GeneralizedSuffixTree.searchNode.
+     */
+    private int searchNode(String word) {
+        int currentNode = ROOT;
+        int i = 0;
+        while (i < word.length()) {
+            char ch = word.charAt(i);
+            if (ch != (char) (byte) ch) {
+                throw new IllegalArgumentException("Illegal input character " + ch + ".");
+            }
+            int edge = getEdge(currentNode, (byte) ch);
+            if (edge == NO_NODE) {
+                return NO_NODE;
+            }
+            long edgeRecord = (long) edge * EDGE_SIZE;
+            long label = edges.getLong(edgeRecord + EDGE_LABEL);
+            int labelLength = edges.getInt(edgeRecord + EDGE_LABEL_LENGTH);
+            int lenToMatch = Math.min(word.length() - i, labelLength);
+            for (int j = 1; j < lenToMatch; j++) {
+                if ((char) labels.getByte(label + j) != word.charAt(i + j)) {
+                    return NO_NODE;
+                }
+            }
+            currentNode = edges.getInt(edgeRecord + EDGE_DEST);
+            i += lenToMatch;
+        }
+        return i == 0 ? NO_NODE : currentNode;
+    }
+
+    /**
+     * Binary searches the edges leaving the given node for the one starting with <tt>ch</tt>
+     */
+    private int getEdge(int node, byte ch) {
+        long record = (long) node * NODE_SIZE;
+        int low = nodes.getInt(record + NODE_FIRST_EDGE);
+        int high = low + nodes.getInt(record + NODE_CHILDREN) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            byte midVal = labels.getByte(edges.getLong((long) mid * EDGE_SIZE + EDGE_LABEL));
+            if (midVal < ch) {
+                low = mid + 1;
+            } else if (midVal > ch) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return NO_NODE;
+    }
+
+    /**
+     * Returns at most <tt>numElements</tt> indexes stored in the subtree of the given node.
+     *
+     * As in Node.getData, indexes are deduplicated in a per-thread IndexSet and the visit stops
+     * with a CancellationException if the Cancellation of the current thread is raised.
+     */
+    private Collection<Integer> getData(int node, int numElements) {
+        IndexSet collected = COLLECTOR.get();
+        try {
+            Cancellation cancellation = Cancellation.current();
+            int[] stack = new int[16];
+            int top = 0;
+            int visited = 0;
+            stack[top++] = node;
+            while (top > 0) {
+                if (++visited % Cancellation.CHECK_INTERVAL == 0) {
+                    Cancellation.check(cancellation);
+                }
+                long record = (long) stack[--top] * NODE_SIZE;
+                long posting = nodes.getLong(record + NODE_POSTINGS);
+                int size = nodes.getInt(record + NODE_POSTINGS_LENGTH);
+                for (int i = 0; i < size; i++) {
+                    if (collected.add(postings.getInt((posting + i) * MemoryLayout.INT))
+                            && collected.size() == numElements) {
+                        return collected.toSet();
+                    }
+                }
+                int firstEdge = nodes.getInt(record + NODE_FIRST_EDGE);
+                int children = nodes.getInt(record + NODE_CHILDREN);
+                if (top + children > stack.length) {
+                    stack = Arrays.copyOf(stack, Math.max(stack.length * 2, top + children));
+                }
+                for (int e = firstEdge + children - 1; e >= firstEdge; e--) {
+                    stack[top++] = edges.getInt((long) e * EDGE_SIZE + EDGE_DEST);
+                }
+            }
+            return collected.toSet();
+        } finally {
+            collected.clear();
+        }
+    }
+}
@@ -0,0 +1,267 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Enumerates the distinct indexes stored in a subtree in decreasing (or increasing) order.
+ *
+ * The payload of every node is sorted by construction, so the subtree is a set of sorted runs:
+ * they are merged lazily with a binary heap holding one cursor per non-empty node, keyed by the
+ * next index of the run. Since indexes come out in order, duplicates are adjacent and are skipped
+ * without any set.
+ *
+ * When the index bounds cached by Node#computeAndCacheCount are current, the subtree is expanded
+ * lazily as well: the heap also holds nodes that have not been visited yet, keyed by the largest
+ * (or smallest) index of their subtree, and a node is only visited once its bound reaches the top
+ * of the heap. Taking the first n results then visits the nodes whose bound beats the n-th result,
+ * with their children, rather than the whole subtree.
+ *
+ * Otherwise the runs are listed up front, by visiting every node of the subtree once, so taking
+ * the first n results costs O(nodes + n log nodes): what is saved is the copy, deduplication and
+ * sort of all the matching indexes, not the visit.
+ */
+final class OrderedMerge {
+
+    private final boolean descending;
+    private final Cancellation cancellation = Cancellation.current();
+    /**
+     * The payload of each entry, or null while its node has not been visited
+     */
+    private int[][] runs = new int[16][];
+    /**
+     * The node of each entry that has not been visited yet
+     */
+    private Node[] pending = new Node[16];
+    /**
+     * The position of the next index of each run
+     */
+    private int[] positions = new int[16];
+    /**
+     * The first position past the end of each run (-1 when descending)
+     */
+    private int[] ends = new int[16];
+    private int entries = 0;
+    /**
+     * The heap of the entries, ordered by their next index (or bound, for pending nodes)
+     */
+    private int[] heap = new int[16];
+    private int size = 0;
+    private int visited = 0;
+    private boolean started = false;
+    private int last;
+
+    /**
+     * @param root the node whose subtree should be enumerated
+     * @param descending true to enumerate the largest (i.e. newest) indexes first
+     * @param bounded true if the index bounds cached by Node#computeAndCacheCount describe the
+     * current subtree, so that it can be visited lazily
+     */
+    OrderedMerge(Node root, boolean descending, boolean bounded) {
+        this.descending = descending;
+        if (bounded) {
+            addNode(root);
+            return;
+        }
+        Node[] stack = new Node[16];
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            Node node = stack[--top];
+            visit(node);
+            if (node.getDataSize() > 0) {
+                addRun(node.getDataArray(), node.getDataSize());
+            }
+            Collection<Node> children = node.getChildren();
+            if (top + children.size() > stack.length) {
+                stack = Arrays.copyOf(stack, Math.max(stack.length * 2, top + children.size()));
+            }
+            for (Node child : children) {
+                stack[top++] = child;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of nodes visited so far
+     */
+    int getVisitedNodes() {
+        return visited;
+    }
+
+    private void visit(Node node) {
+        if (++visited % Cancellation.CHECK_INTERVAL == 0) {
+            Cancellation.check(cancellation);
+        }
+    }
+
+    /**
+     * Adds a node that has not been visited yet, keyed by the bound of its subtree
+     */
+    private void addNode(Node node) {
+        if (node.getChildCount() == 0) {
+            // the bound of a leaf is its own payload
+            if (node.getDataSize() > 0) {
+                addRun(node.getDataArray(), node.getDataSize());
+            }
+        } else if (node.getResultCount() > 0) {
+            push(null, node, 0);
+        }
+    }
+
+    private void addRun(int[] data, int length) {
+        push(data, null, descending ? length - 1 : 0);
+        ends[entries - 1] = descending ? -1 : length;
+    }
+
+    private void push(int[] data, Node node, int position) {
+        if (entries == runs.length) {
+            runs = Arrays.copyOf(runs, entries * 2);
+            pending = Arrays.copyOf(pending, entries * 2);
+            positions = Arrays.copyOf(positions, entries * 2);
+            ends = Arrays.copyOf(ends, entries * 2);
+        }
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, size * 2);
+        }
+        runs[entries] = data;
+        pending[entries] = node;
+        positions[entries] = position;
+        heap[size] = entries++;
+        siftUp(size++);
+    }
+
+    /**
+     * Visits the pending nodes at the top of the heap, until a run is there
+     */
+    private void expand() {
+        while (size > 0 && pending[heap[0]] != null) {
+            int entry = heap[0];
+            Node node = pending[entry];
+            pending[entry] = null;
+            visit(node);
+            if (node.getDataSize() > 0) {
+                // the entry becomes the run of the node
+                runs[entry] = node.getDataArray();
+                positions[entry] = descending ? node.getDataSize() - 1 : 0;
+                ends[entry] = descending ? -1 : node.getDataSize();
+                siftDown(0);
+            } else {
+                heap[0] = heap[--size];
+                siftDown(0);
+            }
+            for (Node child : node.getChildren()) {
+                addNode(child);
+            }
+        }
+    }
+
+    boolean hasNext() {
+        expand();
+        while (size > 0 && started && head() == last) {
+            advance();
+            expand();
+        }
+        return size > 0;
+    }
+
+    /**
+     * Returns the next distinct index, which must exist (see hasNext)
+     */
+    int next() {
+        if (!hasNext()) {
+            throw new IllegalStateException("No more indexes");
+        }
+        last = head();
+        started = true;
+        advance();
+        return last;
+    }
+
+    private int head() {
+        return key(heap[0]);
+    }
+
+    /**
+     * Returns the next index of a run, or the bound of the subtree of a pending node
+     */
+    private int key(int entry) {
+        Node node = pending[entry];
+        if (node != null) {
+            return node.getIndexBound(descending);
+        }
+        return runs[entry][positions[entry]];
+    }
+
+    /**
+     * Moves the run at the top of the heap past its next index
+     */
+    private void advance() {
+        int run = heap[0];
+        positions[run] += descending ? -1 : 1;
+        if (positions[run] == ends[run]) {
+            runs[run] = null;
+            heap[0] = heap[--size];
+        }
+        siftDown(0);
+    }
+
+    private void siftUp(int i) {
+        int entry = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (!before(entry, heap[parent])) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = entry;
+    }
+
+    private void siftDown(int i) {
+        if (size == 0) {
+            return;
+        }
+        int run = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && before(heap[child + 1], heap[child])) {
+                child++;
+            }
+            if (!before(heap[child], run)) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = run;
+    }
+
+    /**
+     * Tests whether the key of entry a comes before the key of entry b
+     */
+    private boolean before(int a, int b) {
+        int x = key(a);
+        int y = key(b);
+        return descending ? x > y : x < y;
+    }
+}
@@ -0,0 +1,453 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+
+/**
+ * A boolean combination of substring conditions, evaluated by GeneralizedSuffixTree.query.
+ *
+ * Queries are trees built out of terms (contains, startsWith, endsWith and word, which match the
+ * same indexes as the homonymous methods of the tree) and of the and, or and not operators:
+ *
+ * <pre>
+ * Query q = Query.and(Query.contains("foo"), Query.contains("bar"), Query.not(Query.contains("baz")));
+ * Collection&lt;Integer&gt; results = tree.query(q);
+ * </pre>
+ *
+ * Evaluation is driven by the estimated number of indexes matched by each term, which is read
+ * from the node the term leads to (the cached count if computeCount was called, otherwise a bounded
+ * count of the postings below it). The operands of a conjunction are evaluated cheapest first:
+ * only the most selective operand is materialized, while the others just filter its results by
+ * walking their subtrees, stopping as soon as all the candidates were found. Negated operands
+ * always come last, and a conjunction stops as soon as no candidate is left.
+ *
+ * Intermediate results are sorted arrays of distinct indexes. Queries are immutable and can be
+ * reused across trees and threads.
+ *
+ * @see GeneralizedSuffixTree#query(Query)
+ */
+public abstract class Query {
+
+    /**
+     * The maximum number of postings visited to estimate the cardinality of a term
+     */
+    static final int ESTIMATE_BUDGET = 4096;
+
+    private static final int[] EMPTY = new int[0];
+
+    private Query() {
+    }
+
+    /**
+     * Matches the indexes whose key contains the given word
+     */
+    public static Query contains(String word) {
+        return new Term(Term.CONTAINS, word);
+    }
+
+    /**
+     * Matches the indexes whose key starts with the given word
+     */
+    public static Query startsWith(String word) {
+        return new Term(Term.STARTS_WITH, word);
+    }
+
+    /**
+     * Matches the indexes whose key ends with the given word
+     */
+    public static Query endsWith(String word) {
+        return new Term(Term.ENDS_WITH, word);
+    }
+
+    /**
+     * Matches the indexes whose key is exactly the given word
+     */
+    public static Query word(String word) {
+        return new Term(Term.WORD, word);
+    }
+
+    /**
+     * Matches the indexes matched by all the given queries
+     */
+    public static Query and(Query... operands) {
+        return new And(operands);
+    }
+
+    /**
+     * Matches the indexes matched by any of the given queries
+     */
+    public static Query or(Query... operands) {
+        return new Or(operands);
+    }
+
+    /**
+     * Matches the indexes of the tree that are not matched by the given query
+     */
+    public static Query not(Query operand) {
+        if (operand == null) {
+            throw new IllegalArgumentException("The operand of not cannot be null");
+        }
+        return new Not(operand);
+    }
+
+    /**
+     * Returns an estimate of the number of indexes matched by this query in the given tree
+     */
+    abstract long estimate(GeneralizedSuffixTree tree);
+
+    /**
+     * Returns the indexes matched by this query, sorted and without duplicates
+     */
+    abstract int[] evaluate(GeneralizedSuffixTree tree);
+
+    /**
+     * Returns the subset of the given indexes that is matched by this query
+     *
+     * @param candidates sorted indexes, without duplicates
+     */
+    abstract int[] filter(GeneralizedSuffixTree tree, int[] candidates);
+
+    /**
+     * Returns the total length of the words of the terms of this query
+     */
+    abstract int length();
+
+    private static int[] universe(GeneralizedSuffixTree tree) {
+        return toArray(tree.getRoot().getData());
+    }
+
+    static int[] toArray(Collection<Integer> data) {
+        return ((IndexSet.SortedSet) data).array();
+    }
+
+    /**
+     * Returns the elements of a that are not in b (both sorted)
+     */
+    private static int[] minus(int[] a, int[] b) {
+        int[] ret = new int[a.length];
+        int size = 0;
+        int j = 0;
+        for (int value : a) {
+            while (j < b.length && b[j] < value) {
+                j++;
+            }
+            if (j == b.length || b[j] != value) {
+                ret[size++] = value;
+            }
+        }
+        return size == ret.length ? ret : Arrays.copyOf(ret, size);
+    }
+
+    /**
+     * Returns the union of a and b (both sorted)
+     */
+    private static int[] union(int[] a, int[] b) {
+        if (a.length == 0) {
+            return b;
+        } else if (b.length == 0) {
+            return a;
+        }
+        int[] ret = new int[a.length + b.length];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length || j < b.length) {
+            if (j == b.length || (i < a.length && a[i] < b[j])) {
+                ret[size++] = a[i++];
+            } else if (i == a.length || b[j] < a[i]) {
+                ret[size++] = b[j++];
+            } else {
+                ret[size++] = a[i++];
+                j++;
+            }
+        }
+        return Arrays.copyOf(ret, size);
+    }
+
+    private static Query[] checkOperands(Query[] operands) {
+        if (operands == null || operands.length == 0) {
+            throw new IllegalArgumentException("At least one operand is needed");
+        }
+        for (Query operand : operands) {
+            if (operand == null) {
+                throw new IllegalArgumentException("Operands cannot be null");
+            }
+        }
+        return operands.clone();
+    }
+
+    private static String join(Query[] operands, String operator) {
+        StringBuilder ret = new StringBuilder("(");
+        for (int i = 0; i < operands.length; i++) {
+            if (i > 0) {
+                ret.append(' ').append(operator).append(' ');
+            }
+            ret.append(operands[i]);
+        }
+        return ret.append(')').toString();
+    }
+
+    private static final class Term extends Query {
+
+        static final int CONTAINS = 0;
+        static final int STARTS_WITH = 1;
+        static final int ENDS_WITH = 2;
+        static final int WORD = 3;
+        private static final String[] NAMES = {"contains", "startsWith", "endsWith", "word"};
+
+        private final int kind;
+        private final String word;
+
+        Term(int kind, String word) {
+            if (word == null) {
+                throw new IllegalArgumentException("The word of a term cannot be null");
+            }
+            this.kind = kind;
+            this.word = word;
+        }
+
+        /**
+         * Returns the key searched in the tree, surrounded by the symbols required by the kind of term
+         */
+        private CharSequence key(GeneralizedSuffixTree tree) {
+            char start = kind == STARTS_WITH || kind == WORD ? tree.getStartSymbol() : 0;
+            char end = kind == ENDS_WITH || kind == WORD ? tree.getEndSymbol() : 0;
+            return new WrappedKey(word, start, end);
+        }
+
+        @Override
+        long estimate(GeneralizedSuffixTree tree) {
+            Node node = word.isEmpty() ? null : tree.termNode(key(tree));
+            return node == null ? 0 : node.estimateCount(ESTIMATE_BUDGET);
+        }
+
+        @Override
+        int[] evaluate(GeneralizedSuffixTree tree) {
+            CharSequence key = key(tree);
+            Node node = word.isEmpty() ? null : tree.termNode(key);
+            return node == null ? EMPTY : verify(tree, key, toArray(node.getData()));
+        }
+
+        @Override
+        int[] filter(GeneralizedSuffixTree tree, int[] candidates) {
+            CharSequence key = key(tree);
+            Node node = word.isEmpty() ? null : tree.termNode(key);
+            return node == null || candidates.length == 0 ? EMPTY : verify(tree, key, node.retain(candidates));
+        }
+
+        /**
+         * Checks the indexes found for a key longer than the depth of a depth-limited tree against the keys
+         */
+        private int[] verify(GeneralizedSuffixTree tree, CharSequence key, int[] found) {
+            if (!tree.needsVerification(key)) {
+                return found;
+            }
+            String pattern = key.toString();
+            int[] ret = new int[found.length];
+            int size = 0;
+            for (int index : found) {
+                if (tree.verify(index, pattern)) {
+                    ret[size++] = index;
+                }
+            }
+            return Arrays.copyOf(ret, size);
+        }
+
+        @Override
+        int length() {
+            return word.length();
+        }
+
+        @Override
+        public String toString() {
+            return NAMES[kind] + "(\"" + word + "\")";
+        }
+    }
+
+    private static final class And extends Query {
+
+        private final Query[] operands;
+
+        And(Query[] operands) {
+            this.operands = checkOperands(operands);
+        }
+
+        /**
+         * Sorts the operands by estimated cardinality, negated ones last
+         */
+        private Query[] plan(final GeneralizedSuffixTree tree) {
+            final long[] costs = new long[operands.length];
+            Integer[] order = new Integer[operands.length];
+            for (int i = 0; i < operands.length; i++) {
+                order[i] = i;
+                costs[i] = operands[i] instanceof Not ? Long.MAX_VALUE : operands[i].estimate(tree);
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    return Long.compare(costs[a], costs[b]);
+                }
+            });
+            Query[] ret = new Query[operands.length];
+            for (int i = 0; i < order.length; i++) {
+                ret[i] = operands[order[i]];
+            }
+            return ret;
+        }
+
+        @Override
+        long estimate(GeneralizedSuffixTree tree) {
+            long ret = Long.MAX_VALUE;
+            for (Query operand : operands) {
+                if (!(operand instanceof Not)) {
+                    ret = Math.min(ret, operand.estimate(tree));
+                }
+            }
+            return ret == Long.MAX_VALUE ? tree.getRoot().estimateCount(ESTIMATE_BUDGET) : ret;
+        }
+
+        @Override
+        int[] evaluate(GeneralizedSuffixTree tree) {
+            Query[] plan = plan(tree);
+            int[] candidates;
+            int first;
+            if (plan[0] instanceof Not) {
+                candidates = universe(tree);
+                first = 0;
+            } else {
+                candidates = plan[0].evaluate(tree);
+                first = 1;
+            }
+            return filter(tree, plan, first, candidates);
+        }
+
+        @Override
+        int[] filter(GeneralizedSuffixTree tree, int[] candidates) {
+            return filter(tree, plan(tree), 0, candidates);
+        }
+
+        private int[] filter(GeneralizedSuffixTree tree, Query[] plan, int first, int[] candidates) {
+            for (int i = first; i < plan.length && candidates.length > 0; i++) {
+                candidates = plan[i].filter(tree, candidates);
+            }
+            return candidates;
+        }
+
+        @Override
+        int length() {
+            int ret = 0;
+            for (Query operand : operands) {
+                ret += operand.length();
+            }
+            return ret;
+        }
+
+        @Override
+        public String toString() {
+            return join(operands, "AND");
+        }
+    }
+
+    private static final class Or extends Query {
+
+        private final Query[] operands;
+
+        Or(Query[] operands) {
+            this.operands = checkOperands(operands);
+        }
+
+        @Override
+        long estimate(GeneralizedSuffixTree tree) {
+            long ret = 0;
+            for (Query operand : operands) {
+                ret += operand.estimate(tree);
+            }
+            return ret;
+        }
+
+        @Override
+        int[] evaluate(GeneralizedSuffixTree tree) {
+            int[] ret = EMPTY;
+            for (Query operand : operands) {
+                ret = union(ret, operand.evaluate(tree));
+            }
+            return ret;
+        }
+
+        @Override
+        int[] filter(GeneralizedSuffixTree tree, int[] candidates) {
+            int[] ret = EMPTY;
+            // candidates matched by an operand need not be tested against the others
+            for (int i = 0; i < operands.length && candidates.length > 0; i++) {
+                int[] matched = operands[i].filter(tree, candidates);
+                ret = union(ret, matched);
+                candidates = minus(candidates, matched);
+            }
+            return ret;
+        }
+
+        @Override
+        int length() {
+            int ret = 0;
+            for (Query operand : operands) {
+                ret += operand.length();
+            }
+            return ret;
+        }
+
+        @Override
+        public String toString() {
+            return join(operands, "OR");
+        }
+    }
+
+    private static final class Not extends Query {
+
+        private final Query operand;
+
+        Not(Query operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        long estimate(GeneralizedSuffixTree tree) {
+            return Math.max(0, tree.getRoot().estimateCount(ESTIMATE_BUDGET) - operand.estimate(tree));
+        }
+
+        @Override
+        int[] evaluate(GeneralizedSuffixTree tree) {
+            return filter(tree, universe(tree));
+        }
+
+        @Override
+        int[] filter(GeneralizedSuffixTree tree, int[] candidates) {
+            return minus(candidates, operand.filter(tree, candidates));
+        }
+
+        @Override
+        int length() {
+            return operand.length();
+        }
+
+        @Override
+        public String toString() {
+            return "NOT " + operand;
+        }
+    }
+}
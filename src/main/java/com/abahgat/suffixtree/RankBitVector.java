@@ -0,0 +1,87 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+/**
+ * An immutable bit vector supporting rank queries in constant time.
+ *
+ * Besides the bits, it stores the number of ones preceding every block of 512 bits,
+ * which adds a 6.25% overhead.
+ */
+final class RankBitVector {
+
+    private static final int WORDS_PER_BLOCK = 8;
+
+    private final long[] words;
+    private final int[] blockRanks;
+    private final int size;
+
+    /**
+     * Creates a bit vector out of the given words; bit i is stored in words[i / 64]
+     * at position i % 64.
+     */
+    RankBitVector(long[] words, int size) {
+        this.words = words;
+        this.size = size;
+        this.blockRanks = new int[words.length / WORDS_PER_BLOCK + 1];
+        int ones = 0;
+        for (int w = 0; w < words.length; w++) {
+            if (w % WORDS_PER_BLOCK == 0) {
+                blockRanks[w / WORDS_PER_BLOCK] = ones;
+            }
+            ones += Long.bitCount(words[w]);
+        }
+        if (words.length % WORDS_PER_BLOCK == 0) {
+            blockRanks[words.length / WORDS_PER_BLOCK] = ones;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean get(int i) {
+        return (words[i >>> 6] & (1L << i)) != 0;
+    }
+
+    /**
+     * Returns the number of ones in the first <tt>i</tt> positions
+     */
+    int rank1(int i) {
+        int word = i >>> 6;
+        int block = word / WORDS_PER_BLOCK;
+        int rank = blockRanks[block];
+        for (int w = block * WORDS_PER_BLOCK; w < word; w++) {
+            rank += Long.bitCount(words[w]);
+        }
+        int bit = i & 63;
+        if (bit != 0) {
+            rank += Long.bitCount(words[word] & ((1L << bit) - 1));
+        }
+        return rank;
+    }
+
+    /**
+     * Returns the number of zeros in the first <tt>i</tt> positions
+     */
+    int rank0(int i) {
+        return i - rank1(i);
+    }
+
+    long getSizeInBytes() {
+        return MemoryLayout.align((long) MemoryLayout.ARRAY_HEADER + words.length * 8L) + MemoryLayout.intArray(blockRanks.length);
+    }
+}
@@ -0,0 +1,233 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * An incremental search over a GeneralizedSuffixTree, meant for type-ahead boxes
+ * where the query grows or shrinks by one character at a time.
+ *
+ * Instead of walking down from the root on every keystroke (as search does), the session
+ * remembers the position reached by the current query as an (edge, offset) pair, so that
+ * append only has to compare a single character and backspace only has to pop the previous
+ * position from a stack.
+ *
+ * Results are computed lazily: getResults only collects the indexes below the current
+ * position when it is called.
+ *
+ * On depth-limited trees, once the query gets longer than the indexed depth the session falls back
+ * to the search methods of the tree, which verify the candidates against the keys.
+ *
+ * A session is bound to the state of the tree at the time it was created: it must be discarded
+ * (or reset) after any call to put, since edge labels may be split by the insertion.
+ * Sessions are not thread safe.
+ *
+ * @see GeneralizedSuffixTree#newSearchSession()
+ * @see GeneralizedSuffixTree#newStartsWithSession()
+ */
+public class SearchSession {
+
+    private static final int START_SIZE = 16;
+
+    private final GeneralizedSuffixTree tree;
+    private final Node root;
+    /**
+     * The max number of symbols (hidden prefix included) that can be matched by walking the tree
+     */
+    private final int exactLength;
+    /**
+     * The number of leading symbols (e.g. the start symbol) that are not part of the user query
+     */
+    private final int hiddenPrefix;
+    /**
+     * The stack of positions: after the i-th matched character, nodes[i] is the node whose
+     * incoming label was followed last and offsets[i] the number of characters of it matched so far.
+     */
+    private Node[] nodes = new Node[START_SIZE];
+    private int[] offsets = new int[START_SIZE];
+    /**
+     * The number of characters currently matched (size of the position stack)
+     */
+    private int depth = 0;
+    /**
+     * The number of characters appended after the query stopped matching the tree
+     */
+    private int mismatched = 0;
+    /**
+     * The number of characters appended beyond exactLength, while the query was still matching
+     */
+    private int overflow = 0;
+    /**
+     * The query typed by the user, only used once it gets longer than exactLength
+     */
+    private final StringBuilder query = new StringBuilder();
+
+    SearchSession(GeneralizedSuffixTree tree) {
+        this.tree = tree;
+        this.root = tree.getRoot();
+        this.exactLength = tree.getExactLength();
+        this.hiddenPrefix = 0;
+    }
+
+    SearchSession(GeneralizedSuffixTree tree, char prefix) {
+        this.tree = tree;
+        this.root = tree.getRoot();
+        this.exactLength = tree.getExactLength();
+        this.hiddenPrefix = 1;
+        append(prefix);
+        // the prefix is not part of the user query
+        query.setLength(0);
+    }
+
+    /**
+     * Extends the current query by one character.
+     *
+     * @param ch the character typed by the user
+     * @return true if the extended query still matches some indexed key
+     */
+    public boolean append(char ch) {
+        query.append(ch);
+        if (mismatched > 0) {
+            mismatched++;
+            return false;
+        }
+        if (overflow > 0 || depth == exactLength) {
+            overflow++;
+            return hasMatches();
+        }
+
+        Node next;
+        int offset;
+        if (tree.isReserved(ch)) {
+            // the symbol only ends the cut windows of a depth-limited tree
+            next = null;
+            offset = 0;
+        } else if (depth == 0) {
+            next = root.getChild(ch);
+            offset = 0;
+        } else {
+            Node current = nodes[depth - 1];
+            offset = offsets[depth - 1];
+            if (offset == current.getLabel().length()) {
+                // the whole label was matched, follow the next edge
+                next = current.getChild(ch);
+                offset = 0;
+            } else {
+                next = current.getLabel().charAt(offset) == ch ? current : null;
+            }
+        }
+
+        if (null == next) {
+            mismatched = 1;
+            return false;
+        }
+        push(next, offset + 1);
+        return true;
+    }
+
+    /**
+     * Removes the last character from the current query.
+     *
+     * @return false if the query was already empty
+     */
+    public boolean backspace() {
+        if (length() == 0) {
+            return false;
+        }
+        query.setLength(query.length() - 1);
+        if (mismatched > 0) {
+            mismatched--;
+        } else if (overflow > 0) {
+            overflow--;
+        } else {
+            nodes[--depth] = null;
+        }
+        return true;
+    }
+
+    /**
+     * Clears the current query.
+     */
+    public void reset() {
+        while (depth > hiddenPrefix) {
+            nodes[--depth] = null;
+        }
+        // the hidden prefix itself may not be in the tree (e.g. when it is empty)
+        mismatched = hiddenPrefix - depth;
+        overflow = 0;
+        query.setLength(0);
+    }
+
+    /**
+     * Returns the length of the current query, as typed by the user
+     */
+    public int length() {
+        return depth + mismatched + overflow - hiddenPrefix;
+    }
+
+    /**
+     * Tests whether the current query matches any indexed key
+     */
+    public boolean hasMatches() {
+        if (overflow > 0) {
+            return mismatched == 0 && !getResults(1).isEmpty();
+        }
+        return mismatched == 0 && depth > hiddenPrefix;
+    }
+
+    /**
+     * Returns all the indexes matching the current query.
+     * @return the same collection search (or startsWith) would return for the current query
+     */
+    public Collection<Integer> getResults() {
+        return getResults(-1);
+    }
+
+    /**
+     * Returns at most <tt>results</tt> indexes matching the current query.
+     *
+     * @param results the max number of results to return. Use -1 to get all
+     * @return at most <tt>results</tt> values for the current query
+     */
+    public Collection<Integer> getResults(int results) {
+        if (overflow > 0) {
+            if (mismatched > 0) {
+                return Collections.EMPTY_LIST;
+            }
+            return hiddenPrefix > 0 ? tree.startsWith(query, results) : tree.search(query, results);
+        }
+        if (!hasMatches()) {
+            return Collections.EMPTY_LIST;
+        }
+        return nodes[depth - 1].getData(results);
+    }
+
+    private void push(Node node, int offset) {
+        if (depth == nodes.length) {
+            Node[] nodesCopy = new Node[nodes.length * 2];
+            System.arraycopy(nodes, 0, nodesCopy, 0, depth);
+            nodes = nodesCopy;
+            int[] offsetsCopy = new int[offsets.length * 2];
+            System.arraycopy(offsets, 0, offsetsCopy, 0, depth);
+            offsets = offsetsCopy;
+        }
+        nodes[depth] = node;
+        offsets[depth] = offset;
+        depth++;
+    }
+}
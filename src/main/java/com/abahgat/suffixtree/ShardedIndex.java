@@ -0,0 +1,90 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A read-only union of several suffix trees, each holding a disjoint part of the keys.
+ *
+ * Every query is run on all the shards, and the results are merged.
+ *
+ * @see BulkLoader#loadShards(java.nio.file.Path, int, int)
+ */
+public class ShardedIndex implements SubstringIndex {
+
+    private final GeneralizedSuffixTree[] shards;
+
+    public ShardedIndex(GeneralizedSuffixTree... shards) {
+        this.shards = shards.clone();
+    }
+
+    /**
+     * Returns the number of shards
+     */
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Returns the i-th shard
+     */
+    public GeneralizedSuffixTree getShard(int i) {
+        return shards[i];
+    }
+
+    public Collection<Integer> search(String word) {
+        return search(word, -1);
+    }
+
+    public Collection<Integer> search(String word, int results) {
+        Set<Integer> ret = new HashSet<Integer>();
+        for (GeneralizedSuffixTree shard : shards) {
+            int missing = results == -1 ? -1 : results - ret.size();
+            if (missing == 0) {
+                break;
+            }
+            ret.addAll(shard.search(word, missing));
+        }
+        return ret;
+    }
+
+    public Collection<Integer> startsWith(String word) {
+        Set<Integer> ret = new HashSet<Integer>();
+        for (GeneralizedSuffixTree shard : shards) {
+            ret.addAll(shard.startsWith(word));
+        }
+        return ret;
+    }
+
+    public Collection<Integer> endsWith(String word) {
+        Set<Integer> ret = new HashSet<Integer>();
+        for (GeneralizedSuffixTree shard : shards) {
+            ret.addAll(shard.endsWith(word));
+        }
+        return ret;
+    }
+
+    public Collection<Integer> searchWord(String word) {
+        Set<Integer> ret = new HashSet<Integer>();
+        for (GeneralizedSuffixTree shard : shards) {
+            ret.addAll(shard.searchWord(word));
+        }
+        return ret;
+    }
+}
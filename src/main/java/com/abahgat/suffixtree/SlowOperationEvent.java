@@ -0,0 +1,64 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The JFR event emitted by TreeMetrics for operations slower than the configured threshold.
+ *
+ * This is the only class referring to the jdk.jfr package, so that the library keeps working
+ * on runtimes that lack it.
+ * @see TreeMetrics#setSlowThresholdNanos(long)
+ */
+@Name("com.abahgat.suffixtree.SlowOperation")
+@Label("Slow Suffix Tree Operation")
+@Category("Suffix Tree")
+@Description("A GeneralizedSuffixTree operation that took longer than the configured threshold")
+@StackTrace(true)
+class SlowOperationEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Key Length")
+    int keyLength;
+
+    @Label("Results")
+    @Description("The number of indexes returned by a query")
+    int results;
+
+    @Label("Elapsed")
+    @Timespan(Timespan.NANOSECONDS)
+    long elapsed;
+
+    static void emit(String operation, int keyLength, int results, long elapsed) {
+        SlowOperationEvent event = new SlowOperationEvent();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.keyLength = keyLength;
+            event.results = results;
+            event.elapsed = elapsed;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,761 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Finds the fragments that are repeated across the keys of a GeneralizedSuffixTree, such as
+ * boilerplate text or the templates of log lines.
+ *
+ * A repeat is a string that occurs at least twice in the keys (in the same key or in different
+ * ones). A repeat is maximal when it cannot be extended by one character on either side without
+ * losing an occurrence, i.e. when its occurrences are preceded by at least two different
+ * characters and followed by at least two different characters; the start and the end of a key
+ * count as a different character for every occurrence. A maximal repeat is supermaximal when it is
+ * not contained in any other repeat. The longest repeated substring is the longest maximal repeat.
+ *
+ * In the tree, every maximal repeat ends in a node: an internal node when the occurrences are
+ * followed by different characters, or the leaf of a suffix that ends several keys. Occurrences
+ * are counted bottom-up from the payloads, and each node cX offers its count to the node X: X is
+ * left-maximal unless some cX occurs as often as X itself. For internal nodes, X is the target of
+ * the suffix link; a leaf follows the suffix link of its parent and walks down its own label.
+ *
+ * The tree is walked in three passes (counting, left extensions and reporting), each split across
+ * a ForkJoinPool with one task per child of the root. Intermediate results are kept for the nodes
+ * that occur at least twice only. Repeats cannot be found in depth-limited and minimized trees,
+ * since their nodes do not correspond one to one to the substrings of the keys.
+ *
+ * The substrings found in the most keys, which only depend on the distinct counts of the nodes,
+ * can be listed for every tree (see topSubstrings). As for the other queries, the tree must not be
+ * modified during the analysis.
+ *
+ * <pre>
+ * SubstringAnalytics analytics = new SubstringAnalytics(tree);
+ * for (SubstringAnalytics.Repeat r : analytics.maximalRepeats(20)) {
+ *     System.out.println(r.getDocumentCount() + " " + r.getString());
+ * }
+ * </pre>
+ */
+public class SubstringAnalytics {
+
+    private final GeneralizedSuffixTree tree;
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates an instance running on the common ForkJoinPool
+     *
+     * @param tree the tree to analyze
+     */
+    public SubstringAnalytics(GeneralizedSuffixTree tree) {
+        this(tree, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param tree the tree to analyze
+     * @param pool the pool the traversals run on
+     */
+    public SubstringAnalytics(GeneralizedSuffixTree tree, ForkJoinPool pool) {
+        this.tree = tree;
+        this.pool = pool;
+    }
+
+    /**
+     * Returns the maximal repeats at least <tt>minLength</tt> characters long, longest first
+     *
+     * @throws IllegalStateException if the tree is depth-limited or minimized
+     */
+    public List<Repeat> maximalRepeats(int minLength) throws IllegalStateException {
+        return new Analysis(Math.max(minLength, 1), false).run();
+    }
+
+    /**
+     * Returns the supermaximal repeats at least <tt>minLength</tt> characters long, longest first
+     *
+     * @throws IllegalStateException if the tree is depth-limited or minimized
+     */
+    public List<Repeat> supermaximalRepeats(int minLength) throws IllegalStateException {
+        return new Analysis(Math.max(minLength, 1), true).run();
+    }
+
+    /**
+     * Returns the longest string that occurs at least twice in the keys, or null if there is none.
+     * When several repeats have the same length, the first one in lexicographic order is returned.
+     *
+     * @throws IllegalStateException if the tree is depth-limited or minimized
+     */
+    public Repeat longestRepeatedSubstring() throws IllegalStateException {
+        List<Repeat> repeats = maximalRepeats(1);
+        return repeats.isEmpty() ? null : repeats.get(0);
+    }
+
+    /**
+     * Returns the <tt>n</tt> substrings that are found in the most keys (distinct indexes).
+     *
+     * @see #topSubstrings(int, int, int, long)
+     */
+    public List<FrequentSubstring> topSubstrings(int minLength, int maxLength, int n) throws IllegalArgumentException {
+        return topSubstrings(minLength, maxLength, n, Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns the <tt>n</tt> substrings between <tt>minLength</tt> and <tt>maxLength</tt>
+     * characters long that are found in the most keys (distinct indexes), most frequent first;
+     * ties are broken in lexicographic order.
+     *
+     * All the strings that end inside the same edge are found in the keys of the node the edge
+     * leads to, so the document frequency of every substring is the distinct count of a node,
+     * computed bottom-up one subtree of the root at a time. Each walker keeps the best strings in a
+     * heap of at most n entries and skips the subtrees whose count is lower than the worst of
+     * them, since the count can only decrease going down.
+     *
+     * The subtrees of the root are shared by walkers running in parallel on the ForkJoinPool: each
+     * walker holds its own heap, so at most <tt>memoryBudget / (n * maxLength)</tt> walkers
+     * (roughly) run at the same time.
+     *
+     * The budget only covers the result heaps. While it counts a subtree, each walker also holds
+     * the list of its nodes and the IndexSets built by Node#computeAndCacheCount, which can take
+     * as much as the distinct indexes of the subtree; these are released before the next subtree,
+     * but are not bounded by <tt>memoryBudget</tt>.
+     *
+     * @param minLength the min length of the substrings, at least 1
+     * @param maxLength the max length of the substrings, that must not exceed the max depth of a
+     * depth-limited tree
+     * @param n the number of substrings to return
+     * @param memoryBudget the max number of bytes the result heaps of the walkers may take
+     * @throws IllegalArgumentException if the arguments are not valid, or the budget cannot hold
+     * the heap of a single walker
+     */
+    public List<FrequentSubstring> topSubstrings(int minLength, int maxLength, int n, long memoryBudget)
+            throws IllegalArgumentException {
+        if (minLength < 1 || maxLength < minLength || n < 1) {
+            throw new IllegalArgumentException("Invalid lengths or number of results: " + minLength
+                    + ".." + maxLength + ", " + n);
+        }
+        if (tree.getMaxDepth() > 0 && maxLength > tree.getMaxDepth()) {
+            throw new IllegalArgumentException("maxLength must not exceed the max depth of the tree, " + tree.getMaxDepth());
+        }
+        long heapBytes = MemoryLayout.referenceArray(n)
+                + n * (MemoryLayout.object(1, 1) + MemoryLayout.string(maxLength));
+        if (memoryBudget < heapBytes) {
+            throw new IllegalArgumentException("A budget of " + memoryBudget + " bytes cannot hold "
+                    + n + " results (" + heapBytes + " bytes)");
+        }
+        return new TopSubstrings(minLength, maxLength, n, memoryBudget / heapBytes).run();
+    }
+
+    /**
+     * A substring, with the number of indexes it is found in
+     */
+    public static class FrequentSubstring {
+
+        private final String string;
+        private final int documentCount;
+
+        FrequentSubstring(String string, int documentCount) {
+            this.string = string;
+            this.documentCount = documentCount;
+        }
+
+        public String getString() {
+            return string;
+        }
+
+        /**
+         * Returns the number of distinct indexes whose keys contain the string
+         */
+        public int getDocumentCount() {
+            return documentCount;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof FrequentSubstring)) {
+                return false;
+            }
+            FrequentSubstring other = (FrequentSubstring) o;
+            return string.equals(other.string) && documentCount == other.documentCount;
+        }
+
+        @Override
+        public int hashCode() {
+            return string.hashCode() * 31 + documentCount;
+        }
+
+        @Override
+        public String toString() {
+            return "FrequentSubstring{string=" + string + ", documents=" + documentCount + "}";
+        }
+    }
+
+    /**
+     * Most frequent first, then in lexicographic order
+     */
+    private static final Comparator<FrequentSubstring> BY_FREQUENCY = new Comparator<FrequentSubstring>() {
+        @Override
+        public int compare(FrequentSubstring a, FrequentSubstring b) {
+            if (a.documentCount != b.documentCount) {
+                return a.documentCount > b.documentCount ? -1 : 1;
+            }
+            return a.string.compareTo(b.string);
+        }
+    };
+
+    /**
+     * A repeated string, with the number of its occurrences and of the indexes it is found in
+     */
+    public static class Repeat {
+
+        private final String string;
+        private final int occurrences;
+        private final int documentCount;
+
+        Repeat(String string, int occurrences, int documentCount) {
+            this.string = string;
+            this.occurrences = occurrences;
+            this.documentCount = documentCount;
+        }
+
+        public String getString() {
+            return string;
+        }
+
+        public int getLength() {
+            return string.length();
+        }
+
+        /**
+         * Returns the number of times the string occurs in the keys. Equal suffixes of keys that
+         * were put with the same index count once.
+         */
+        public int getOccurrences() {
+            return occurrences;
+        }
+
+        /**
+         * Returns the number of distinct indexes whose keys contain the string
+         */
+        public int getDocumentCount() {
+            return documentCount;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Repeat)) {
+                return false;
+            }
+            Repeat other = (Repeat) o;
+            return string.equals(other.string) && occurrences == other.occurrences
+                    && documentCount == other.documentCount;
+        }
+
+        @Override
+        public int hashCode() {
+            return string.hashCode() * 31 + occurrences;
+        }
+
+        @Override
+        public String toString() {
+            return "Repeat{string=" + string + ", occurrences=" + occurrences + ", documents=" + documentCount + "}";
+        }
+    }
+
+    /**
+     * Longest first, then in lexicographic order
+     */
+    private static final Comparator<Repeat> BY_LENGTH = new Comparator<Repeat>() {
+        @Override
+        public int compare(Repeat a, Repeat b) {
+            if (a.getLength() != b.getLength()) {
+                return b.getLength() - a.getLength();
+            }
+            return a.getString().compareTo(b.getString());
+        }
+    };
+
+    /**
+     * What is known about a node that occurs at least twice
+     */
+    private static final class Info {
+
+        private final int occurrences;
+        private final int documents;
+        /**
+         * The max number of occurrences of the nodes cX, where X is this node
+         */
+        private int leftOccurrences = 0;
+
+        Info(int occurrences, int documents) {
+            this.occurrences = occurrences;
+            this.documents = documents;
+        }
+
+        synchronized void offerLeft(int count) {
+            leftOccurrences = Math.max(leftOccurrences, count);
+        }
+
+        synchronized int getLeftOccurrences() {
+            return leftOccurrences;
+        }
+    }
+
+    /**
+     * A single run of the three passes
+     */
+    private final class Analysis {
+
+        private final int minLength;
+        private final boolean supermaximal;
+        private final char startSymbol;
+        private final char endSymbol;
+        private Node root;
+        private final Map<Node, Info> infos = new ConcurrentHashMap<Node, Info>();
+
+        Analysis(int minLength, boolean supermaximal) {
+            this.minLength = minLength;
+            this.supermaximal = supermaximal;
+            this.startSymbol = tree.getStartSymbol();
+            this.endSymbol = tree.getEndSymbol();
+        }
+
+        List<Repeat> run() {
+            if (tree.getMaxDepth() > 0 || tree.isMinimized()) {
+                throw new IllegalStateException("Repeats can only be found in full, non minimized trees");
+            }
+            root = tree.getRoot();
+            // the strings that start with the start symbol are the prefixes of the keys: the start
+            // of a key is a different left context for each occurrence, so they add nothing
+            List<Node> subtrees = new ArrayList<Node>();
+            for (Node child : root.getChildren()) {
+                if (child.getLabel().charAt(0) != startSymbol) {
+                    subtrees.add(child);
+                }
+            }
+
+            pool.invoke(new Pass(this, subtrees, COUNT));
+            pool.invoke(new Pass(this, subtrees, LEFT));
+            Pass report = new Pass(this, subtrees, REPORT);
+            pool.invoke(report);
+
+            List<Repeat> repeats = new ArrayList<Repeat>();
+            for (Pass task : report.tasks) {
+                repeats.addAll(task.repeats);
+            }
+            Collections.sort(repeats, BY_LENGTH);
+            return repeats;
+        }
+
+        /**
+         * Counts the occurrences and the documents of the nodes of a subtree, bottom-up
+         */
+        void count(Node subtree) {
+            subtree.computeAndCacheCount();
+            Node[] order = new Node[16];
+            int[] parents = new int[16];
+            int count = 0;
+            order[count] = subtree;
+            parents[count++] = -1;
+            for (int i = 0; i < count; i++) {
+                int children = order[i].getChildCount();
+                if (count + children > order.length) {
+                    order = Arrays.copyOf(order, Math.max(order.length * 2, count + children));
+                    parents = Arrays.copyOf(parents, order.length);
+                }
+                for (Node child : order[i].getChildren()) {
+                    order[count] = child;
+                    parents[count++] = i;
+                }
+            }
+
+            int[] occurrences = new int[count];
+            for (int i = count - 1; i >= 0; i--) {
+                Node node = order[i];
+                occurrences[i] += node.getDataSize();
+                if (occurrences[i] > 1) {
+                    infos.put(node, new Info(occurrences[i], node.getResultCount()));
+                }
+                if (parents[i] >= 0) {
+                    occurrences[parents[i]] += occurrences[i];
+                }
+                order[i] = null;
+            }
+        }
+
+        /**
+         * Offers the occurrences of every node cX of a subtree to the node X
+         */
+        void extendLeft(Node subtree) {
+            PathWalker walker = new PathWalker(subtree);
+            while (walker.next()) {
+                Node node = walker.node;
+                Info info = infos.get(node);
+                int length = walker.path.length();
+                if (info == null || length < 2) {
+                    continue;
+                }
+                if (node.getChildCount() > 0 && node.getSuffix() != null) {
+                    // the suffix link of an internal node is exactly X
+                    offerLeft(node.getSuffix(), info);
+                    continue;
+                }
+
+                // the links of the leaves are not exact: start from the suffix of the parent
+                Node parent = walker.parent;
+                Node from = root;
+                int matched = 1;
+                if (parent != null && parent != root && parent.getSuffix() != null) {
+                    from = parent.getSuffix();
+                    matched = length - node.getLabel().length();
+                }
+                offerLeft(locate(from, walker.path, matched, length), info);
+                if (walker.path.charAt(length - 1) == endSymbol) {
+                    // cX ends several keys: X may be followed by other characters elsewhere
+                    offerLeft(locate(from, walker.path, matched, length - 1), info);
+                }
+            }
+        }
+
+        private void offerLeft(Node suffix, Info info) {
+            Info suffixInfo = suffix == null ? null : infos.get(suffix);
+            if (suffixInfo != null) {
+                suffixInfo.offerLeft(info.occurrences);
+            }
+        }
+
+        /**
+         * Returns the node whose path is the first <tt>length</tt> characters of the given one,
+         * without the first character, or null if that string ends in the middle of an edge.
+         *
+         * The walk starts from a node whose string is path[1..matched). The string is in the tree,
+         * so only the first character of each edge is compared.
+         */
+        private Node locate(Node from, CharSequence path, int matched, int length) {
+            Node node = from;
+            while (matched < length) {
+                node = node.getChild(path.charAt(matched));
+                if (node == null) {
+                    return null;
+                }
+                matched += node.getLabel().length();
+            }
+            return matched == length ? node : null;
+        }
+
+        /**
+         * Lists the repeats of a subtree
+         */
+        List<Repeat> report(Node subtree) {
+            List<Repeat> repeats = new ArrayList<Repeat>();
+            PathWalker walker = new PathWalker(subtree);
+            while (walker.next()) {
+                Node node = walker.node;
+                Info info = infos.get(node);
+                if (info == null) {
+                    continue;
+                }
+                int length = walker.path.length();
+                boolean leaf = node.getChildCount() == 0;
+                if (walker.path.charAt(length - 1) == endSymbol) {
+                    // a suffix shared by several keys: the string without the end symbol is
+                    // right-maximal, unless it ends in a node already
+                    if (!leaf || node.getLabel().length() == 1) {
+                        continue;
+                    }
+                    length--;
+                } else if (leaf) {
+                    continue;
+                }
+
+                int left = info.getLeftOccurrences();
+                if (length < minLength || left == info.occurrences) {
+                    continue;
+                }
+                if (supermaximal && (left > 1 || !unique(node))) {
+                    continue;
+                }
+                repeats.add(new Repeat(walker.path.substring(0, length), info.occurrences, info.documents));
+            }
+            return repeats;
+        }
+
+        /**
+         * Tests whether every one character extension of the string of the given node occurs once
+         */
+        private boolean unique(Node node) {
+            for (Node child : node.getChildren()) {
+                // the ends of the keys are distinct
+                boolean end = child.getLabel().length() == 1 && child.getLabel().charAt(0) == endSymbol;
+                if (!end && infos.containsKey(child)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A single run of topSubstrings
+     */
+    private final class TopSubstrings {
+
+        private final int minLength;
+        private final int maxLength;
+        private final int n;
+        private final long maxWalkers;
+        private final Queue<Node> subtrees = new ConcurrentLinkedQueue<Node>();
+
+        TopSubstrings(int minLength, int maxLength, int n, long maxWalkers) {
+            this.minLength = minLength;
+            this.maxLength = maxLength;
+            this.n = n;
+            this.maxWalkers = maxWalkers;
+        }
+
+        List<FrequentSubstring> run() {
+            char startSymbol = tree.getStartSymbol();
+            for (Node child : tree.getRoot().getChildren()) {
+                // the strings that start with the start symbol are the prefixes of the keys
+                if (child.getLabel().charAt(0) != startSymbol) {
+                    subtrees.add(child);
+                }
+            }
+
+            final List<Walker> walkers = new ArrayList<Walker>();
+            long count = Math.min(Math.min(pool.getParallelism(), subtrees.size()), maxWalkers);
+            for (int i = 0; i < Math.max(count, 1); i++) {
+                walkers.add(new Walker());
+            }
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(walkers);
+                }
+            });
+
+            List<FrequentSubstring> results = new ArrayList<FrequentSubstring>();
+            for (Walker walker : walkers) {
+                results.addAll(walker.heap);
+            }
+            Collections.sort(results, BY_FREQUENCY);
+            return results.size() > n ? new ArrayList<FrequentSubstring>(results.subList(0, n)) : results;
+        }
+
+        /**
+         * Walks subtrees until there are none left, keeping the best n strings found
+         */
+        private final class Walker extends RecursiveAction {
+
+            private static final long serialVersionUID = 1L;
+
+            /**
+             * The best strings found so far, the worst one first
+             */
+            private final PriorityQueue<FrequentSubstring> heap =
+                    new PriorityQueue<FrequentSubstring>(n, Collections.reverseOrder(BY_FREQUENCY));
+
+            @Override
+            protected void compute() {
+                Node subtree;
+                while ((subtree = subtrees.poll()) != null) {
+                    walk(subtree);
+                }
+            }
+
+            private void walk(Node subtree) {
+                subtree.computeAndCacheCount();
+                char endSymbol = tree.getEndSymbol();
+                PathWalker walker = new PathWalker(subtree);
+                while (walker.next()) {
+                    Node node = walker.node;
+                    int documents = node.getResultCount();
+                    if (heap.size() == n && documents < heap.peek().documentCount) {
+                        walker.skipChildren();
+                        continue;
+                    }
+                    int length = walker.path.length();
+                    int first = length - node.getLabel().length() + 1;
+                    if (first > maxLength) {
+                        walker.skipChildren();
+                        continue;
+                    }
+                    char last = walker.path.charAt(length - 1);
+                    if (last == endSymbol || last == GeneralizedSuffixTree.TRUNCATION_SYMBOL) {
+                        length--;
+                    }
+                    // the shorter strings come first in lexicographic order
+                    for (int l = Math.max(first, minLength); l <= Math.min(length, maxLength); l++) {
+                        if (!offer(walker.path, l, documents)) {
+                            break;
+                        }
+                    }
+                }
+            }
+
+            /**
+             * Adds a string to the heap if it is better than the worst one
+             *
+             * @return false if the string was not added
+             */
+            private boolean offer(StringBuilder path, int length, int documents) {
+                if (heap.size() == n) {
+                    FrequentSubstring worst = heap.peek();
+                    if (documents < worst.documentCount
+                            || (documents == worst.documentCount && compare(path, length, worst.string) > 0)) {
+                        return false;
+                    }
+                    heap.poll();
+                }
+                heap.add(new FrequentSubstring(path.substring(0, length), documents));
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Compares the first <tt>length</tt> characters of a path to a string, without copying them
+     */
+    private static int compare(CharSequence path, int length, String string) {
+        int common = Math.min(length, string.length());
+        for (int i = 0; i < common; i++) {
+            if (path.charAt(i) != string.charAt(i)) {
+                return path.charAt(i) - string.charAt(i);
+            }
+        }
+        return length - string.length();
+    }
+
+    private static final int COUNT = 0;
+    private static final int LEFT = 1;
+    private static final int REPORT = 2;
+
+    /**
+     * Runs one pass of an analysis, forking a task for each subtree
+     */
+    private static final class Pass extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Analysis analysis;
+        private final List<Node> subtrees;
+        private final Node subtree;
+        private final int pass;
+        private final List<Pass> tasks = new ArrayList<Pass>();
+        private List<Repeat> repeats = Collections.emptyList();
+
+        Pass(Analysis analysis, List<Node> subtrees, int pass) {
+            this(analysis, subtrees, null, pass);
+        }
+
+        private Pass(Analysis analysis, List<Node> subtrees, Node subtree, int pass) {
+            this.analysis = analysis;
+            this.subtrees = subtrees;
+            this.subtree = subtree;
+            this.pass = pass;
+        }
+
+        @Override
+        protected void compute() {
+            if (subtree == null) {
+                for (Node node : subtrees) {
+                    tasks.add(new Pass(analysis, null, node, pass));
+                }
+                invokeAll(tasks);
+            } else if (pass == COUNT) {
+                analysis.count(subtree);
+            } else if (pass == LEFT) {
+                analysis.extendLeft(subtree);
+            } else {
+                repeats = analysis.report(subtree);
+            }
+        }
+    }
+
+    /**
+     * Visits a subtree depth-first, keeping track of the string of the current node
+     */
+    private static final class PathWalker {
+
+        private final StringBuilder path = new StringBuilder();
+        private Node[] nodes = new Node[16];
+        private Node[] parents = new Node[16];
+        private int[] depths = new int[16];
+        private int top = 0;
+        private Node node;
+        /**
+         * The parent of the current node, null for the root of the subtree
+         */
+        private Node parent;
+        /**
+         * The number of children of the current node pushed on the stack
+         */
+        private int pushed = 0;
+
+        PathWalker(Node subtree) {
+            nodes[top] = subtree;
+            depths[top++] = 0;
+        }
+
+        /**
+         * Moves to the next node, returning false when the subtree has been visited
+         */
+        boolean next() {
+            if (top == 0) {
+                return false;
+            }
+            node = nodes[--top];
+            parent = parents[top];
+            nodes[top] = null;
+            parents[top] = null;
+            path.setLength(depths[top]);
+            path.append(node.getLabel());
+            int children = node.getChildCount();
+            if (top + children > nodes.length) {
+                nodes = Arrays.copyOf(nodes, Math.max(nodes.length * 2, top + children));
+                parents = Arrays.copyOf(parents, nodes.length);
+                depths = Arrays.copyOf(depths, nodes.length);
+            }
+            for (Node child : node.getChildren()) {
+                nodes[top] = child;
+                parents[top] = node;
+                depths[top++] = path.length();
+            }
+            pushed = children;
+            return true;
+        }
+
+        /**
+         * Skips the subtree of the current node
+         */
+        void skipChildren() {
+            while (pushed > 0) {
+                nodes[--top] = null;
+                parents[top] = null;
+                pushed--;
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.util.Collection;
+
+/**
+ * The queries shared by all the substring indexes of this package.
+ *
+ * All the implementations index a set of (key, index) pairs and share the same semantics:
+ * keys are wrapped by a start and an end symbol ('^' and '$'), queries return the set of
+ * the indexes whose key contains the given string, and empty queries return an empty collection.
+ *
+ * @see GeneralizedSuffixTree
+ */
+public interface SubstringIndex {
+
+    /**
+     * Returns all the indexes whose key contains the given word
+     * @param word the string to search for
+     * @return the collection of indexes associated with the input <tt>word</tt>
+     */
+    Collection<Integer> search(String word);
+
+    /**
+     * Returns at most the given number of indexes whose key contains the given word
+     * @param word the string to search for
+     * @param results the max number of results to return. Use -1 to get all
+     * @return at most <tt>results</tt> values for the given word
+     */
+    Collection<Integer> search(String word, int results);
+
+    /**
+     * Returns all the indexes whose key starts with the given word
+     * @param word the string to search for
+     * @return the collection of indexes associated with the input <tt>word</tt>
+     */
+    Collection<Integer> startsWith(String word);
+
+    /**
+     * Returns all the indexes whose key ends with the given word
+     * @param word the string to search for
+     * @return the collection of indexes associated with the input <tt>word</tt>
+     */
+    Collection<Integer> endsWith(String word);
+
+    /**
+     * Returns all the indexes whose key is equal to the given word
+     * @param word the string to search for
+     * @return the collection of indexes associated with the input <tt>word</tt>
+     */
+    Collection<Integer> searchWord(String word);
+}
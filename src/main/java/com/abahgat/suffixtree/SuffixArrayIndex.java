@@ -0,0 +1,276 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A read-only substring index based on an enhanced suffix array (suffix array plus LCP array).
+ *
+ * The keys are concatenated into a single text (see Corpus), whose suffix array is built in linear
+ * time with SA-IS; the LCP array is then computed with Kasai's algorithm. A query finds the first
+ * suffix starting with the query by binary search, skipping the characters already known to match
+ * both ends of the search interval, and then extends the range of matching suffixes by scanning the
+ * LCP array, without comparing any more characters.
+ *
+ * This is the engine of choice to index a fixed corpus all at once: construction only makes a few
+ * sequential passes over flat arrays, and the index takes 9 bytes per input character (text,
+ * suffix array and LCP array), with no per-node objects. The index answers the same queries as
+ * GeneralizedSuffixTree, with the same semantics.
+ *
+ * SuffixArrayIndex instances are immutable and can be queried concurrently. They are built with
+ * SuffixArrayIndex.Builder:
+ *
+ * <pre>
+ * SuffixArrayIndex.Builder builder = new SuffixArrayIndex.Builder();
+ * builder.put("cacao", 0);
+ * builder.put("banana", 1);
+ * SuffixArrayIndex index = builder.build();
+ * </pre>
+ *
+ * @see FMIndex
+ */
+public class SuffixArrayIndex implements SubstringIndex {
+
+    private final char startSymbol;
+    private final char endSymbol;
+    private final byte[] text;
+    /**
+     * The start offsets of the suffixes of the text, in lexicographic order (the terminator excluded)
+     */
+    private final int[] sa;
+    /**
+     * lcp[i] is the length of the longest common prefix of the suffixes sa[i - 1] and sa[i]
+     */
+    private final int[] lcp;
+    private final int[] starts;
+    private final int[] values;
+
+    private SuffixArrayIndex(Corpus corpus) {
+        this.startSymbol = corpus.getStartSymbol();
+        this.endSymbol = corpus.getEndSymbol();
+        this.text = corpus.getText();
+        this.starts = corpus.getStarts();
+        this.values = corpus.getValues();
+
+        int[] symbols = corpus.toSymbols();
+        int[] fullSa = SuffixArrays.sort(symbols, 257);
+        int[] fullLcp = SuffixArrays.lcp(symbols, fullSa);
+        symbols = null;
+        // the terminator is always the first suffix and never matches a query
+        this.sa = Arrays.copyOfRange(fullSa, 1, fullSa.length);
+        fullSa = null;
+        this.lcp = Arrays.copyOfRange(fullLcp, 1, fullLcp.length);
+        if (lcp.length > 0) {
+            lcp[0] = 0;
+        }
+    }
+
+    /**
+     * Searches for the word that starts the string
+     * @param word the key that starts the string
+     * @return the collection of indexes associated with the input <tt>word</tt>
+     */
+    public Collection<Integer> startsWith(String word) {
+        if (word == null || word.isEmpty()) {
+            return Collections.EMPTY_LIST;
+        }
+        return search(startSymbol + word);
+    }
+
+    /**
+     * Searches for the word that ends the string
+     * @param word the key that ends the string
+     * @return the collection of indexes associated with the input <tt>word</tt>
+     */
+    public Collection<Integer> endsWith(String word) {
+        if (word == null || word.isEmpty()) {
+            return Collections.EMPTY_LIST;
+        }
+        return search(word + endSymbol);
+    }
+
+    /**
+     * Searches for the word within the index.
+     * @param word the word to search for
+     * @return the collection of indexes associated with the input <tt>word</tt>
+     */
+    public Collection<Integer> searchWord(String word) {
+        if (word == null || word.isEmpty()) {
+            return Collections.EMPTY_LIST;
+        }
+        return search(startSymbol + word + endSymbol);
+    }
+
+    /**
+     * Searches for the given word within the index.
+     *
+     * @param word the key to search for
+     * @return the collection of indexes associated with the input <tt>word</tt>
+     */
+    public Collection<Integer> search(String word) {
+        return search(word, -1);
+    }
+
+    /**
+     * Searches for the given word within the index and returns at most the given number of matches.
+     *
+     * @param word the key to search for
+     * @param results the max number of results to return. Use -1 to get all
+     * @return at most <tt>results</tt> values for the given word
+     */
+    public Collection<Integer> search(String word, int results) {
+        int start = findFirst(word);
+        if (start < 0) {
+            return Collections.EMPTY_LIST;
+        }
+        int m = word.length();
+        Set<Integer> ret = new HashSet<Integer>();
+        for (int row = start; row < sa.length && (row == start || lcp[row] >= m); row++) {
+            ret.add(values[documentAt(sa[row])]);
+            if (ret.size() == results) {
+                break;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the number of occurrences of the given word in the indexed keys, counting
+     * repeated occurrences within the same key
+     *
+     * @param word the key to search for
+     * @return the number of occurrences of <tt>word</tt>
+     */
+    public int countOccurrences(String word) {
+        int start = findFirst(word);
+        if (start < 0) {
+            return 0;
+        }
+        int end = start + 1;
+        while (end < sa.length && lcp[end] >= word.length()) {
+            end++;
+        }
+        return end - start;
+    }
+
+    /**
+     * Returns the estimated heap size of this index, in bytes
+     */
+    public long getSizeInBytes() {
+        return MemoryLayout.object(5, 1)
+                + MemoryLayout.byteArray(text.length)
+                + MemoryLayout.intArray(sa.length)
+                + MemoryLayout.intArray(lcp.length)
+                + MemoryLayout.intArray(starts.length)
+                + MemoryLayout.intArray(values.length);
+    }
+
+    /**
+     * Finds the first suffix, in lexicographic order, that starts with the given word.
+     *
+     * The search keeps track of how many characters of the word are known to match the suffixes at
+     * both ends of the current interval: all the suffixes in between share at least the shorter of
+     * the two prefixes, so comparisons can start from there.
+     *
+     * @return the row of the first suffix starting with <tt>word</tt>, or -1 if there are none
+     */
+    private int findFirst(String word) {
+        if (word.isEmpty() || values.length == 0 || !Corpus.isValidQuery(word, startSymbol, endSymbol)) {
+            return -1;
+        }
+        int m = word.length();
+        for (int i = 0; i < m; i++) {
+            char ch = word.charAt(i);
+            if (ch != (char) (byte) ch) {
+                throw new IllegalArgumentException("Illegal input character " + ch + ".");
+            }
+        }
+
+        int low = 0;
+        int high = sa.length;
+        int lowMatch = 0;
+        int highMatch = 0;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int pos = sa[mid];
+            int matched = Math.min(lowMatch, highMatch);
+            while (matched < m && pos + matched < text.length
+                    && text[pos + matched] == (byte) word.charAt(matched)) {
+                matched++;
+            }
+            if (matched == m
+                    || (pos + matched < text.length && (text[pos + matched] & 0xFF) > (word.charAt(matched) & 0xFF))) {
+                high = mid;
+                highMatch = matched;
+            } else {
+                low = mid + 1;
+                lowMatch = matched;
+            }
+        }
+        if (low == sa.length || highMatch < m) {
+            return -1;
+        }
+        return low;
+    }
+
+    private int documentAt(int offset) {
+        int pos = Arrays.binarySearch(starts, offset);
+        return pos >= 0 ? pos : -pos - 2;
+    }
+
+    /**
+     * Collects the (key, index) pairs to build a SuffixArrayIndex from
+     */
+    public static class Builder {
+
+        private final Corpus corpus;
+
+        /**
+         * Creates a builder that uses the same start and end symbols as GeneralizedSuffixTree
+         */
+        public Builder() {
+            this.corpus = new Corpus('^', '$');
+        }
+
+        /**
+         * Adds the specified <tt>index</tt> to the index under the given <tt>key</tt>.
+         *
+         * Entries must be inserted so that their indexes are in non-decreasing order,
+         * otherwise an IllegalStateException will be raised.
+         *
+         * @param key the string key that will be added to the index
+         * @param index the value that will be added to the index
+         * @return this builder
+         * @throws IllegalStateException if an invalid index is passed as input
+         */
+        public Builder put(String key, int index) throws IllegalStateException {
+            corpus.add(key, index);
+            return this;
+        }
+
+        /**
+         * Builds the index out of all the keys added so far
+         */
+        public SuffixArrayIndex build() {
+            return new SuffixArrayIndex(corpus);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.util.Arrays;
+
+/**
+ * Suffix sorting for the array-based indexes.
+ */
+final class SuffixArrays {
+
+    private SuffixArrays() {
+    }
+
+    /**
+     * Computes the suffix array of the given text in linear time, using the SA-IS algorithm by
+     * Nong, Zhang and Chan ("Two efficient algorithms for linear time suffix array construction").
+     *
+     * Suffixes are classified as S-type or L-type; the leftmost S-type ones (LMS) are sorted first,
+     * recursively if needed, and the order of all the other suffixes is induced from them with
+     * two scans over the buckets of their first symbol.
+     *
+     * @param text the text to sort, whose last symbol must be a unique 0 terminator
+     * @param alphabetSize the number of distinct symbols (all symbols must be lower than it)
+     * @return the start offsets of the suffixes of <tt>text</tt>, in lexicographic order
+     */
+    static int[] sort(int[] text, int alphabetSize) {
+        int[] sa = new int[text.length];
+        sais(text, sa, text.length, alphabetSize);
+        return sa;
+    }
+
+    /**
+     * Computes the longest common prefix array with Kasai's algorithm, in linear time.
+     *
+     * @param text the text, as passed to sort
+     * @param sa the suffix array of <tt>text</tt>
+     * @return an array whose i-th element is the length of the longest common prefix of the suffixes
+     *         sa[i - 1] and sa[i] (0 for i = 0)
+     */
+    static int[] lcp(int[] text, int[] sa) {
+        int n = text.length;
+        int[] rank = new int[n];
+        for (int i = 0; i < n; i++) {
+            rank[sa[i]] = i;
+        }
+        int[] lcp = new int[n];
+        int h = 0;
+        for (int i = 0; i < n; i++) {
+            if (rank[i] > 0) {
+                int j = sa[rank[i] - 1];
+                while (i + h < n && j + h < n && text[i + h] == text[j + h]) {
+                    h++;
+                }
+                lcp[rank[i]] = h;
+                if (h > 0) {
+                    h--;
+                }
+            } else {
+                h = 0;
+            }
+        }
+        return lcp;
+    }
+
+    private static void sais(int[] s, int[] sa, int n, int k) {
+        if (n == 1) {
+            // only the terminator, which is not an LMS suffix
+            sa[0] = 0;
+            return;
+        }
+        // classify the suffixes: true for S-type, false for L-type
+        boolean[] t = new boolean[n];
+        t[n - 1] = true;
+        for (int i = n - 2; i >= 0; i--) {
+            t[i] = s[i] < s[i + 1] || (s[i] == s[i + 1] && t[i + 1]);
+        }
+
+        // stage 1: sort the LMS substrings, by inducing from their (unsorted) positions
+        int[] buckets = new int[k];
+        bucketEnds(s, buckets, n, k);
+        Arrays.fill(sa, 0, n, -1);
+        for (int i = 1; i < n; i++) {
+            if (isLms(t, i)) {
+                sa[--buckets[s[i]]] = i;
+            }
+        }
+        induceL(s, sa, t, buckets, n, k);
+        induceS(s, sa, t, buckets, n, k);
+
+        // compact the sorted LMS substrings in the first n1 positions
+        int n1 = 0;
+        for (int i = 0; i < n; i++) {
+            if (isLms(t, sa[i])) {
+                sa[n1++] = sa[i];
+            }
+        }
+
+        // name the LMS substrings: equal substrings get the same name
+        Arrays.fill(sa, n1, n, -1);
+        int names = 0;
+        int prev = -1;
+        for (int i = 0; i < n1; i++) {
+            int pos = sa[i];
+            boolean diff = false;
+            for (int d = 0; d < n; d++) {
+                if (prev == -1 || s[pos + d] != s[prev + d] || t[pos + d] != t[prev + d]) {
+                    diff = true;
+                    break;
+                } else if (d > 0 && (isLms(t, pos + d) || isLms(t, prev + d))) {
+                    break;
+                }
+            }
+            if (diff) {
+                names++;
+                prev = pos;
+            }
+            sa[n1 + (pos >> 1)] = names - 1;
+        }
+        for (int i = n - 1, j = n - 1; i >= n1; i--) {
+            if (sa[i] >= 0) {
+                sa[j--] = sa[i];
+            }
+        }
+
+        // stage 2: sort the reduced string, recursively if names are not unique yet
+        int[] s1 = Arrays.copyOfRange(sa, n - n1, n);
+        int[] sa1 = new int[n1];
+        if (names < n1) {
+            sais(s1, sa1, n1, names);
+        } else {
+            for (int i = 0; i < n1; i++) {
+                sa1[s1[i]] = i;
+            }
+        }
+
+        // stage 3: induce the order of all the suffixes from the sorted LMS suffixes
+        for (int i = 1, j = 0; i < n; i++) {
+            if (isLms(t, i)) {
+                s1[j++] = i;
+            }
+        }
+        for (int i = 0; i < n1; i++) {
+            sa1[i] = s1[sa1[i]];
+        }
+        Arrays.fill(sa, 0, n, -1);
+        bucketEnds(s, buckets, n, k);
+        for (int i = n1 - 1; i >= 0; i--) {
+            int j = sa1[i];
+            sa[--buckets[s[j]]] = j;
+        }
+        induceL(s, sa, t, buckets, n, k);
+        induceS(s, sa, t, buckets, n, k);
+    }
+
+    private static boolean isLms(boolean[] t, int i) {
+        return i > 0 && t[i] && !t[i - 1];
+    }
+
+    private static void bucketStarts(int[] s, int[] buckets, int n, int k) {
+        Arrays.fill(buckets, 0, k, 0);
+        for (int i = 0; i < n; i++) {
+            buckets[s[i]]++;
+        }
+        int sum = 0;
+        for (int c = 0; c < k; c++) {
+            int count = buckets[c];
+            buckets[c] = sum;
+            sum += count;
+        }
+    }
+
+    private static void bucketEnds(int[] s, int[] buckets, int n, int k) {
+        Arrays.fill(buckets, 0, k, 0);
+        for (int i = 0; i < n; i++) {
+            buckets[s[i]]++;
+        }
+        int sum = 0;
+        for (int c = 0; c < k; c++) {
+            sum += buckets[c];
+            buckets[c] = sum;
+        }
+    }
+
+    private static void induceL(int[] s, int[] sa, boolean[] t, int[] buckets, int n, int k) {
+        bucketStarts(s, buckets, n, k);
+        for (int i = 0; i < n; i++) {
+            int j = sa[i] - 1;
+            if (j >= 0 && !t[j]) {
+                sa[buckets[s[j]]++] = j;
+            }
+        }
+    }
+
+    private static void induceS(int[] s, int[] sa, boolean[] t, int[] buckets, int n, int k) {
+        bucketEnds(s, buckets, n, k);
+        for (int i = n - 1; i >= 0; i--) {
+            int j = sa[i] - 1;
+            if (j >= 0 && t[j]) {
+                sa[--buckets[s[j]]] = j;
+            }
+        }
+    }
+}
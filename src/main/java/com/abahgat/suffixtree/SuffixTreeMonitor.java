@@ -0,0 +1,235 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Exposes the statistics of a GeneralizedSuffixTree as a JMX MXBean.
+ *
+ * The statistics are computed by walking the whole tree, so they are only recomputed
+ * on refresh (which can also be invoked as a JMX operation) and the attributes report the
+ * last snapshot. Since the tree is not thread safe, refresh must not run concurrently with put:
+ * trees fed by an IngestPipeline are monitored through the pipeline, so that the snapshot is
+ * taken under its read lock, and trees guarded by another lock can pass the lock that readers
+ * take. Without either, refresh (and the JMX operation) must only be invoked while no key is being
+ * added.
+ *
+ * @see TreeStatistics
+ */
+public class SuffixTreeMonitor implements SuffixTreeMonitorMXBean {
+
+    /**
+     * The JMX domain used by register(String)
+     */
+    public static final String DOMAIN = "com.abahgat.suffixtree";
+
+    private static final Function<GeneralizedSuffixTree, TreeStatistics> STATISTICS =
+            new Function<GeneralizedSuffixTree, TreeStatistics>() {
+        @Override
+        public TreeStatistics apply(GeneralizedSuffixTree tree) {
+            return tree.getStatistics();
+        }
+    };
+
+    private final GeneralizedSuffixTree tree;
+    /**
+     * The lock held while taking a snapshot, or null
+     */
+    private final Lock lock;
+    /**
+     * The pipeline that feeds the tree, or null
+     */
+    private final IngestPipeline pipeline;
+    private volatile TreeStatistics snapshot;
+    private volatile long lastRefreshTime = 0;
+    private ObjectName name;
+
+    /**
+     * Creates a monitor for a tree that is not modified while refresh runs
+     */
+    public SuffixTreeMonitor(GeneralizedSuffixTree tree) {
+        this(tree, null, null);
+    }
+
+    /**
+     * Creates a monitor that holds the given lock while taking a snapshot
+     *
+     * @param tree the monitored tree
+     * @param lock the lock that excludes writers, typically the read lock of a ReadWriteLock
+     */
+    public SuffixTreeMonitor(GeneralizedSuffixTree tree, Lock lock) {
+        this(tree, lock, null);
+    }
+
+    /**
+     * Creates a monitor for the tree fed by the given pipeline, that takes snapshots through
+     * IngestPipeline#read
+     */
+    public SuffixTreeMonitor(IngestPipeline pipeline) {
+        this(null, null, pipeline);
+    }
+
+    private SuffixTreeMonitor(GeneralizedSuffixTree tree, Lock lock, IngestPipeline pipeline) {
+        this.tree = tree;
+        this.lock = lock;
+        this.pipeline = pipeline;
+    }
+
+    /**
+     * Registers this monitor to the platform MBean server, as
+     * <tt>com.abahgat.suffixtree:type=GeneralizedSuffixTree,name=</tt><em>name</em>
+     *
+     * @param name the name that identifies the monitored tree
+     * @return the name this monitor has been registered with
+     * @throws JMException if the registration fails
+     */
+    public synchronized ObjectName register(String name) throws JMException {
+        if (this.name != null) {
+            throw new IllegalStateException("The monitor is already registered as " + this.name);
+        }
+        ObjectName objectName = new ObjectName(DOMAIN + ":type=GeneralizedSuffixTree,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        this.name = objectName;
+        return objectName;
+    }
+
+    /**
+     * Removes this monitor from the platform MBean server, if it was registered
+     * @throws JMException if the unregistration fails
+     */
+    public synchronized void unregister() throws JMException {
+        if (name != null) {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.unregisterMBean(name);
+            name = null;
+        }
+    }
+
+    /**
+     * Takes a new snapshot, under the lock or the pipeline given to the constructor
+     *
+     * @throws IllegalStateException if the monitored pipeline has failed
+     */
+    @Override
+    public void refresh() {
+        if (pipeline != null) {
+            snapshot = pipeline.read(STATISTICS);
+        } else if (lock != null) {
+            lock.lock();
+            try {
+                snapshot = tree.getStatistics();
+            } finally {
+                lock.unlock();
+            }
+        } else {
+            snapshot = tree.getStatistics();
+        }
+        lastRefreshTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the last snapshot, taking one if refresh was never called
+     */
+    public TreeStatistics getStatistics() {
+        TreeStatistics stats = snapshot;
+        if (stats == null) {
+            refresh();
+            stats = snapshot;
+        }
+        return stats;
+    }
+
+    @Override
+    public long getLastRefreshTime() {
+        return lastRefreshTime;
+    }
+
+    @Override
+    public long getNodeCount() {
+        return getStatistics().getNodeCount();
+    }
+
+    @Override
+    public long getLeafCount() {
+        return getStatistics().getLeafCount();
+    }
+
+    @Override
+    public long getEdgeCount() {
+        return getStatistics().getEdgeCount();
+    }
+
+    @Override
+    public long getLabelCharacters() {
+        return getStatistics().getLabelCharacters();
+    }
+
+    @Override
+    public long getPostings() {
+        return getStatistics().getPostings();
+    }
+
+    @Override
+    public double getSuffixLinkCoverage() {
+        return getStatistics().getSuffixLinkCoverage();
+    }
+
+    @Override
+    public long getNodeBytes() {
+        return getStatistics().getNodeBytes();
+    }
+
+    @Override
+    public long getEdgeBagBytes() {
+        return getStatistics().getEdgeBagBytes();
+    }
+
+    @Override
+    public long getEdgeBytes() {
+        return getStatistics().getEdgeBytes();
+    }
+
+    @Override
+    public long getLabelBytes() {
+        return getStatistics().getLabelBytes();
+    }
+
+    @Override
+    public long getDataBytes() {
+        return getStatistics().getDataBytes();
+    }
+
+    @Override
+    public long getTotalBytes() {
+        return getStatistics().getTotalBytes();
+    }
+
+    @Override
+    public long[] getFanOutHistogram() {
+        return getStatistics().getFanOutHistogram();
+    }
+
+    @Override
+    public long[] getDepthHistogram() {
+        return getStatistics().getDepthHistogram();
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+/**
+ * The management interface exposed by SuffixTreeMonitor.
+ *
+ * Attributes describe the last snapshot taken with refresh, so reading them
+ * only walks the tree if no snapshot was taken yet.
+ * @see SuffixTreeMonitor
+ * @see TreeStatistics
+ */
+public interface SuffixTreeMonitorMXBean {
+
+    /**
+     * Recomputes the statistics of the monitored tree
+     */
+    void refresh();
+
+    /**
+     * Returns the time (as in System.currentTimeMillis) of the last refresh, or 0 if none happened yet
+     */
+    long getLastRefreshTime();
+
+    long getNodeCount();
+
+    long getLeafCount();
+
+    long getEdgeCount();
+
+    long getLabelCharacters();
+
+    long getPostings();
+
+    double getSuffixLinkCoverage();
+
+    long getNodeBytes();
+
+    long getEdgeBagBytes();
+
+    long getEdgeBytes();
+
+    long getLabelBytes();
+
+    long getDataBytes();
+
+    long getTotalBytes();
+
+    long[] getFanOutHistogram();
+
+    long[] getDepthHistogram();
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+/**
+ * Maps the tokens (e.g. words) indexed by a TokenSuffixTree to non-negative int ids.
+ *
+ * Implementations can intern the tokens in any way (a hash map, a perfect hash built offline, a
+ * vocabulary shared with other components...), as long as a token keeps its id once assigned.
+ *
+ * @see HashTokenDictionary
+ */
+public interface TokenDictionary {
+
+    /**
+     * The id returned by lookup for the tokens that are not in the dictionary
+     */
+    int NOT_FOUND = -1;
+
+    /**
+     * Returns the id of the given token, assigning a new one if the token is not in the dictionary
+     *
+     * @return a non-negative id
+     */
+    int add(String token);
+
+    /**
+     * Returns the id of the given token, or NOT_FOUND, without modifying the dictionary
+     */
+    int lookup(String token);
+
+    /**
+     * Returns the token that has the given id, or null if there is none
+     */
+    String token(int id);
+
+    /**
+     * Returns the number of tokens in the dictionary
+     */
+    int size();
+}
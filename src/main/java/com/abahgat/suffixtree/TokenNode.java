@@ -0,0 +1,160 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A node of a TokenSuffixTree, together with the edge that leads to it.
+ *
+ * This is the counterpart of Node over int token ids: the label of the incoming edge is an
+ * array of tokens, and the children are kept in an IntEdgeMap, only allocated for internal nodes.
+ * Payloads follow the same rules as the ones of Node: they are sorted, without duplicates, and
+ * always full.
+ *
+ * @see TokenSuffixTree
+ */
+class TokenNode {
+
+    private static final int[] EMPTY = new int[0];
+
+    private int[] data = EMPTY;
+    /**
+     * The tokens of the edge that leads to this node (empty for the root)
+     */
+    private int[] label;
+    /**
+     * The children of this node, or null for leaves
+     */
+    private IntEdgeMap children;
+    /**
+     * The suffix link as described in Ukkonen's paper
+     * @see Node
+     */
+    private TokenNode suffix;
+    /**
+     * The set used by getData to deduplicate indexes, reused by each thread
+     */
+    private static final ThreadLocal<IndexSet> COLLECTOR = new ThreadLocal<IndexSet>() {
+        @Override
+        protected IndexSet initialValue() {
+            return new IndexSet(1024);
+        }
+    };
+
+    /**
+     * @param label the tokens of the edge that leads to the node
+     */
+    TokenNode(int[] label) {
+        this.label = label;
+    }
+
+    /**
+     * Returns the first <tt>numElements</tt> indexes stored in this node and in its subtree.
+     *
+     * As in Node, the subtree is visited with an explicit stack and the indexes are deduplicated
+     * in a per-thread IndexSet.
+     *
+     * @param numElements the number of results to return. Use -1 to get all
+     * @return the indexes, as a sorted set
+     */
+    Collection<Integer> getData(int numElements) {
+        IndexSet collected = COLLECTOR.get();
+        try {
+            TokenNode[] stack = new TokenNode[16];
+            int top = 0;
+            stack[top++] = this;
+            while (top > 0) {
+                TokenNode node = stack[--top];
+                for (int i = 0; i < node.data.length; i++) {
+                    if (collected.add(node.data[i]) && collected.size() == numElements) {
+                        return collected.toSet();
+                    }
+                }
+                if (top + node.getChildCount() > stack.length) {
+                    stack = Arrays.copyOf(stack, Math.max(stack.length * 2, top + node.getChildCount()));
+                }
+                top += node.copyChildren(stack, top);
+            }
+            return collected.toSet();
+        } finally {
+            collected.clear();
+        }
+    }
+
+    /**
+     * Adds the given index to this node and to its suffixes
+     * @see Node#addRef(int)
+     */
+    void addRef(int index) {
+        for (TokenNode iter = this; iter != null && !iter.endsWith(index); iter = iter.suffix) {
+            iter.data = Arrays.copyOf(iter.data, iter.data.length + 1);
+            iter.data[iter.data.length - 1] = index;
+        }
+    }
+
+    private boolean endsWith(int index) {
+        return data.length > 0 && data[data.length - 1] == index;
+    }
+
+    int[] getLabel() {
+        return label;
+    }
+
+    void setLabel(int[] label) {
+        this.label = label;
+    }
+
+    /**
+     * Adds the given node as a child of this one, replacing the child whose label starts
+     * with the same token, if any
+     */
+    void addChild(TokenNode child) {
+        if (children == null) {
+            children = new IntEdgeMap();
+        }
+        children.put(child);
+    }
+
+    /**
+     * Returns the child whose label starts with the given token, or null
+     */
+    TokenNode getChild(int token) {
+        return children == null ? null : children.get(token);
+    }
+
+    /**
+     * Copies the children of this node to the given array, starting from <tt>offset</tt>
+     *
+     * @return the number of children copied
+     */
+    int copyChildren(TokenNode[] dest, int offset) {
+        return children == null ? 0 : children.copyValues(dest, offset);
+    }
+
+    int getChildCount() {
+        return children == null ? 0 : children.size();
+    }
+
+    TokenNode getSuffix() {
+        return suffix;
+    }
+
+    void setSuffix(TokenNode suffix) {
+        this.suffix = suffix;
+    }
+}
@@ -0,0 +1,472 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * A generalized suffix tree whose alphabet is made of tokens (e.g. words) rather than characters,
+ * for phrase search: every key is a sequence of tokens, and queries find the keys that contain,
+ * start with or end with a given sequence of tokens.
+ *
+ * Tokens are mapped to non-negative int ids by a TokenDictionary, which can be shared with other
+ * components; keys and queries can be given either as tokens or as ids. A key of n words only has
+ * n suffixes, instead of one per character, so the tree has far fewer nodes than a
+ * GeneralizedSuffixTree over the same text, and a phrase is matched with one lookup per word.
+ *
+ * The construction is the same as the one of GeneralizedSuffixTree (Ukkonen's algorithm, with the
+ * indexes propagated along the suffix links), with int arrays in place of strings: edge labels are
+ * arrays of token ids, children are kept in IntEdgeMaps, and every key is surrounded by two
+ * sentinel ids (START and END) that no dictionary assigns.
+ *
+ * As GeneralizedSuffixTree, the tree can be searched by several threads at once, but it must not
+ * be modified while it is being searched.
+ *
+ * <pre>
+ * TokenSuffixTree tree = new TokenSuffixTree(new HashTokenDictionary());
+ * tree.put("connection to the database refused".split(" "), 0);
+ * tree.search("the", "database");         // [0]
+ * tree.startsWith("connection", "to");    // [0]
+ * tree.endsWith("database");              // []
+ * </pre>
+ */
+public class TokenSuffixTree {
+
+    /**
+     * The id that starts every key
+     */
+    static final int START = -1;
+    /**
+     * The id that ends every key
+     */
+    static final int END = -2;
+    private static final int[] EMPTY = new int[0];
+
+    private final TokenDictionary dictionary;
+    /**
+     * The index of the last item that was added to the tree
+     */
+    private int last = 0;
+    private final TokenNode root = new TokenNode(EMPTY);
+    /**
+     * The last leaf that was added during the update operation
+     */
+    private TokenNode activeLeaf = root;
+
+    /**
+     * @param dictionary the dictionary that maps the tokens to their ids
+     */
+    public TokenSuffixTree(TokenDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    public TokenDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Adds the given index under the given sequence of tokens, adding the tokens to the dictionary
+     *
+     * @throws IllegalStateException if an index smaller than a previous one is passed
+     * @see GeneralizedSuffixTree#put(String, int)
+     */
+    public void put(String[] tokens, int index) throws IllegalStateException {
+        // checked before the tokens are added, so that a rejected key leaves the dictionary untouched
+        checkIndex(index);
+        int[] ids = new int[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+            ids[i] = dictionary.add(tokens[i]);
+        }
+        put(ids, index);
+    }
+
+    /**
+     * Adds the given index under the given sequence of token ids
+     *
+     * @throws IllegalStateException if an index smaller than a previous one is passed
+     * @throws IllegalArgumentException if an id is negative
+     */
+    public void put(int[] tokens, int index) throws IllegalStateException, IllegalArgumentException {
+        checkIndex(index);
+        checkTokens(tokens);
+        int[] remainder = new int[tokens.length + 2];
+        remainder[0] = START;
+        System.arraycopy(tokens, 0, remainder, 1, tokens.length);
+        remainder[remainder.length - 1] = END;
+        last = index;
+        insert(remainder, index);
+    }
+
+    private void checkIndex(int index) {
+        if (index < last) {
+            throw new IllegalStateException("The input index must not be less than any of the previously inserted ones. Got " + index + ", expected at least " + last);
+        }
+    }
+
+    /**
+     * Rejects the negative ids, which include the sentinels and TokenDictionary.NOT_FOUND
+     */
+    private static void checkTokens(int[] tokens) {
+        for (int token : tokens) {
+            if (token < 0) {
+                throw new IllegalArgumentException("Invalid token id " + token);
+            }
+        }
+    }
+
+    /**
+     * Returns the indexes whose key contains the given phrase
+     */
+    public Collection<Integer> search(String... phrase) {
+        return search(lookup(phrase), -1);
+    }
+
+    /**
+     * Returns the indexes whose key contains the given token ids
+     *
+     * @throws IllegalArgumentException if an id is negative
+     */
+    public Collection<Integer> search(int[] phrase) {
+        return search(phrase, -1);
+    }
+
+    /**
+     * Returns at most <tt>results</tt> indexes whose key contains the given phrase
+     *
+     * @param phrase the token ids to search for
+     * @param results the max number of results to return. Use -1 to get all
+     * @throws IllegalArgumentException if an id is negative
+     */
+    public Collection<Integer> search(int[] phrase, int results) {
+        if (phrase == null || phrase.length == 0) {
+            return Collections.EMPTY_LIST;
+        }
+        return collect(phrase, false, false, results);
+    }
+
+    /**
+     * Returns the indexes whose key starts with the given phrase
+     */
+    public Collection<Integer> startsWith(String... phrase) {
+        return startsWith(lookup(phrase));
+    }
+
+    /**
+     * Returns the indexes whose key starts with the given token ids
+     *
+     * @throws IllegalArgumentException if an id is negative
+     */
+    public Collection<Integer> startsWith(int[] phrase) {
+        if (phrase == null || phrase.length == 0) {
+            return Collections.EMPTY_LIST;
+        }
+        return collect(phrase, true, false, -1);
+    }
+
+    /**
+     * Returns the indexes whose key ends with the given phrase
+     */
+    public Collection<Integer> endsWith(String... phrase) {
+        return endsWith(lookup(phrase));
+    }
+
+    /**
+     * Returns the indexes whose key ends with the given token ids
+     *
+     * @throws IllegalArgumentException if an id is negative
+     */
+    public Collection<Integer> endsWith(int[] phrase) {
+        if (phrase == null || phrase.length == 0) {
+            return Collections.EMPTY_LIST;
+        }
+        return collect(phrase, false, true, -1);
+    }
+
+    /**
+     * Maps a phrase to token ids, or returns null if one of the tokens is unknown (in which case
+     * no key can contain the phrase)
+     */
+    private int[] lookup(String[] phrase) {
+        int[] ids = new int[phrase.length];
+        for (int i = 0; i < phrase.length; i++) {
+            ids[i] = dictionary.lookup(phrase[i]);
+            if (ids[i] == TokenDictionary.NOT_FOUND) {
+                return null;
+            }
+        }
+        return ids;
+    }
+
+    private Collection<Integer> collect(int[] phrase, boolean start, boolean end, int results) {
+        // a negative id would match a sentinel
+        checkTokens(phrase);
+        int[] key = phrase;
+        if (start || end) {
+            key = new int[phrase.length + (start ? 1 : 0) + (end ? 1 : 0)];
+            if (start) {
+                key[0] = START;
+            }
+            System.arraycopy(phrase, 0, key, start ? 1 : 0, phrase.length);
+            if (end) {
+                key[key.length - 1] = END;
+            }
+        }
+        TokenNode node = searchNode(key);
+        return node == null ? Collections.EMPTY_LIST : node.getData(results);
+    }
+
+    /**
+     * Returns the node whose subtree holds the keys that contain the given sequence, or null
+     */
+    private TokenNode searchNode(int[] word) {
+        TokenNode currentNode = root;
+        int i = 0;
+        while (i < word.length) {
+            TokenNode child = currentNode.getChild(word[i]);
+            if (null == child) {
+                return null;
+            }
+            int[] label = child.getLabel();
+            int lenToMatch = Math.min(word.length - i, label.length);
+            for (int j = 1; j < lenToMatch; ++j) {
+                if (word[i + j] != label[j]) {
+                    return null;
+                }
+            }
+            if (label.length >= word.length - i) {
+                return child;
+            }
+            currentNode = child;
+            i += lenToMatch;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of nodes of the tree, including the root
+     */
+    int countNodes() {
+        int count = 0;
+        TokenNode[] stack = new TokenNode[16];
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            TokenNode node = stack[--top];
+            count++;
+            if (top + node.getChildCount() > stack.length) {
+                stack = Arrays.copyOf(stack, Math.max(stack.length * 2, top + node.getChildCount()));
+            }
+            top += node.copyChildren(stack, top);
+        }
+        return count;
+    }
+
+    /**
+     * Adds all the suffixes of the given sequence to the tree
+     *
+     * @param remainder the sequence to add, that must end with END
+     * @param index the value to add to the index
+     * @see GeneralizedSuffixTree
+     */
+    private void insert(int[] remainder, int index) {
+        activeLeaf = root;
+        TokenNode s = root;
+        int[] text = EMPTY;
+        for (int i = 0; i < remainder.length; i++) {
+            text = append(text, remainder[i]);
+            Pair active = update(s, text, remainder, i, index);
+            active = canonize(active.node, active.tokens);
+            s = active.node;
+            text = active.tokens;
+        }
+
+        if (null == activeLeaf.getSuffix() && activeLeaf != root && activeLeaf != s) {
+            activeLeaf.setSuffix(s);
+        }
+    }
+
+    /**
+     * Tests whether the sequence stringPart + t is contained in the subtree of inputs, splitting
+     * an edge if stringPart ends in its middle.
+     *
+     * @param key the sequence being added, whose suffix starting at <tt>from</tt> is the remainder
+     * @see GeneralizedSuffixTree
+     */
+    private Pair testAndSplit(TokenNode inputs, int[] stringPart, int t, int[] key, int from, int value) {
+        Pair ret = canonize(inputs, stringPart);
+        TokenNode s = ret.node;
+        int[] str = ret.tokens;
+
+        if (str.length > 0) {
+            TokenNode g = s.getChild(str[0]);
+            int[] label = g.getLabel();
+            if (label.length > str.length && label[str.length] == t) {
+                return new Pair(s, null, true);
+            }
+            // split the edge after str
+            TokenNode r = new TokenNode(str);
+            g.setLabel(Arrays.copyOfRange(label, str.length, label.length));
+            r.addChild(g);
+            s.addChild(r);
+            return new Pair(r, null, false);
+        }
+
+        TokenNode e = s.getChild(t);
+        if (null == e) {
+            return new Pair(s, null, false);
+        }
+        int[] label = e.getLabel();
+        int rest = key.length - from;
+        if (rest == label.length && regionMatches(key, from, label, label.length)) {
+            e.addRef(value);
+            return new Pair(s, null, true);
+        } else if (rest > label.length && regionMatches(key, from, label, label.length)) {
+            return new Pair(s, null, true);
+        } else if (label.length > rest && regionMatches(key, from, label, rest)) {
+            TokenNode newNode = new TokenNode(Arrays.copyOfRange(key, from, key.length));
+            newNode.addRef(value);
+            e.setLabel(Arrays.copyOfRange(label, rest, label.length));
+            newNode.addChild(e);
+            s.addChild(newNode);
+            return new Pair(s, null, false);
+        }
+        return new Pair(s, null, true);
+    }
+
+    /**
+     * Returns the farthest descendant of s that can be reached by following a prefix of the
+     * given sequence, and the rest of the sequence
+     */
+    private Pair canonize(TokenNode s, int[] input) {
+        if (input.length == 0) {
+            return new Pair(s, input, false);
+        }
+        TokenNode currentNode = s;
+        int offset = 0;
+        TokenNode g = s.getChild(input[0]);
+        while (g != null && startsWith(input, offset, g.getLabel())) {
+            offset += g.getLabel().length;
+            currentNode = g;
+            if (offset == input.length) {
+                break;
+            }
+            g = currentNode.getChild(input[offset]);
+        }
+        return new Pair(currentNode, offset == 0 ? input : Arrays.copyOfRange(input, offset, input.length), false);
+    }
+
+    /**
+     * Adds the last token of stringPart to the tree, starting from inputNode
+     *
+     * @see GeneralizedSuffixTree
+     */
+    private Pair update(TokenNode inputNode, int[] stringPart, int[] key, int from, int value) {
+        TokenNode s = inputNode;
+        int[] tempstr = stringPart;
+        int newToken = stringPart[stringPart.length - 1];
+
+        TokenNode oldroot = root;
+        Pair ret = testAndSplit(s, cutLast(tempstr), newToken, key, from, value);
+        TokenNode r = ret.node;
+        boolean endpoint = ret.endpoint;
+
+        while (!endpoint) {
+            TokenNode leaf = r.getChild(newToken);
+            if (null == leaf) {
+                leaf = new TokenNode(Arrays.copyOfRange(key, from, key.length));
+                leaf.addRef(value);
+                r.addChild(leaf);
+            }
+
+            if (activeLeaf != root) {
+                activeLeaf.setSuffix(leaf);
+            }
+            activeLeaf = leaf;
+
+            if (oldroot != root) {
+                oldroot.setSuffix(r);
+            }
+            oldroot = r;
+
+            if (null == s.getSuffix()) {
+                // the root: drop the first token
+                tempstr = Arrays.copyOfRange(tempstr, 1, tempstr.length);
+            } else {
+                Pair canret = canonize(s.getSuffix(), cutLast(tempstr));
+                s = canret.node;
+                tempstr = append(canret.tokens, tempstr[tempstr.length - 1]);
+            }
+
+            ret = testAndSplit(s, cutLast(tempstr), newToken, key, from, value);
+            r = ret.node;
+            endpoint = ret.endpoint;
+        }
+
+        if (oldroot != root) {
+            oldroot.setSuffix(r);
+        }
+        return new Pair(s, tempstr, false);
+    }
+
+    private static int[] append(int[] tokens, int token) {
+        int[] ret = Arrays.copyOf(tokens, tokens.length + 1);
+        ret[tokens.length] = token;
+        return ret;
+    }
+
+    private static int[] cutLast(int[] tokens) {
+        return tokens.length == 0 ? tokens : Arrays.copyOf(tokens, tokens.length - 1);
+    }
+
+    /**
+     * Tests whether input, from <tt>offset</tt>, starts with the given prefix
+     */
+    private static boolean startsWith(int[] input, int offset, int[] prefix) {
+        return input.length - offset >= prefix.length && regionMatches(input, offset, prefix, prefix.length);
+    }
+
+    /**
+     * Tests whether the <tt>length</tt> tokens of a starting at <tt>offset</tt> are the first
+     * ones of b
+     */
+    private static boolean regionMatches(int[] a, int offset, int[] b, int length) {
+        for (int i = 0; i < length; i++) {
+            if (a[offset + i] != b[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The result of the steps of the construction: a node, with the tokens that follow it or
+     * whether the end point was reached
+     */
+    private static final class Pair {
+
+        private final TokenNode node;
+        private final int[] tokens;
+        private final boolean endpoint;
+
+        Pair(TokenNode node, int[] tokens, boolean endpoint) {
+            this.node = node;
+            this.tokens = tokens;
+            this.endpoint = endpoint;
+        }
+    }
+}
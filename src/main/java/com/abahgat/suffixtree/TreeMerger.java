@@ -0,0 +1,273 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges the nodes of a suffix tree into another one.
+ *
+ * Both trees are compacted tries of the suffixes of their keys, so the merged tree is obtained
+ * by walking them together from the roots: where both trees have an edge starting with the same
+ * character the common prefix of the labels is matched (splitting the edge of the target if the
+ * labels diverge or the source label is shorter) and the walk continues below, while the subtrees
+ * that only exist in the source are copied. Postings of the nodes that represent the same string
+ * are united.
+ *
+ * The target tree is only visited where it overlaps with the source. The strings represented by
+ * the nodes are not built along the walk: each task refers to the labels it went through, so
+ * every step costs constant time, and a string is only built for the few nodes created by splits.
+ * The cost is thus proportional to the size of the source plus the size of the overlap, plus the
+ * length of the strings of the split nodes.
+ *
+ * Suffix links are rebuilt afterwards: every node of the source is mapped to the node of the
+ * target that represents the same string, so the links of copied nodes are translated through
+ * the mapping, while the nodes created by splits are linked to the node of their path without its
+ * first character, that is found by walking down from the root one edge at a time.
+ *
+ * @see GeneralizedSuffixTree#merge(GeneralizedSuffixTree)
+ */
+final class TreeMerger {
+
+    private final Node root;
+    /**
+     * The node of the target tree that represents the same string as each node of the source
+     */
+    private final Map<Node, Node> mapped = new IdentityHashMap<Node, Node>();
+    /**
+     * The nodes created by splitting edges of the target, and the strings they represent
+     */
+    private final List<Node> splits = new ArrayList<Node>();
+    private final List<Path> splitPaths = new ArrayList<Path>();
+    private final ArrayDeque<Task> tasks = new ArrayDeque<Task>();
+
+    private TreeMerger(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Merges the tree rooted in <tt>source</tt> into the one rooted in <tt>target</tt>.
+     * The source tree is not modified.
+     */
+    static void merge(Node target, Node source) {
+        TreeMerger merger = new TreeMerger(target);
+        merger.mergeNodes(target, source, null);
+        while (!merger.tasks.isEmpty()) {
+            merger.mergeEdge(merger.tasks.pop());
+        }
+        merger.linkSuffixes();
+    }
+
+    /**
+     * Merges two nodes that represent the same string
+     */
+    private void mergeNodes(Node target, Node source, Path path) {
+        mapped.put(source, target);
+        target.addAll(source.getDataArray(), source.getDataSize());
+        for (Node child : source.getChildren()) {
+            tasks.push(new Task(target, path, child.getLabel(), 0, child));
+        }
+    }
+
+    /**
+     * Merges an edge of the source into the node of the target that represents the same string
+     * as the origin of the edge
+     */
+    private void mergeEdge(Task task) {
+        String label = task.label;
+        int offset = task.offset;
+        int length = label.length() - offset;
+        Node child = task.target.getChild(label.charAt(offset));
+        if (child == null) {
+            task.target.addChild(copy(task.source, label.substring(offset)));
+            return;
+        }
+
+        String targetLabel = child.getLabel();
+        int common = 1;
+        int max = Math.min(length, targetLabel.length());
+        while (common < max && label.charAt(offset + common) == targetLabel.charAt(common)) {
+            common++;
+        }
+
+        Path path = new Path(task.path, targetLabel, common);
+        if (common == targetLabel.length()) {
+            if (common == length) {
+                mergeNodes(child, task.source, path);
+            } else {
+                // the rest of the source label continues below the destination
+                tasks.push(new Task(child, path, label, offset + common, task.source));
+            }
+            return;
+        }
+
+        Node middle = split(task.target, child, common, path);
+        if (common == length) {
+            mergeNodes(middle, task.source, path);
+        } else {
+            middle.addChild(copy(task.source, label.substring(offset + common)));
+        }
+    }
+
+    /**
+     * Splits the edge leading to the given child after <tt>length</tt> characters of its label
+     *
+     * @param path the string represented by the new node
+     * @return the node inserted in the middle of the edge
+     */
+    private Node split(Node origin, Node child, int length, Path path) {
+        String label = child.getLabel();
+        Node middle = new Node(label.substring(0, length));
+        child.setLabel(label.substring(length));
+        middle.addChild(child);
+        origin.addChild(middle);
+        splits.add(middle);
+        splitPaths.add(path);
+        return middle;
+    }
+
+    /**
+     * Copies the subtree of the source rooted in the given node
+     *
+     * @param label the label of the edge leading to the copy
+     * @return the root of the copy
+     */
+    private Node copy(Node source, String label) {
+        Node ret = new Node(label);
+        ArrayDeque<Node> sources = new ArrayDeque<Node>();
+        ArrayDeque<Node> copies = new ArrayDeque<Node>();
+        sources.push(source);
+        copies.push(ret);
+        while (!sources.isEmpty()) {
+            Node from = sources.pop();
+            Node to = copies.pop();
+            mapped.put(from, to);
+            to.addAll(from.getDataArray(), from.getDataSize());
+            for (Node child : from.getChildren()) {
+                Node copy = new Node(child.getLabel());
+                to.addChild(copy);
+                sources.push(child);
+                copies.push(copy);
+            }
+        }
+        return ret;
+    }
+
+    private void linkSuffixes() {
+        // copies and the nodes that did not have a link yet get the one of the source
+        for (Map.Entry<Node, Node> entry : mapped.entrySet()) {
+            Node suffix = entry.getKey().getSuffix();
+            if (suffix != null && entry.getValue().getSuffix() == null && entry.getValue() != root) {
+                entry.getValue().setSuffix(mapped.get(suffix));
+            }
+        }
+        // locating a suffix may split one more edge, which is appended to the list
+        for (int i = 0; i < splits.size(); i++) {
+            splits.get(i).setSuffix(locate(splitPaths.get(i).build().substring(1)));
+        }
+    }
+
+    /**
+     * Returns the node that represents the given string, splitting an edge if the string ends
+     * in the middle of it.
+     *
+     * The string must be in the tree, so only the first character of each edge is compared.
+     */
+    private Node locate(String path) {
+        Node node = root;
+        int matched = 0;
+        while (matched < path.length()) {
+            Node child = node.getChild(path.charAt(matched));
+            if (child == null) {
+                throw new IllegalStateException("Missing suffix " + path);
+            }
+            int length = child.getLabel().length();
+            if (matched + length > path.length()) {
+                return split(node, child, path.length() - matched, new Path(null, path, path.length()));
+            }
+            matched += length;
+            node = child;
+        }
+        return node;
+    }
+
+    /**
+     * The string represented by a node of the target, as the list of the labels on its path,
+     * from the last one back to the root (null stands for the empty string)
+     */
+    private static final class Path {
+
+        private final Path parent;
+        /**
+         * The label of an edge, of which only the first <tt>length</tt> characters are on the path
+         */
+        private final String label;
+        private final int length;
+        /**
+         * The length of the whole string
+         */
+        private final int depth;
+
+        Path(Path parent, String label, int length) {
+            this.parent = parent;
+            this.label = label;
+            this.length = length;
+            this.depth = (parent == null ? 0 : parent.depth) + length;
+        }
+
+        /**
+         * Builds the string, in time proportional to its length
+         */
+        String build() {
+            char[] chars = new char[depth];
+            for (Path p = this; p != null; p = p.parent) {
+                p.label.getChars(0, p.length, chars, p.depth - p.length);
+            }
+            return new String(chars);
+        }
+    }
+
+    /**
+     * An edge of the source to be merged below a node of the target
+     */
+    private static final class Task {
+
+        private final Node target;
+        /**
+         * The string represented by target
+         */
+        private final Path path;
+        /**
+         * The label of the source edge, of which the first <tt>offset</tt> characters have
+         * already been matched
+         */
+        private final String label;
+        private final int offset;
+        private final Node source;
+
+        Task(Node target, Path path, String label, int offset, Node source) {
+            this.target = target;
+            this.path = path;
+            this.label = label;
+            this.offset = offset;
+            this.source = source;
+        }
+    }
+}
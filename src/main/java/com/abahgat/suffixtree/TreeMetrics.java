@@ -0,0 +1,177 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects latency and work counters for the operations of a GeneralizedSuffixTree.
+ *
+ * Metrics are disabled by default: when no TreeMetrics instance is attached to a tree,
+ * instrumented code paths only pay for a field read. They can be switched on and off at
+ * runtime with GeneralizedSuffixTree.setMetrics.
+ *
+ * Besides the latency histograms, the following counters are kept:
+ * - node splits performed by testAndSplit while adding keys
+ * - suffix-link hops followed by Node.addRef to propagate indexes
+ * - indexes visited by queries in the subtree of the matching node, duplicates included
+ *
+ * Operations slower than the slow threshold are reported as
+ * <tt>com.abahgat.suffixtree.SlowOperation</tt> JFR events, when the event is enabled
+ * in a running flight recording.
+ *
+ * @see GeneralizedSuffixTree#setMetrics(TreeMetrics)
+ */
+public class TreeMetrics {
+
+    /**
+     * The instrumented operations
+     */
+    public enum Operation {
+        PUT, SEARCH, STARTS_WITH, ENDS_WITH, SEARCH_WORD, SEARCH_WITH_COUNT, QUERY, COUNT,
+        SEARCH_NEWEST, SEARCH_OLDEST
+    }
+
+    private static final boolean JFR_AVAILABLE = isJfrAvailable();
+
+    private final Map<Operation, LatencyHistogram> latencies = new EnumMap<Operation, LatencyHistogram>(Operation.class);
+    private final LongAdder nodeSplits = new LongAdder();
+    private final LongAdder suffixHops = new LongAdder();
+    private final LongAdder collectedIndexes = new LongAdder();
+    private volatile long slowThresholdNanos = 10000000L;
+
+    public TreeMetrics() {
+        for (Operation op : Operation.values()) {
+            latencies.put(op, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * Returns the latency histogram of the given operation
+     */
+    public LatencyHistogram getLatency(Operation op) {
+        return latencies.get(op);
+    }
+
+    /**
+     * Returns the number of nodes created by splitting an edge
+     */
+    public long getNodeSplits() {
+        return nodeSplits.sum();
+    }
+
+    /**
+     * Returns the number of suffix links followed to propagate indexes to suffix nodes
+     */
+    public long getSuffixHops() {
+        return suffixHops.sum();
+    }
+
+    /**
+     * Returns the number of indexes visited by queries in the subtrees of the matching nodes,
+     * counting duplicates: this is the work done to collect the results, that can be much larger
+     * than their number
+     */
+    public long getCollectedIndexes() {
+        return collectedIndexes.sum();
+    }
+
+    public long getSlowThresholdNanos() {
+        return slowThresholdNanos;
+    }
+
+    /**
+     * Sets the latency above which an operation is reported as a JFR event (10ms by default)
+     *
+     * @param slowThresholdNanos the threshold, in nanoseconds
+     */
+    public void setSlowThresholdNanos(long slowThresholdNanos) {
+        if (slowThresholdNanos < 0) {
+            throw new IllegalArgumentException("The threshold must not be negative. Got " + slowThresholdNanos);
+        }
+        this.slowThresholdNanos = slowThresholdNanos;
+    }
+
+    /**
+     * Clears all the histograms and counters
+     */
+    public void reset() {
+        for (LatencyHistogram histogram : latencies.values()) {
+            histogram.reset();
+        }
+        nodeSplits.reset();
+        suffixHops.reset();
+        collectedIndexes.reset();
+    }
+
+    void nodeSplit() {
+        nodeSplits.increment();
+    }
+
+    void suffixHops(long hops) {
+        if (hops > 0) {
+            suffixHops.add(hops);
+        }
+    }
+
+    void collectedIndexes(long ids) {
+        if (ids > 0) {
+            collectedIndexes.add(ids);
+        }
+    }
+
+    /**
+     * Records a completed operation
+     *
+     * @param op the operation
+     * @param startNanos the value of System.nanoTime() when the operation started
+     * @param keyLength the length of the key that was added or searched
+     * @param results the number of indexes returned (0 for put)
+     */
+    void record(Operation op, long startNanos, int keyLength, int results) {
+        long elapsed = System.nanoTime() - startNanos;
+        latencies.get(op).record(elapsed);
+        if (JFR_AVAILABLE && elapsed >= slowThresholdNanos) {
+            SlowOperationEvent.emit(op.name(), keyLength, results, elapsed);
+        }
+    }
+
+    private static boolean isJfrAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder("TreeMetrics{");
+        for (Map.Entry<Operation, LatencyHistogram> entry : latencies.entrySet()) {
+            out.append(entry.getKey()).append("=[").append(entry.getValue()).append("], ");
+        }
+        out.append("nodeSplits=").append(getNodeSplits())
+                .append(", suffixHops=").append(getSuffixHops())
+                .append(", collectedIndexes=").append(getCollectedIndexes())
+                .append('}');
+        return out.toString();
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Turns a suffix tree into a directed acyclic graph, by merging the subtrees that are identical.
+ *
+ * Two nodes are merged when they are reached through the same label, store the same indexes and
+ * have the same children, i.e. children that have been merged already. Since the results of a
+ * query only depend on the subtree below the node the query reaches, every query returns the
+ * same indexes after the merge, whatever path it reaches the shared node from.
+ *
+ * The nodes are canonicalized bottom-up (hash-consing), so a single pass is enough. Equal labels
+ * and payload arrays are shared as well, and suffix links are dropped, since they are only needed
+ * to extend the tree.
+ *
+ * @see GeneralizedSuffixTree#minimize()
+ */
+final class TreeMinimizer {
+
+    private final Map<NodeKey, Node> nodes = new HashMap<NodeKey, Node>();
+    private final Map<String, String> labels = new HashMap<String, String>();
+    private final Map<DataKey, int[]> payloads = new HashMap<DataKey, int[]>();
+
+    private TreeMinimizer() {
+    }
+
+    /**
+     * Merges the identical subtrees below the given root.
+     *
+     * Nodes are listed in depth-first order and then processed backwards, so that every node
+     * comes after all of its descendants and can be compared to the others by the identity of
+     * its (already merged) children.
+     */
+    static void minimize(Node root) {
+        TreeMinimizer minimizer = new TreeMinimizer();
+        Node[] order = new Node[16];
+        Node[] parents = new Node[16];
+        int count = 0;
+        order[count++] = root;
+        for (int i = 0; i < count; i++) {
+            Collection<Node> children = order[i].getChildren();
+            if (count + children.size() > order.length) {
+                order = Arrays.copyOf(order, Math.max(order.length * 2, count + children.size()));
+                parents = Arrays.copyOf(parents, order.length);
+            }
+            for (Node child : children) {
+                order[count] = child;
+                parents[count++] = order[i];
+            }
+        }
+
+        for (int i = count - 1; i > 0; i--) {
+            Node canonical = minimizer.canonical(order[i]);
+            if (canonical != order[i]) {
+                parents[i].addChild(canonical);
+            }
+            order[i] = null;
+            parents[i] = null;
+        }
+        // the root is never shared
+        root.setSuffix(null);
+    }
+
+    /**
+     * Returns the node that is identical to the given one, registering it if it is the first one.
+     * Must be called after the children of the node have been merged.
+     */
+    private Node canonical(Node node) {
+        Node[] children = node.getChildren().toArray(new Node[0]);
+        int[] data = node.getDataArray();
+
+        NodeKey key = new NodeKey(node.getLabel(), data, children);
+        Node existing = nodes.get(key);
+        if (existing != null) {
+            return existing;
+        }
+
+        String label = labels.get(node.getLabel());
+        if (label == null) {
+            labels.put(node.getLabel(), node.getLabel());
+        } else {
+            node.setLabel(label);
+        }
+        DataKey dataKey = new DataKey(data);
+        int[] shared = payloads.get(dataKey);
+        if (shared == null) {
+            payloads.put(dataKey, data);
+        } else {
+            node.shareData(shared);
+        }
+        node.setSuffix(null);
+        nodes.put(key, node);
+        return node;
+    }
+
+    private static final class NodeKey {
+
+        private final String label;
+        private final int[] data;
+        private final Node[] children;
+        private final int hash;
+
+        NodeKey(String label, int[] data, Node[] children) {
+            this.label = label;
+            this.data = data;
+            this.children = children;
+            int h = label.hashCode() * 31 + Arrays.hashCode(data);
+            for (Node child : children) {
+                h = h * 31 + System.identityHashCode(child);
+            }
+            this.hash = h;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof NodeKey)) {
+                return false;
+            }
+            NodeKey other = (NodeKey) o;
+            if (hash != other.hash || children.length != other.children.length
+                    || !label.equals(other.label) || !Arrays.equals(data, other.data)) {
+                return false;
+            }
+            // children are stored in key order, and shared nodes are compared by identity
+            for (int i = 0; i < children.length; i++) {
+                if (children[i] != other.children[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class DataKey {
+
+        private final int[] data;
+        private final int hash;
+
+        DataKey(int[] data) {
+            this.data = data;
+            this.hash = Arrays.hashCode(data);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof DataKey && Arrays.equals(data, ((DataKey) o).data);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,275 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * A snapshot of the shape and of the estimated memory footprint of a GeneralizedSuffixTree.
+ *
+ * Byte counts are estimates based on the object layout of a 64-bit JVM with compressed oops
+ * (see MemoryLayout) and are meant for capacity planning, not as exact measurements.
+ * Labels are accounted once per edge, even when the same String instance is shared by
+ * several edges, so label figures are an upper bound.
+ *
+ * On minimized trees, where nodes, edges, labels and payloads are shared, every node is counted
+ * once and shared objects are only accounted for the first time they are reached; edge and label
+ * character counts still refer to the edges leaving each distinct node.
+ *
+ * @see GeneralizedSuffixTree#getStatistics()
+ */
+public class TreeStatistics {
+
+    private long nodeCount;
+    private long leafCount;
+    private long edgeCount;
+    private long labelCharacters;
+    private long postings;
+    private long internalNodesWithSuffix;
+    private long leavesWithSuffix;
+    private long nodeBytes;
+    private long edgeBagBytes;
+    private long labelBytes;
+    private long dataBytes;
+    /**
+     * fanOut[i] is the number of nodes having i children
+     */
+    private long[] fanOut = new long[2];
+    /**
+     * depth[i] is the number of nodes that are i edges away from the root
+     */
+    private long[] depth = new long[8];
+
+    private TreeStatistics() {
+    }
+
+    /**
+     * Walks the tree starting from the given root and collects its statistics.
+     *
+     * The walk uses an explicit stack, so it is safe to use on very deep trees.
+     *
+     * @param shared whether nodes and edges may be reachable through several paths,
+     * see GeneralizedSuffixTree#minimize()
+     */
+    static TreeStatistics collect(Node root, boolean shared) {
+        TreeStatistics stats = new TreeStatistics();
+        Set<Object> seen = shared ? Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>()) : null;
+        Node[] nodes = new Node[64];
+        int[] depths = new int[64];
+        int top = 0;
+        nodes[top] = root;
+        depths[top++] = 0;
+
+        while (top > 0) {
+            Node node = nodes[--top];
+            int nodeDepth = depths[top];
+            nodes[top] = null;
+            if (seen != null && !seen.add(node)) {
+                continue;
+            }
+
+            int children = node.getChildCount();
+            stats.visit(node, nodeDepth, children, node == root);
+            if (seen == null || seen.add(node.getDataArray())) {
+                stats.dataBytes += node.getDataBytes();
+            }
+
+            // edges are not objects of their own: each child holds the label leading to it
+            for (Node child : node.getChildren()) {
+                String label = child.getLabel();
+                stats.edgeCount++;
+                stats.labelCharacters += label.length();
+                if (seen == null || seen.add(label)) {
+                    stats.labelBytes += MemoryLayout.string(label.length());
+                }
+
+                if (top == nodes.length) {
+                    nodes = Arrays.copyOf(nodes, top * 2);
+                    depths = Arrays.copyOf(depths, top * 2);
+                }
+                nodes[top] = child;
+                depths[top++] = nodeDepth + 1;
+            }
+        }
+        return stats;
+    }
+
+    private void visit(Node node, int nodeDepth, int children, boolean isRoot) {
+        nodeCount++;
+        postings += node.getDataSize();
+        nodeBytes += Node.SHALLOW_SIZE;
+        edgeBagBytes += node.getChildrenBytes();
+
+        if (children == 0) {
+            leafCount++;
+            if (node.getSuffix() != null) {
+                leavesWithSuffix++;
+            }
+        } else if (!isRoot && node.getSuffix() != null) {
+            internalNodesWithSuffix++;
+        }
+
+        if (children >= fanOut.length) {
+            fanOut = Arrays.copyOf(fanOut, Math.max(children + 1, fanOut.length * 2));
+        }
+        fanOut[children]++;
+        if (nodeDepth >= depth.length) {
+            depth = Arrays.copyOf(depth, depth.length * 2);
+        }
+        depth[nodeDepth]++;
+    }
+
+    /**
+     * Returns the number of nodes, including the root and the leaves
+     */
+    public long getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Returns the number of nodes without children
+     */
+    public long getLeafCount() {
+        return leafCount;
+    }
+
+    /**
+     * Returns the number of internal nodes, excluding the root
+     */
+    public long getInternalNodeCount() {
+        return Math.max(0, nodeCount - leafCount - 1);
+    }
+
+    public long getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * Returns the sum of the lengths of all the edge labels
+     */
+    public long getLabelCharacters() {
+        return labelCharacters;
+    }
+
+    /**
+     * Returns the number of indexes stored in the payload of all the nodes
+     */
+    public long getPostings() {
+        return postings;
+    }
+
+    /**
+     * Returns the fraction of internal nodes (excluding the root) that have a suffix link
+     */
+    public double getSuffixLinkCoverage() {
+        long internal = getInternalNodeCount();
+        return internal == 0 ? 1.0 : (double) internalNodesWithSuffix / internal;
+    }
+
+    /**
+     * Returns the fraction of leaves that have a suffix link
+     */
+    public double getLeafSuffixLinkCoverage() {
+        return leafCount == 0 ? 1.0 : (double) leavesWithSuffix / leafCount;
+    }
+
+    /**
+     * Returns the estimated heap size of all the Node objects
+     */
+    public long getNodeBytes() {
+        return nodeBytes;
+    }
+
+    /**
+     * Returns the estimated heap size of all the EdgeBag objects, including their arrays.
+     * Leaves do not have one.
+     */
+    public long getEdgeBagBytes() {
+        return edgeBagBytes;
+    }
+
+    /**
+     * Returns the estimated heap size of all the Edge objects.
+     * Always 0, since edges are represented by the node they lead to; kept for compatibility.
+     */
+    public long getEdgeBytes() {
+        return 0;
+    }
+
+    /**
+     * Returns the estimated heap size of all the edge labels
+     */
+    public long getLabelBytes() {
+        return labelBytes;
+    }
+
+    /**
+     * Returns the estimated heap size of the payload arrays (Node.data)
+     */
+    public long getDataBytes() {
+        return dataBytes;
+    }
+
+    /**
+     * Returns the estimated heap size of the whole tree
+     */
+    public long getTotalBytes() {
+        return nodeBytes + edgeBagBytes + labelBytes + dataBytes;
+    }
+
+    /**
+     * Returns the fan-out histogram: element i is the number of nodes having i children
+     */
+    public long[] getFanOutHistogram() {
+        int size = fanOut.length;
+        while (size > 0 && fanOut[size - 1] == 0) {
+            size--;
+        }
+        return Arrays.copyOf(fanOut, size);
+    }
+
+    /**
+     * Returns the depth histogram: element i is the number of nodes that are i edges away from the root
+     */
+    public long[] getDepthHistogram() {
+        int size = depth.length;
+        while (size > 0 && depth[size - 1] == 0) {
+            size--;
+        }
+        return Arrays.copyOf(depth, size);
+    }
+
+    @Override
+    public String toString() {
+        return "TreeStatistics{nodes=" + nodeCount
+                + ", leaves=" + leafCount
+                + ", edges=" + edgeCount
+                + ", labelCharacters=" + labelCharacters
+                + ", postings=" + postings
+                + ", suffixLinkCoverage=" + getSuffixLinkCoverage()
+                + ", nodeBytes=" + nodeBytes
+                + ", edgeBagBytes=" + edgeBagBytes
+                + ", labelBytes=" + labelBytes
+                + ", dataBytes=" + dataBytes
+                + ", totalBytes=" + getTotalBytes()
+                + ", fanOut=" + Arrays.toString(getFanOutHistogram())
+                + ", depth=" + Arrays.toString(getDepthHistogram())
+                + "}";
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+/**
+ * A wavelet tree over a sequence of small integer symbols, in its level-wise
+ * ("wavelet matrix") layout: one RankBitVector per bit of the symbols, with no pointers.
+ *
+ * It answers rank(c, i), the number of occurrences of symbol c in the first i positions,
+ * in O(log sigma) time, using about n log sigma bits.
+ */
+final class WaveletMatrix {
+
+    private final RankBitVector[] levels;
+    /**
+     * zeros[l] is the number of zeros in levels[l]
+     */
+    private final int[] zeros;
+    private final int bits;
+
+    /**
+     * Builds a wavelet matrix over the given sequence.
+     *
+     * @param sequence the symbols, all lower than 2^bits. It is overwritten.
+     * @param bits the number of bits of the symbols
+     */
+    WaveletMatrix(int[] sequence, int bits) {
+        int n = sequence.length;
+        this.bits = bits;
+        this.levels = new RankBitVector[bits];
+        this.zeros = new int[bits];
+        int[] next = new int[n];
+        for (int l = 0; l < bits; l++) {
+            int shift = bits - 1 - l;
+            long[] words = new long[(n + 63) >>> 6];
+            int z = 0;
+            for (int i = 0; i < n; i++) {
+                if (((sequence[i] >>> shift) & 1) == 0) {
+                    z++;
+                } else {
+                    words[i >>> 6] |= 1L << i;
+                }
+            }
+            // stable partition: symbols with a 0 bit first
+            int zi = 0;
+            int oi = z;
+            for (int i = 0; i < n; i++) {
+                if (((sequence[i] >>> shift) & 1) == 0) {
+                    next[zi++] = sequence[i];
+                } else {
+                    next[oi++] = sequence[i];
+                }
+            }
+            levels[l] = new RankBitVector(words, n);
+            zeros[l] = z;
+            int[] swap = sequence;
+            sequence = next;
+            next = swap;
+        }
+    }
+
+    /**
+     * Returns the number of occurrences of <tt>symbol</tt> in the first <tt>i</tt> positions
+     */
+    int rank(int symbol, int i) {
+        int start = 0;
+        int end = i;
+        for (int l = 0; l < bits; l++) {
+            RankBitVector level = levels[l];
+            if (((symbol >>> (bits - 1 - l)) & 1) == 0) {
+                start = level.rank0(start);
+                end = level.rank0(end);
+            } else {
+                start = zeros[l] + level.rank1(start);
+                end = zeros[l] + level.rank1(end);
+            }
+        }
+        return end - start;
+    }
+
+    long getSizeInBytes() {
+        long size = MemoryLayout.referenceArray(levels.length) + MemoryLayout.intArray(zeros.length);
+        for (RankBitVector level : levels) {
+            size += MemoryLayout.object(2, 1) + level.getSizeInBytes();
+        }
+        return size;
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+/**
+ * A key surrounded by the start and/or the end symbol, as stored in the tree.
+ *
+ * Queries such as startsWith and searchWord used to concatenate the symbols to the word,
+ * copying it: this view only treats them as virtual characters at its boundaries.
+ */
+final class WrappedKey implements CharSequence {
+
+    private final CharSequence key;
+    private final char startSymbol;
+    private final char endSymbol;
+    private final int prefix;
+    private final int length;
+
+    /**
+     * @param key the key to wrap
+     * @param startSymbol the symbol preceding the key, or 0 for none
+     * @param endSymbol the symbol following the key, or 0 for none
+     */
+    WrappedKey(CharSequence key, char startSymbol, char endSymbol) {
+        this.key = key;
+        this.startSymbol = startSymbol;
+        this.endSymbol = endSymbol;
+        this.prefix = startSymbol == 0 ? 0 : 1;
+        this.length = key.length() + prefix + (endSymbol == 0 ? 0 : 1);
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < prefix) {
+            return startSymbol;
+        }
+        if (index - prefix < key.length()) {
+            return key.charAt(index - prefix);
+        }
+        if (index < length) {
+            return endSymbol;
+        }
+        throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder(length).append(this).toString();
+    }
+}
@@ -0,0 +1,202 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the throughput and the latency of a SearchServer, by sending search queries from
+ * several threads at once.
+ *
+ * Each thread sends its share of the requests one after the other, cycling through the given
+ * queries, and records the latency of every request; binary responses are requested, so that the
+ * figures are not dominated by JSON encoding.
+ *
+ * <pre>
+ * java -cp suffixtree.jar com.abahgat.suffixtree.server.LoadGenerator http://localhost:8080 queries.txt 16 100000
+ * </pre>
+ *
+ * @see SearchServer
+ */
+public final class LoadGenerator {
+
+    private final URI base;
+    private final List<String> queries;
+    private final int threads;
+
+    /**
+     * @param base the address of the server, e.g. http://localhost:8080
+     * @param queries the queries to send, in turn
+     * @param threads the number of concurrent clients
+     */
+    public LoadGenerator(URI base, List<String> queries, int threads) {
+        if (queries.isEmpty() || threads <= 0) {
+            throw new IllegalArgumentException("At least one query and one thread are needed");
+        }
+        this.base = base;
+        this.queries = queries;
+        this.threads = threads;
+    }
+
+    /**
+     * Sends the given number of requests and waits for all the responses
+     *
+     * @param requests the total number of requests, split among the threads
+     * @return the measurements of the run
+     * @throws InterruptedException if interrupted while waiting for the clients
+     */
+    public Report run(final int requests) throws InterruptedException {
+        final long[] latencies = new long[requests];
+        final AtomicLong errors = new AtomicLong();
+        Thread[] clients = new Thread[threads];
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            final int first = t;
+            clients[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    byte[] buffer = new byte[8192];
+                    for (int i = first; i < requests; i += threads) {
+                        long begin = System.nanoTime();
+                        if (!send(queries.get(i % queries.size()), buffer)) {
+                            errors.incrementAndGet();
+                        }
+                        latencies[i] = System.nanoTime() - begin;
+                    }
+                }
+            }, "load-generator-" + t);
+            clients[t].start();
+        }
+        for (Thread client : clients) {
+            client.join();
+        }
+        return new Report(latencies, errors.get(), System.nanoTime() - start);
+    }
+
+    /**
+     * Sends a search request and reads the whole response
+     *
+     * @return true if the server answered with 200
+     */
+    private boolean send(String query, byte[] buffer) {
+        try {
+            URL url = base.resolve("/search?format=binary&q=" + URLEncoder.encode(query, "UTF-8")).toURL();
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            boolean ok = connection.getResponseCode() == HttpURLConnection.HTTP_OK;
+            InputStream in = ok ? connection.getInputStream() : connection.getErrorStream();
+            if (in != null) {
+                // drain the response, so that the connection can be reused
+                while (in.read(buffer) >= 0) {
+                    continue;
+                }
+                in.close();
+            }
+            return ok;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * The measurements of a run
+     */
+    public static class Report {
+
+        private final long[] latencies;
+        private final long errors;
+        private final long elapsedNanos;
+
+        Report(long[] latencies, long errors, long elapsedNanos) {
+            this.latencies = latencies.clone();
+            Arrays.sort(this.latencies);
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public int getRequests() {
+            return latencies.length;
+        }
+
+        /**
+         * Returns the number of requests that failed or were not answered with 200
+         */
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * Returns the number of requests completed per second
+         */
+        public double getThroughput() {
+            return elapsedNanos == 0 ? 0 : latencies.length * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * Returns the latency below which the given fraction of the requests completed
+         *
+         * @param percentile a value between 0 and 1, e.g. 0.99
+         */
+        public long getPercentileNanos(double percentile) {
+            if (latencies.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(percentile * latencies.length) - 1;
+            return latencies[Math.max(0, Math.min(latencies.length - 1, rank))];
+        }
+
+        @Override
+        public String toString() {
+            return "Report{requests=" + latencies.length
+                    + ", errors=" + errors
+                    + ", throughput=" + Math.round(getThroughput()) + "/s"
+                    + ", p50=" + getPercentileNanos(0.5) / 1000 + "us"
+                    + ", p99=" + getPercentileNanos(0.99) / 1000 + "us"
+                    + ", max=" + getPercentileNanos(1) / 1000 + "us"
+                    + "}";
+        }
+    }
+
+    /**
+     * Runs the generator against a running server.
+     *
+     * Arguments: the address of the server, a file with one query per line, the number of
+     * threads and the number of requests.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length != 4) {
+            System.err.println("Usage: LoadGenerator <server address> <queries file> <threads> <requests>");
+            System.exit(1);
+        }
+        List<String> queries = Files.readAllLines(Paths.get(args[1]), StandardCharsets.UTF_8);
+        LoadGenerator generator = new LoadGenerator(URI.create(args[0]), queries, Integer.parseInt(args[2]));
+        System.out.println(generator.run(Integer.parseInt(args[3])));
+    }
+}
@@ -0,0 +1,414 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree.server;
+
+import com.abahgat.suffixtree.GeneralizedSuffixTree;
+import com.abahgat.suffixtree.IngestPipeline;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A small HTTP front-end for a GeneralizedSuffixTree, based on the HTTP server bundled with the JDK,
+ * so that several services can share one index without depending on a web framework.
+ *
+ * Endpoints (the query is passed in the <tt>q</tt> parameter):
+ * <ul>
+ * <li>GET /search?q=word[&amp;limit=n], /startsWith?q=word, /endsWith?q=word, /searchWord?q=word:
+ * the matching indexes</li>
+ * <li>GET /count?q=word: the number of indexes matching search</li>
+ * <li>POST /ingest: adds every non-empty line of the (UTF-8) body as a key, and returns the index
+ * assigned to the first one once all of them are in the tree; the whole request is rejected if any
+ * line holds a character the tree does not accept</li>
+ * </ul>
+ * Responses are JSON objects (<tt>{"count":2,"results":[3,7]}</tt>), or, with
+ * <tt>format=binary</tt>, big-endian ints: the number of results followed by the results (a single
+ * int for count and ingest).
+ *
+ * Concurrent identical queries are coalesced: a query that arrives while the same one is running
+ * waits for its results instead of walking the tree again. Keys are added by the single writer of
+ * an IngestPipeline, that batches the puts of concurrent ingest requests, and queries run under its
+ * read lock, so the tree must not be accessed directly while the server is running.
+ *
+ * Requests are handled on the given Executor: on runtimes that support them, an executor of
+ * virtual threads (Executors.newVirtualThreadPerTaskExecutor()) lets the server handle many slow
+ * clients with few platform threads.
+ *
+ * @see LoadGenerator
+ */
+public class SearchServer implements Closeable {
+
+    private static final int QUEUE_CAPACITY = 1024;
+    private static final int BATCH_SIZE = 256;
+
+    private final HttpServer server;
+    /**
+     * Only used to validate the ingested keys, which does not read the content of the tree
+     */
+    private final GeneralizedSuffixTree tree;
+    private final IngestPipeline pipeline;
+    private final ConcurrentMap<String, CompletableFuture<Collection<Integer>>> running =
+            new ConcurrentHashMap<String, CompletableFuture<Collection<Integer>>>();
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Creates a server, that is not started yet.
+     *
+     * @param tree the tree to serve, that must not be accessed directly from now on
+     * @param firstIndex the index assigned to the first ingested key
+     * @param address the address to bind to; use port 0 to pick a free port
+     * @param executor the executor that handles the requests
+     * @throws IOException if the address cannot be bound
+     */
+    public SearchServer(GeneralizedSuffixTree tree, int firstIndex, InetSocketAddress address, Executor executor) throws IOException {
+        this.server = HttpServer.create(address, 0);
+        this.tree = tree;
+        this.pipeline = new IngestPipeline(tree, firstIndex, QUEUE_CAPACITY, BATCH_SIZE);
+        server.setExecutor(executor);
+
+        addQuery(new QueryHandler("/search") {
+            @Override
+            Collection<Integer> run(GeneralizedSuffixTree tree, String word, int limit) {
+                return tree.search(word, limit);
+            }
+        });
+        addQuery(new QueryHandler("/startsWith") {
+            @Override
+            Collection<Integer> run(GeneralizedSuffixTree tree, String word, int limit) {
+                return tree.startsWith(word);
+            }
+        });
+        addQuery(new QueryHandler("/endsWith") {
+            @Override
+            Collection<Integer> run(GeneralizedSuffixTree tree, String word, int limit) {
+                return tree.endsWith(word);
+            }
+        });
+        addQuery(new QueryHandler("/searchWord") {
+            @Override
+            Collection<Integer> run(GeneralizedSuffixTree tree, String word, int limit) {
+                return tree.searchWord(word);
+            }
+        });
+        server.createContext("/count", new Handler() {
+            @Override
+            void handle(HttpExchange exchange, Map<String, String> params) throws IOException {
+                int count = count(params.get("q"));
+                if (isBinary(params)) {
+                    send(exchange, 200, "application/octet-stream", ints(count, null));
+                } else {
+                    send(exchange, 200, "application/json", json("{\"count\":" + count + "}"));
+                }
+            }
+        });
+        server.createContext("/ingest", new Handler() {
+            @Override
+            void handle(HttpExchange exchange, Map<String, String> params) throws IOException {
+                if (!"POST".equals(exchange.getRequestMethod())) {
+                    throw new RequestException(405, "ingest requires POST");
+                }
+                int first = ingest(exchange);
+                if (isBinary(params)) {
+                    send(exchange, 200, "application/octet-stream", ints(first, null));
+                } else {
+                    send(exchange, 200, "application/json", json("{\"first\":" + first + "}"));
+                }
+            }
+        });
+    }
+
+    private void addQuery(QueryHandler handler) {
+        server.createContext(handler.path, handler);
+    }
+
+    /**
+     * Starts accepting requests
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Returns the address the server is bound to
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * Returns the number of queries received so far
+     */
+    public long getQueryCount() {
+        return queries.sum();
+    }
+
+    /**
+     * Returns the number of queries that were answered by an identical query running at the same time
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Stops the server, waiting at most one second for the running exchanges, and then waits until
+     * all the ingested keys are in the tree. The executor is not shut down.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        pipeline.close();
+    }
+
+    /**
+     * Runs a query, or waits for the identical one that is already running
+     */
+    private Collection<Integer> query(final QueryHandler operation, final String word, final int limit) {
+        checkQuery(word);
+        queries.increment();
+        String key = operation.path + '\u0000' + limit + '\u0000' + word;
+        CompletableFuture<Collection<Integer>> mine = new CompletableFuture<Collection<Integer>>();
+        CompletableFuture<Collection<Integer>> current = running.putIfAbsent(key, mine);
+        if (current != null) {
+            coalesced.increment();
+            try {
+                return current.join();
+            } catch (CompletionException e) {
+                int status = e.getCause() instanceof IllegalArgumentException ? 400 : 500;
+                throw new RequestException(status, String.valueOf(e.getCause()));
+            }
+        }
+
+        try {
+            mine.complete(pipeline.read(new Function<GeneralizedSuffixTree, Collection<Integer>>() {
+                @Override
+                public Collection<Integer> apply(GeneralizedSuffixTree tree) {
+                    return operation.run(tree, word, limit);
+                }
+            }));
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            running.remove(key, mine);
+        }
+        return mine.join();
+    }
+
+    /**
+     * Counts the matches of a query, without building its results. Counts are not coalesced.
+     */
+    private int count(final String word) {
+        checkQuery(word);
+        queries.increment();
+        return pipeline.read(new Function<GeneralizedSuffixTree, Integer>() {
+            @Override
+            public Integer apply(GeneralizedSuffixTree tree) {
+                return tree.count(word);
+            }
+        });
+    }
+
+    /**
+     * Rejects the queries that are missing or that the tree cannot hold
+     */
+    private void checkQuery(String word) {
+        if (word == null || word.isEmpty()) {
+            throw new RequestException(400, "missing query");
+        }
+        if (!tree.isValidKey(word)) {
+            throw new RequestException(400, "invalid character in query");
+        }
+    }
+
+    private int ingest(HttpExchange exchange) throws IOException {
+        List<String> keys = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8));
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            if (!line.isEmpty()) {
+                // rejected before submitting, so that no key of the request is added
+                if (!tree.isValidKey(line)) {
+                    throw new RequestException(400, "invalid character in key " + (keys.size() + 1));
+                }
+                keys.add(line);
+            }
+        }
+        if (keys.isEmpty()) {
+            throw new RequestException(400, "no keys");
+        }
+        try {
+            return pipeline.submit(keys).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RequestException(503, "interrupted");
+        } catch (ExecutionException e) {
+            int status = e.getCause() instanceof IllegalArgumentException ? 400 : 500;
+            throw new RequestException(status, String.valueOf(e.getCause().getMessage()));
+        } catch (IllegalStateException e) {
+            throw new RequestException(503, String.valueOf(e.getMessage()));
+        }
+    }
+
+    private static boolean isBinary(Map<String, String> params) {
+        return "binary".equals(params.get("format"));
+    }
+
+    private static byte[] json(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Encodes the given value, followed by the results (if any), as big-endian ints
+     */
+    private static byte[] ints(int value, Collection<Integer> results) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4 + (results == null ? 0 : 4 * results.size()));
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(value);
+        if (results != null) {
+            for (int index : results) {
+                out.writeInt(index);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(body);
+        out.close();
+    }
+
+    private static Map<String, String> parameters(String query) throws UnsupportedEncodingException {
+        Map<String, String> params = new HashMap<String, String>();
+        if (query == null) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"), URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+            }
+        }
+        return params;
+    }
+
+    /**
+     * Parses the parameters of a request and turns failures into error responses
+     */
+    private abstract static class Handler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                // contexts match by prefix
+                if (!exchange.getRequestURI().getPath().equals(exchange.getHttpContext().getPath())) {
+                    throw new RequestException(404, "not found");
+                }
+                handle(exchange, parameters(exchange.getRequestURI().getRawQuery()));
+            } catch (RequestException e) {
+                send(exchange, e.status, "text/plain", json(e.getMessage()));
+            } catch (RuntimeException e) {
+                send(exchange, 500, "text/plain", json(String.valueOf(e)));
+            } finally {
+                exchange.close();
+            }
+        }
+
+        abstract void handle(HttpExchange exchange, Map<String, String> params) throws IOException;
+    }
+
+    /**
+     * Answers the queries of one kind
+     */
+    private abstract class QueryHandler extends Handler {
+
+        private final String path;
+
+        QueryHandler(String path) {
+            this.path = path;
+        }
+
+        @Override
+        void handle(HttpExchange exchange, Map<String, String> params) throws IOException {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                throw new RequestException(405, "queries require GET");
+            }
+            int limit = -1;
+            if (params.containsKey("limit")) {
+                try {
+                    limit = Integer.parseInt(params.get("limit"));
+                } catch (NumberFormatException e) {
+                    throw new RequestException(400, "invalid limit");
+                }
+            }
+            Collection<Integer> results = query(this, params.get("q"), limit);
+            if (isBinary(params)) {
+                send(exchange, 200, "application/octet-stream", ints(results.size(), results));
+            } else {
+                StringBuilder body = new StringBuilder("{\"count\":").append(results.size()).append(",\"results\":[");
+                boolean first = true;
+                for (int index : results) {
+                    if (!first) {
+                        body.append(',');
+                    }
+                    body.append(index);
+                    first = false;
+                }
+                send(exchange, 200, "application/json", json(body.append("]}").toString()));
+            }
+        }
+
+        abstract Collection<Integer> run(GeneralizedSuffixTree tree, String word, int limit);
+    }
+
+    private static class RequestException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        RequestException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+import static com.abahgat.suffixtree.TestUtils.WORDS;
+import static com.abahgat.suffixtree.TestUtils.buildTree;
+
+public class AsyncSearcherTest extends TestCase {
+
+    public void testSameResultsAsTree() throws Exception {
+        GeneralizedSuffixTree in = buildTree(WORDS);
+        in.computeCount();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            AsyncSearcher searcher = new AsyncSearcher(in, executor);
+            assertEquals(new HashSet<Integer>(in.search("ca")), new HashSet<Integer>(searcher.search("ca").get()));
+            assertEquals(new HashSet<Integer>(in.startsWith("cac")), new HashSet<Integer>(searcher.startsWith("cac").get()));
+            assertEquals(new HashSet<Integer>(in.endsWith("ta")), new HashSet<Integer>(searcher.endsWith("ta").get()));
+            assertEquals(new HashSet<Integer>(in.searchWord("cacao")), new HashSet<Integer>(searcher.searchWord("cacao").get()));
+            assertEquals(2, searcher.search("ca", 2).get().size());
+            assertEquals(6, searcher.searchWithCount("ca", 1).get().totalResults);
+            assertEquals(in.query(Query.contains("ric")), searcher.query(Query.contains("ric")).get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testCancelBeforeStart() throws Exception {
+        GeneralizedSuffixTree in = new GeneralizedSuffixTree();
+        in.put("banana", 0);
+        final CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // keep the only worker busy
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            CompletableFuture<Collection<Integer>> results = new AsyncSearcher(in, executor).search("an");
+            assertTrue(results.cancel(true));
+            release.countDown();
+            assertTrue(results.isCancelled());
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    public void testCancelledByTheQuery() throws Exception {
+        // a CancellationException that does not come from cancel
+        GeneralizedSuffixTree in = new GeneralizedSuffixTree() {
+            @Override
+            public Collection<Integer> search(String word, int results) {
+                throw new CancellationException("cancelled elsewhere");
+            }
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CompletableFuture<Collection<Integer>> results = new AsyncSearcher(in, executor).search("an");
+            try {
+                results.get(10, TimeUnit.SECONDS);
+                fail("Expected CancellationException");
+            } catch (CancellationException e) {
+                // expected
+            }
+            assertTrue(results.isCancelled());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testCancelStopsTraversal() throws Exception {
+        GeneralizedSuffixTree in = new GeneralizedSuffixTree();
+        for (int i = 0; i < 2000; ++i) {
+            in.put("key" + i, i);
+        }
+        Cancellation cancellation = new Cancellation();
+        cancellation.cancel();
+        cancellation.install();
+        try {
+            in.search("k");
+            fail("Expected CancellationException");
+        } catch (CancellationException e) {
+            // expected
+        } finally {
+            Cancellation.uninstall();
+        }
+        // the flag is gone once uninstalled
+        assertEquals(2000, in.search("k").size());
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+
+public class BulkLoaderTest extends TestCase {
+
+    private File file;
+    private List<String> lines;
+
+    @Override
+    protected void setUp() throws IOException {
+        Random random = new Random(23);
+        lines = new ArrayList<String>();
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 400; ++i) {
+            StringBuilder line = new StringBuilder();
+            int length = i % 50 == 0 ? 0 : 1 + random.nextInt(i % 7 == 0 ? 200 : 15);
+            for (int j = 0; j < length; ++j) {
+                line.append((char) ('A' + random.nextInt(6)));
+            }
+            lines.add(line.toString());
+            content.append(line).append(i % 3 == 0 ? "\r\n" : "\n");
+        }
+        // no newline after the last line
+        lines.add("LAST");
+        content.append("LAST");
+        file = File.createTempFile("bulk", ".txt");
+        Files.write(file.toPath(), content.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Override
+    protected void tearDown() {
+        file.delete();
+    }
+
+    private GeneralizedSuffixTree expected(int firstIndex) {
+        GeneralizedSuffixTree tree = new GeneralizedSuffixTree();
+        for (int i = 0; i < lines.size(); ++i) {
+            if (!lines.get(i).isEmpty()) {
+                tree.put(lines.get(i).toLowerCase(), firstIndex + i);
+            }
+        }
+        return tree;
+    }
+
+    public void testLoad() throws IOException {
+        GeneralizedSuffixTree expected = expected(5);
+        // small segments, so that many lines cross segment boundaries
+        for (int segmentSize : new int[] {7, 64, 1 << 20}) {
+            GeneralizedSuffixTree tree = new GeneralizedSuffixTree();
+            BulkLoader loader = new BulkLoader(3, segmentSize, BulkLoader.ASCII_LOWER_CASE);
+            assertEquals(lines.size(), loader.load(file.toPath(), tree, 5));
+            assertSameResults(expected, tree);
+        }
+    }
+
+    public void testLoadShards() throws IOException {
+        GeneralizedSuffixTree expected = expected(0);
+        ShardedIndex index = new BulkLoader(2, 100, BulkLoader.ASCII_LOWER_CASE).loadShards(file.toPath(), 3, 0);
+        assertEquals(3, index.getShardCount());
+        assertSameResults(expected, index);
+    }
+
+    public void testLinesLongerThanOverrun() throws IOException {
+        // lines far longer than the region mapped past a segment, starting in the middle of one
+        Random random = new Random(37);
+        StringBuilder content = new StringBuilder("ab\n");
+        for (int i = 0; i < 150000; ++i) {
+            content.append(i == 75000 ? "xyz" : String.valueOf((char) ('c' + random.nextInt(8))));
+        }
+        content.append("\nde\n");
+        for (int i = 0; i < 100000; ++i) {
+            content.append((char) ('f' + random.nextInt(8)));
+        }
+        content.append("zz");
+        Files.write(file.toPath(), content.toString().getBytes(StandardCharsets.US_ASCII));
+        for (int segmentSize : new int[] {1000, 1 << 20}) {
+            // depth-limited, since the labels of a full tree grow with the square of the key length
+            GeneralizedSuffixTree tree = new GeneralizedSuffixTree(8);
+            assertEquals(4, new BulkLoader(2, segmentSize, BulkLoader.TRIM_CR).load(file.toPath(), tree, 0));
+            assertEquals(new HashSet<Integer>(Arrays.asList(1)), new HashSet<Integer>(tree.search("xyz")));
+            assertEquals(new HashSet<Integer>(Arrays.asList(2)), new HashSet<Integer>(tree.searchWord("de")));
+            assertEquals(new HashSet<Integer>(Arrays.asList(3)), new HashSet<Integer>(tree.endsWith("zz")));
+        }
+    }
+
+    public void testEmptyFile() throws IOException {
+        Files.write(file.toPath(), new byte[0]);
+        GeneralizedSuffixTree tree = new GeneralizedSuffixTree();
+        assertEquals(0, new BulkLoader().load(file.toPath(), tree, 0));
+        assertTrue(tree.search("a").isEmpty());
+    }
+
+    private void assertSameResults(GeneralizedSuffixTree expected, SubstringIndex actual) {
+        List<String> words = new ArrayList<String>();
+        for (String line : lines.subList(0, 40)) {
+            words.add(line.toLowerCase());
+        }
+        TestUtils.assertSameResults(expected, actual, words);
+        assertEquals(new HashSet<Integer>(expected.searchWord("last")), new HashSet<Integer>(actual.searchWord("last")));
+        assertEquals(new HashSet<Integer>(expected.search("^")), new HashSet<Integer>(actual.search("^")));
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import junit.framework.TestCase;
+import static com.abahgat.suffixtree.TestUtils.WORDS;
+import static com.abahgat.suffixtree.Utils.getSubstrings;
+
+public class ByteSequenceTest extends TestCase {
+
+    public void testSameResultsAsStrings() {
+        GeneralizedSuffixTree strings = new GeneralizedSuffixTree();
+        GeneralizedSuffixTree bytes = new GeneralizedSuffixTree();
+        // all the keys in a single buffer, as if read from the network
+        byte[] buffer = "xxcacaorcaricatocacatocacatacaricatacacaobanana".getBytes(StandardCharsets.US_ASCII);
+        int offset = 2;
+        for (int i = 0; i < WORDS.length; ++i) {
+            strings.put(WORDS[i], i);
+            if (i % 2 == 0) {
+                bytes.put(buffer, offset, WORDS[i].length(), i);
+            } else {
+                ByteBuffer direct = ByteBuffer.allocateDirect(WORDS[i].length());
+                direct.put(WORDS[i].getBytes(StandardCharsets.US_ASCII)).flip();
+                bytes.put(direct, i);
+                assertEquals(0, direct.position());
+            }
+            offset += WORDS[i].length();
+        }
+
+        for (String word : WORDS) {
+            for (String s : getSubstrings(word)) {
+                StringBuilder query = new StringBuilder(s);
+                byte[] raw = s.getBytes(StandardCharsets.US_ASCII);
+                assertEquals(new HashSet<Integer>(strings.search(s)), new HashSet<Integer>(bytes.search(query)));
+                assertEquals(new HashSet<Integer>(strings.search(s)), new HashSet<Integer>(bytes.search(raw, 0, raw.length)));
+                assertEquals(new HashSet<Integer>(strings.search(s)), new HashSet<Integer>(bytes.search(ByteBuffer.wrap(raw))));
+                assertEquals(new HashSet<Integer>(strings.startsWith(s)), new HashSet<Integer>(bytes.startsWith(query)));
+                assertEquals(new HashSet<Integer>(strings.endsWith(s)), new HashSet<Integer>(bytes.endsWith(query)));
+                assertEquals(new HashSet<Integer>(strings.searchWord(s)), new HashSet<Integer>(bytes.searchWord(query)));
+            }
+        }
+    }
+
+    public void testHighBytes() {
+        GeneralizedSuffixTree in = new GeneralizedSuffixTree();
+        byte[] key = new byte[] {'a', (byte) 0xE9, 'b'};
+        in.put(key, 0, key.length, 0);
+        assertEquals(1, in.search(new byte[] {(byte) 0xE9, 'b'}, 0, 2).size());
+        assertEquals(1, in.search("a" + (char) (byte) 0xE9).size());
+    }
+
+    public void testView() {
+        byte[] bytes = "hello world".getBytes(StandardCharsets.US_ASCII);
+        ByteSequence view = ByteSequence.wrap(bytes, 6, 5);
+        assertEquals("world", view.toString());
+        assertEquals("orl", view.subSequence(1, 4).toString());
+        assertEquals('w', view.charAt(0));
+        try {
+            view.charAt(5);
+            fail("Expected IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+        try {
+            ByteSequence.wrap(bytes, 8, 5);
+            fail("Expected IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.position(6);
+        assertEquals("world", ByteSequence.wrap(buffer).toString());
+        assertEquals("^world$", new WrappedKey(view, '^', '$').toString());
+        assertEquals("world$", new WrappedKey(view, (char) 0, '$').toString());
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.util.List;
+import junit.framework.TestCase;
+import static com.abahgat.suffixtree.TestUtils.assertSameResults;
+import static com.abahgat.suffixtree.TestUtils.randomWords;
+
+public class DeferredReferencesTest extends TestCase {
+
+    private List<String> words;
+
+    @Override
+    protected void setUp() {
+        words = randomWords(23, 300, 15, 5);
+    }
+
+    public void testSameResultsAsEagerTree() {
+        GeneralizedSuffixTree eager = new GeneralizedSuffixTree();
+        GeneralizedSuffixTree deferred = new GeneralizedSuffixTree();
+        deferred.setDeferredReferences(true);
+        assertTrue(deferred.isDeferredReferences());
+        for (int i = 0; i < words.size(); ++i) {
+            eager.put(words.get(i), i / 2);
+            deferred.put(words.get(i), i / 2);
+        }
+
+        assertTrue(deferred.flushReferences() > 0);
+        assertEquals(0, deferred.flushReferences());
+        assertEquals(eager.computeCount(), deferred.computeCount());
+        assertSameResults(eager, deferred, words);
+    }
+
+    public void testFlushedByQueries() {
+        GeneralizedSuffixTree eager = new GeneralizedSuffixTree();
+        GeneralizedSuffixTree deferred = new GeneralizedSuffixTree();
+        deferred.setDeferredReferences(true);
+        for (int i = 0; i < words.size(); ++i) {
+            eager.put(words.get(i), i);
+            deferred.put(words.get(i), i);
+            // interleaved queries replay the pending references
+            String word = words.get(i / 2);
+            assertEquals(word, eager.search(word), deferred.search(word));
+        }
+        assertEquals(eager.computeCount(), deferred.computeCount());
+
+        deferred.put("edcba", words.size());
+        deferred.setDeferredReferences(false);
+        assertEquals(0, deferred.flushReferences());
+        deferred.put("abcde", words.size() + 1);
+        assertEquals(0, deferred.flushReferences());
+    }
+
+    public void testPipelineFlushesBatches() throws Exception {
+        GeneralizedSuffixTree tree = new GeneralizedSuffixTree();
+        tree.setDeferredReferences(true);
+        IngestPipeline pipeline = new IngestPipeline(tree, 0, 64, 16);
+        try {
+            pipeline.submit(words).get();
+            assertEquals(0, tree.flushReferences());
+        } finally {
+            pipeline.close();
+        }
+        GeneralizedSuffixTree eager = new GeneralizedSuffixTree();
+        for (int i = 0; i < words.size(); ++i) {
+            eager.put(words.get(i), i);
+        }
+        assertSameResults(eager, tree, words.subList(0, 10));
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+import static com.abahgat.suffixtree.TestUtils.assertSameResults;
+import static com.abahgat.suffixtree.Utils.getSubstrings;
+
+public class DepthLimitedTreeTest extends TestCase {
+
+    private List<String> words;
+    private GeneralizedSuffixTree full;
+    private GeneralizedSuffixTree limited;
+
+    @Override
+    protected void setUp() {
+        Random random = new Random(29);
+        words = new ArrayList<String>();
+        full = new GeneralizedSuffixTree();
+        limited = new GeneralizedSuffixTree(4);
+        for (int i = 0; i < 150; ++i) {
+            StringBuilder word = new StringBuilder();
+            int length = 1 + random.nextInt(i % 10 == 0 ? 60 : 12);
+            for (int j = 0; j < length; ++j) {
+                word.append((char) ('a' + random.nextInt(3)));
+            }
+            words.add(word.toString());
+            full.put(word.toString(), i / 4);
+            limited.put(word.toString(), i / 4);
+        }
+    }
+
+    public void testSameResultsAsFullTree() {
+        assertSameResults(full, limited, words.subList(0, 40));
+        for (String word : words) {
+            assertEquals(word, new HashSet<Integer>(full.searchWord(word)), new HashSet<Integer>(limited.searchWord(word)));
+        }
+        assertEquals(4, limited.getMaxDepth());
+        assertEquals(0, full.getMaxDepth());
+    }
+
+    public void testCountsAndLimits() {
+        full.computeCount();
+        limited.computeCount();
+        for (String s : getSubstrings(words.get(0))) {
+            assertEquals(s, full.searchWithCount(s, 1).totalResults, limited.searchWithCount(s, 1).totalResults);
+            assertEquals(s, Math.min(2, full.search(s).size()), limited.search(s, 2).size());
+        }
+    }
+
+    public void testQueriesAndSessions() {
+        String longWord = words.get(0);
+        for (String s : getSubstrings(longWord)) {
+            Query q = Query.and(Query.contains(s), Query.not(Query.endsWith(s)));
+            assertEquals(s, full.query(q), limited.query(q));
+        }
+
+        SearchSession fullSession = full.newStartsWithSession();
+        SearchSession limitedSession = limited.newStartsWithSession();
+        for (int i = 0; i < longWord.length(); ++i) {
+            assertEquals(fullSession.append(longWord.charAt(i)), limitedSession.append(longWord.charAt(i)));
+            assertEquals(new HashSet<Integer>(fullSession.getResults()), new HashSet<Integer>(limitedSession.getResults()));
+        }
+        for (int i = 0; i < longWord.length(); ++i) {
+            assertTrue(limitedSession.backspace());
+            fullSession.backspace();
+            assertEquals(fullSession.hasMatches(), limitedSession.hasMatches());
+            assertEquals(new HashSet<Integer>(fullSession.getResults()), new HashSet<Integer>(limitedSession.getResults()));
+        }
+        assertFalse(limitedSession.backspace());
+    }
+
+    public void testTruncationSymbol() {
+        // a cut window must not look like a key followed by a real '\uFFFF'
+        GeneralizedSuffixTree tree = new GeneralizedSuffixTree(2);
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < 200; ++i) {
+            word.append(i == 65 ? 'x' : 'a');
+        }
+        tree.put(word.toString(), 0);
+        assertTrue(tree.search("x").contains(0));
+        assertTrue(tree.search("x\uFFFF").isEmpty());
+        assertTrue(tree.search(new byte[] {'x', (byte) 0xFF}, 0, 2).isEmpty());
+        assertTrue(tree.search("\uFFFF").isEmpty());
+        assertEquals(0, tree.count("a\uFFFF"));
+        SearchSession session = tree.newSearchSession();
+        assertTrue(session.append('x'));
+        assertFalse(session.append('\uFFFF'));
+
+        assertFalse(tree.isValidKey("a\uFFFF"));
+        try {
+            tree.put(new byte[] {'a', (byte) 0xFF}, 0, 2, 1);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        // unlimited trees do not reserve the symbol
+        assertTrue(new GeneralizedSuffixTree().isValidKey("a\uFFFF"));
+    }
+
+    public void testSmallerTree() {
+        // long keys, whose substrings are mostly distinct
+        Random random = new Random(31);
+        GeneralizedSuffixTree longFull = new GeneralizedSuffixTree();
+        GeneralizedSuffixTree longLimited = new GeneralizedSuffixTree(8);
+        for (int i = 0; i < 20; ++i) {
+            StringBuilder word = new StringBuilder();
+            for (int j = 0; j < 1000; ++j) {
+                word.append((char) ('a' + random.nextInt(26)));
+            }
+            longFull.put(word.toString(), i);
+            longLimited.put(word.toString(), i);
+        }
+        assertTrue(longLimited.getStatistics().getTotalBytes() < longFull.getStatistics().getTotalBytes() / 2);
+        try {
+            OffHeapSuffixTree.copyOf(limited);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
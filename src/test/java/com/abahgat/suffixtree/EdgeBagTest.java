@@ -47,10 +47,10 @@ public class EdgeBagTest {
      @Test
      public void testPut() {
         EdgeBag bag = new EdgeBag();
-        Edge e1 = new Edge("asd", null);
-        Edge e2 = new Edge("errimo", null);
-        Edge e3 = new Edge("foo", null);
-        Edge e4 = new Edge("bar", null);
+        Node e1 = new Node("asd");
+        Node e2 = new Node("errimo");
+        Node e3 = new Node("foo");
+        Node e4 = new Node("bar");
         bag.put('a', e1);
         bag.put('e', e2);
         bag.put('f', e3);
@@ -77,4 +77,47 @@ public class EdgeBagTest {
          
      }
 
+     @Test
+     public void testGrowth() {
+        EdgeBag bag = new EdgeBag();
+        Node[] edges = new Node[256];
+        // insert in a scrambled order, going through all the layouts
+        for (int i = 0; i < 256; ++i) {
+            char c = (char) (byte) ((i * 37) & 0xFF);
+            edges[c & 0xFF] = new Node(String.valueOf(c));
+            assertNull(bag.put(c, edges[c & 0xFF]));
+            assertEquals(i + 1, bag.size());
+            for (int j = 0; j <= i; ++j) {
+                char inserted = (char) (byte) ((j * 37) & 0xFF);
+                assertSame(edges[inserted & 0xFF], bag.get(inserted));
+            }
+            if (i < 255) {
+                assertNull(bag.get((char) (byte) (((i + 1) * 37) & 0xFF)));
+            }
+
+            // values are ordered by their unsigned first character
+            int previous = -1;
+            for (Node e : bag.values()) {
+                int key = e.getLabel().charAt(0) & 0xFF;
+                assertTrue(key > previous);
+                previous = key;
+            }
+            assertEquals(i + 1, bag.values().size());
+        }
+     }
+
+     @Test
+     public void testReplace() {
+        EdgeBag bag = new EdgeBag();
+        for (int size : new int[] {3, 20, 100}) {
+            for (char c = 0; c < size; ++c) {
+                bag.put(c, new Node("a"));
+            }
+            Node replacement = new Node("b");
+            assertNotNull(bag.put((char) 2, replacement));
+            assertSame(replacement, bag.get((char) 2));
+            assertEquals(size, bag.size());
+        }
+     }
+
 }
\ No newline at end of file
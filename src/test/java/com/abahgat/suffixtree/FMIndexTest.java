@@ -0,0 +1,87 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import junit.framework.TestCase;
+import static com.abahgat.suffixtree.TestUtils.PLACES;
+import static com.abahgat.suffixtree.TestUtils.assertSameResults;
+import static com.abahgat.suffixtree.TestUtils.buildTree;
+import static com.abahgat.suffixtree.TestUtils.putAll;
+import static com.abahgat.suffixtree.TestUtils.randomWords;
+
+public class FMIndexTest extends TestCase {
+
+    public void testSameResultsAsTree() {
+        List<String> words = new ArrayList<String>(Arrays.asList(PLACES));
+        words.add("br");
+        GeneralizedSuffixTree tree = buildTree(words);
+        FMIndex.Builder builder = new FMIndex.Builder();
+        for (int i = 0; i < words.size(); ++i) {
+            builder.put(words.get(i), i);
+        }
+        FMIndex index = builder.build();
+        assertSameResults(tree, index, words);
+
+        assertTrue(index.search("houses").isEmpty());
+        assertTrue(index.search("").isEmpty());
+        assertTrue(index.searchWord("").isEmpty());
+        assertEquals(2, index.searchWord("bethesda").size());
+        assertEquals(1, index.search("house", 1).size());
+        // sentinels can only match at the boundaries of a key
+        assertTrue(index.search("a$^b").isEmpty());
+        assertTrue(index.search("$^").isEmpty());
+        assertEquals(new HashSet<Integer>(tree.search("^b")), new HashSet<Integer>(index.search("^b")));
+        assertEquals(new HashSet<Integer>(tree.search("^")), new HashSet<Integer>(index.search("^")));
+    }
+
+    public void testRandomCorpus() {
+        List<String> words = randomWords(7, 300, 12, 4);
+        GeneralizedSuffixTree tree = putAll(new GeneralizedSuffixTree(), words, 0, 2);
+        FMIndex.Builder builder = new FMIndex.Builder();
+        for (int i = 0; i < words.size(); ++i) {
+            builder.put(words.get(i), i / 2);
+        }
+        assertSameResults(tree, builder.build(), words);
+    }
+
+    public void testOccurrences() {
+        FMIndex index = new FMIndex.Builder().put("banana", 0).put("ananas", 1).build();
+        assertEquals(4, index.countOccurrences("ana"));
+        assertEquals(2, index.search("ana").size());
+        assertEquals(0, index.countOccurrences("x"));
+        assertTrue(index.getSizeInBytes() > 0);
+    }
+
+    public void testEmptyIndex() {
+        FMIndex index = new FMIndex.Builder().build();
+        assertTrue(index.search("a").isEmpty());
+        assertTrue(index.startsWith("a").isEmpty());
+    }
+
+    public void testIndexOrder() {
+        FMIndex.Builder builder = new FMIndex.Builder().put("a", 1);
+        try {
+            builder.put("b", 0);
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ * Guards the memory footprint of the tree: builds trees out of a few synthetic but realistic
+ * corpora and fails when the heap used per indexed character (or per document) grows beyond
+ * the thresholds recorded in footprint-thresholds.properties.
+ *
+ * Two figures are checked for every corpus:
+ * - the size estimated by TreeStatistics, which is deterministic and catches layout changes
+ *   in Node and EdgeBag exactly
+ * - the retained heap measured after a full GC, which has a wider tolerance but also catches
+ *   objects the estimate does not know about
+ *
+ * When a change reduces the footprint, lower the thresholds accordingly so that the gain is kept.
+ */
+public class FootprintTest extends TestCase {
+
+    private static final int DOCUMENTS = 3000;
+
+    private Properties thresholds;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        thresholds = new Properties();
+        InputStream in = FootprintTest.class.getResourceAsStream("/footprint-thresholds.properties");
+        assertNotNull("footprint-thresholds.properties not found", in);
+        try {
+            thresholds.load(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    public void testAddresses() {
+        Random random = new Random(42);
+        String[] streets = {"main", "oak", "lake", "hill", "church", "mill", "park", "river", "washington", "lincoln"};
+        String[] kinds = {"st", "ave", "blvd", "rd", "dr", "ln", "way"};
+        String[] cities = {"springfield", "franklin", "greenville", "bristol", "clinton", "fairview", "salem", "madison"};
+        List<String> corpus = new ArrayList<String>();
+        for (int i = 0; i < DOCUMENTS; ++i) {
+            corpus.add(Utils.normalize((1 + random.nextInt(9999)) + " " + pick(random, streets) + " "
+                    + pick(random, kinds) + " " + pick(random, cities)));
+        }
+        check("addresses", corpus);
+    }
+
+    public void testUrls() {
+        Random random = new Random(43);
+        String[] hosts = {"www.example.com", "shop.example.org", "news.site.net", "api.service.io", "blog.company.com"};
+        String[] sections = {"products", "articles", "users", "search", "category", "static"};
+        List<String> corpus = new ArrayList<String>();
+        for (int i = 0; i < DOCUMENTS; ++i) {
+            corpus.add("https://" + pick(random, hosts) + "/" + pick(random, sections) + "/" + random.nextInt(100000)
+                    + "?page=" + random.nextInt(50));
+        }
+        check("urls", corpus);
+    }
+
+    public void testLogLines() {
+        Random random = new Random(44);
+        String[] templates = {"user %d logged in from 10.0.%d.%d",
+            "request %d completed in %dms with status %d",
+            "cache miss for key item:%d:%d:%d",
+            "connection %d closed by peer after %d retries (%d)"};
+        List<String> corpus = new ArrayList<String>();
+        for (int i = 0; i < DOCUMENTS; ++i) {
+            corpus.add(String.format(pick(random, templates), random.nextInt(100000), random.nextInt(256), random.nextInt(1000)));
+        }
+        check("logs", corpus);
+    }
+
+    public void testRandomText() {
+        Random random = new Random(45);
+        String alphabet = "abcdefghijklmnopqrstuvwxyz0123456789";
+        List<String> corpus = new ArrayList<String>();
+        for (int i = 0; i < DOCUMENTS; ++i) {
+            int length = 8 + random.nextInt(24);
+            StringBuilder key = new StringBuilder(length);
+            for (int j = 0; j < length; ++j) {
+                key.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            corpus.add(key.toString());
+        }
+        check("random", corpus);
+    }
+
+    private void check(String corpusName, List<String> corpus) {
+        long chars = 0;
+        for (String key : corpus) {
+            chars += key.length();
+        }
+
+        GeneralizedSuffixTree in = new GeneralizedSuffixTree();
+        for (int i = 0; i < corpus.size(); ++i) {
+            in.put(corpus.get(i), i);
+        }
+        TreeStatistics stats = in.getStatistics();
+        assertNotNull(in.search(corpus.get(0)));
+
+        // measure the heap with and without the tree, so that garbage from previous tests does not count
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long withTree = usedHeapAfterGc(memory);
+        in = null;
+        long measured = withTree - usedHeapAfterGc(memory);
+
+        double estimatedPerChar = (double) stats.getTotalBytes() / chars;
+        double estimatedPerDocument = (double) stats.getTotalBytes() / corpus.size();
+        double measuredPerChar = (double) measured / chars;
+        System.out.println(String.format("footprint %s: %d documents, %d chars, %.1f bytes/char (estimated), "
+                + "%.1f bytes/document (estimated), %.1f bytes/char (measured)",
+                corpusName, corpus.size(), chars, estimatedPerChar, estimatedPerDocument, measuredPerChar));
+
+        assertBelow(corpusName + ".bytesPerChar", estimatedPerChar);
+        assertBelow(corpusName + ".bytesPerDocument", estimatedPerDocument);
+        assertBelow(corpusName + ".measuredBytesPerChar", measuredPerChar);
+    }
+
+    private void assertBelow(String key, double value) {
+        String threshold = thresholds.getProperty(key);
+        assertNotNull("No threshold recorded for " + key, threshold);
+        assertTrue(key + " is " + value + ", above the recorded threshold of " + threshold,
+                value <= Double.parseDouble(threshold));
+    }
+
+    private static long usedHeapAfterGc(MemoryMXBean memory) {
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 3; ++i) {
+            System.gc();
+            used = Math.min(used, memory.getHeapMemoryUsage().getUsed());
+        }
+        return used;
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import junit.framework.TestCase;
+
+public class IndexSetTest extends TestCase {
+
+    public void testDenseAndSparse() {
+        Random random = new Random(1);
+        for (int minDenseWords : new int[] {0, 1024}) {
+            IndexSet set = new IndexSet(minDenseWords);
+            for (int round = 0; round < 3; ++round) {
+                Set<Integer> expected = new HashSet<Integer>();
+                for (int i = 0; i < 5000; ++i) {
+                    // mostly dense ids, with a few scattered ones
+                    int value = i % 10 == 0 ? random.nextInt(Integer.MAX_VALUE) : random.nextInt(20000);
+                    assertEquals(expected.add(value), set.add(value));
+                }
+                assertEquals(expected.size(), set.size());
+                for (int value : expected) {
+                    assertTrue(set.contains(value));
+                }
+                Set<Integer> copy = set.toSet();
+                assertEquals(expected, copy);
+                int previous = -1;
+                for (int value : copy) {
+                    assertTrue(value > previous);
+                    previous = value;
+                }
+                set.clear();
+                assertEquals(0, set.size());
+                for (int value : expected) {
+                    assertFalse(set.contains(value));
+                }
+            }
+        }
+    }
+
+    public void testClearReleasesLargeBitset() {
+        IndexSet set = new IndexSet(1024);
+        for (int i = 0; i < 1000000; ++i) {
+            set.add(i);
+        }
+        assertTrue(set.getDenseWords() > 4096);
+        set.clear();
+        assertTrue(set.getDenseWords() <= 4096);
+        for (int i = 0; i < 1000; ++i) {
+            set.add(i);
+        }
+        set.clear();
+        // small bitsets are kept for the next collection
+        assertTrue(set.getDenseWords() > 0);
+    }
+
+    public void testMutableResults() {
+        GeneralizedSuffixTree tree = new GeneralizedSuffixTree();
+        String[] words = {"cacao", "cacaor", "banana", "cacata"};
+        for (int i = 0; i < words.length; ++i) {
+            tree.put(words[i], i);
+        }
+        Collection<Integer> results = tree.search("ca");
+        assertTrue(results.retainAll(tree.search("o")));
+        assertEquals(new HashSet<Integer>(Arrays.asList(0, 1)), results);
+        assertTrue(results.add(7));
+        assertFalse(results.add(0));
+        assertTrue(results.remove(1));
+        assertEquals(Arrays.asList(0, 7), new ArrayList<Integer>(results));
+        assertTrue(Arrays.equals(new int[] {0, 7}, Query.toArray(results)));
+        results.clear();
+        assertTrue(results.isEmpty());
+        // the results of other searches are not affected
+        assertEquals(3, tree.search("ca").size());
+    }
+
+    public void testAddAll() {
+        IndexSet a = new IndexSet(0);
+        IndexSet b = new IndexSet(0);
+        List<Integer> values = new ArrayList<Integer>();
+        for (int i = 0; i < 100; ++i) {
+            a.add(i * 3);
+            b.add(i * 5);
+            values.add(i * 3);
+            values.add(i * 5);
+        }
+        a.addAll(b);
+        assertEquals(new HashSet<Integer>(values), a.toSet());
+    }
+
+    public void testDeepTree() {
+        // the tree of a string made of a single character is a chain as deep as the string
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i < 30000; ++i) {
+            key.append('a');
+        }
+        GeneralizedSuffixTree in = new GeneralizedSuffixTree();
+        in.put(key.toString(), 0);
+        in.put("ab", 1);
+        in.computeCount();
+        assertEquals(2, in.search("a").size());
+        assertEquals(2, in.searchWithCount("a", -1).totalResults);
+        assertEquals(1, in.searchWithCount("aa", -1).totalResults);
+    }
+}
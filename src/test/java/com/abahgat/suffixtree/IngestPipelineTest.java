@@ -0,0 +1,220 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import junit.framework.TestCase;
+
+public class IngestPipelineTest extends TestCase {
+
+    public void testConcurrentProducers() throws Exception {
+        final GeneralizedSuffixTree tree = new GeneralizedSuffixTree();
+        final IngestPipeline pipeline = new IngestPipeline(tree, 10, 8, 16);
+        final ConcurrentHashMap<String, CompletableFuture<Integer>> futures =
+                new ConcurrentHashMap<String, CompletableFuture<Integer>>();
+        Thread[] producers = new Thread[4];
+        for (int p = 0; p < producers.length; ++p) {
+            final int producer = p;
+            producers[p] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 250; ++i) {
+                            String key = "p" + producer + "k" + i;
+                            futures.put(key, pipeline.submit(key));
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            producers[p].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        pipeline.flush().get();
+
+        Set<Integer> indexes = new HashSet<Integer>();
+        for (String key : futures.keySet()) {
+            int index = futures.get(key).get();
+            assertTrue(indexes.add(index));
+            final String word = key;
+            Collection<Integer> found = pipeline.read(new Function<GeneralizedSuffixTree, Collection<Integer>>() {
+                @Override
+                public Collection<Integer> apply(GeneralizedSuffixTree t) {
+                    return t.searchWord(word);
+                }
+            });
+            assertEquals(new HashSet<Integer>(Arrays.asList(index)), new HashSet<Integer>(found));
+        }
+        // indexes are consecutive, starting from the first one
+        assertEquals(1000, indexes.size());
+        for (int i = 10; i < 1010; ++i) {
+            assertTrue(indexes.contains(i));
+        }
+        pipeline.close();
+    }
+
+    public void testBatchesAndErrors() throws Exception {
+        GeneralizedSuffixTree tree = new GeneralizedSuffixTree();
+        IngestPipeline pipeline = new IngestPipeline(tree, 0, 4, 2);
+        CompletableFuture<Integer> first = pipeline.submit(Arrays.asList("banana", "cacao", "caricato"));
+        CompletableFuture<Integer> failed = pipeline.submit("\u20ac");
+        CompletableFuture<Integer> last = pipeline.submit("cacata");
+        pipeline.close();
+
+        assertEquals(0, (int) first.get());
+        try {
+            failed.get();
+            fail("Expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+        // rejected keys do not consume an index
+        assertEquals(3, (int) last.get());
+        assertEquals(new HashSet<Integer>(Arrays.asList(1, 2, 3)), new HashSet<Integer>(tree.search("ca")));
+    }
+
+    public void testInvalidKeyLeavesTreeUntouched() throws Exception {
+        GeneralizedSuffixTree tree = new GeneralizedSuffixTree();
+        IngestPipeline pipeline = new IngestPipeline(tree, 0, 4, 4);
+        pipeline.submit("world");
+        CompletableFuture<Integer> failed = pipeline.submit(Arrays.asList("worm", "wor\u00e9ld"));
+        pipeline.flush().get();
+        assertTrue(failed.isCompletedExceptionally());
+
+        Collection<Integer> found = pipeline.read(new Function<GeneralizedSuffixTree, Collection<Integer>>() {
+            @Override
+            public Collection<Integer> apply(GeneralizedSuffixTree t) {
+                Collection<Integer> all = new HashSet<Integer>();
+                all.addAll(t.search("wor"));
+                all.addAll(t.search("o"));
+                all.addAll(t.search("ld"));
+                return all;
+            }
+        });
+        assertEquals(new HashSet<Integer>(Arrays.asList(0)), found);
+        pipeline.close();
+    }
+
+    public void testPutErrorFailsPipeline() throws Exception {
+        GeneralizedSuffixTree tree = new GeneralizedSuffixTree();
+        tree.put("cacao", 5);
+        // the first index is already taken, so put fails after the key was validated
+        IngestPipeline pipeline = new IngestPipeline(tree, 0, 4, 4);
+        CompletableFuture<Integer> failed = pipeline.submit("banana");
+        try {
+            failed.get();
+            fail("Expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        try {
+            pipeline.submit("cacata");
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        try {
+            pipeline.read(new Function<GeneralizedSuffixTree, Collection<Integer>>() {
+                @Override
+                public Collection<Integer> apply(GeneralizedSuffixTree t) {
+                    return t.search("a");
+                }
+            });
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        pipeline.close();
+    }
+
+    public void testPutErrorInTheMiddleOfABatch() throws Exception {
+        GeneralizedSuffixTree tree = new GeneralizedSuffixTree() {
+            @Override
+            public void put(String key, int index) {
+                if (key.equals("boom")) {
+                    throw new IllegalStateException("Injected failure");
+                }
+                super.put(key, index);
+            }
+        };
+        final IngestPipeline pipeline = new IngestPipeline(tree, 0, 8, 8);
+        // hold a read lock, so that the submissions after the first one end up in the same batch
+        final CountDownLatch reading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                pipeline.read(new Function<GeneralizedSuffixTree, Void>() {
+                    @Override
+                    public Void apply(GeneralizedSuffixTree t) {
+                        reading.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return null;
+                    }
+                });
+            }
+        });
+        reader.start();
+        reading.await();
+        CompletableFuture<Integer> first = pipeline.submit("banana");
+        // the writer blocks on the lock holding the first batch: queue the others behind it
+        CompletableFuture<Integer> second = pipeline.submit(Arrays.asList("cacao", "cacata"));
+        CompletableFuture<Integer> failed = pipeline.submit(Arrays.asList("caricato", "boom"));
+        CompletableFuture<Integer> last = pipeline.submit("cacaor");
+        release.countDown();
+        reader.join();
+
+        assertEquals(0, (int) first.get());
+        assertEquals(1, (int) second.get());
+        for (CompletableFuture<Integer> future : Arrays.asList(failed, last)) {
+            try {
+                future.get();
+                fail("Expected ExecutionException");
+            } catch (ExecutionException e) {
+                // expected
+            }
+        }
+        assertEquals(new HashSet<Integer>(Arrays.asList(1, 2)), new HashSet<Integer>(tree.search("caca")));
+        pipeline.close();
+    }
+
+    public void testClosed() throws Exception {
+        IngestPipeline pipeline = new IngestPipeline(new GeneralizedSuffixTree(), 0, 1, 1);
+        pipeline.close();
+        pipeline.close();
+        try {
+            pipeline.submit("a");
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+import static com.abahgat.suffixtree.TestUtils.assertSameResults;
+import static com.abahgat.suffixtree.TestUtils.putAll;
+
+public class MinimizedTreeTest extends TestCase {
+
+    private static final String[] TEMPLATES = new String[] {"GET /api/v1/users/%d/profile HTTP/1.1",
+        "POST /api/v1/orders/%d/items HTTP/1.1", "connection from 10.0.%d.1 closed", "user %d logged in"};
+
+    private List<String> words;
+
+    @Override
+    protected void setUp() {
+        Random random = new Random(11);
+        words = new ArrayList<String>();
+        for (int i = 0; i < 400; ++i) {
+            words.add(String.format(TEMPLATES[random.nextInt(TEMPLATES.length)], random.nextInt(50)));
+        }
+    }
+
+    private GeneralizedSuffixTree buildTree() {
+        return putAll(new GeneralizedSuffixTree(), words, 0, 8);
+    }
+
+    public void testSameResults() {
+        GeneralizedSuffixTree full = buildTree();
+        GeneralizedSuffixTree minimized = buildTree();
+        minimized.minimize();
+        assertTrue(minimized.isMinimized());
+        assertFalse(full.isMinimized());
+
+        assertSameResults(full, minimized, words.subList(0, 20));
+        assertEquals(full.computeCount(), minimized.computeCount());
+        for (String s : new String[] {"api", "/1.1", "10.0.", "logged", "items H"}) {
+            assertEquals(s, full.searchWithCount(s, 3).totalResults, minimized.searchWithCount(s, 3).totalResults);
+            assertEquals(s, new HashSet<Integer>(full.search(s)), new HashSet<Integer>(minimized.search(s)));
+        }
+
+        // minimizing twice has no effect
+        long bytes = minimized.getStatistics().getTotalBytes();
+        minimized.minimize();
+        assertEquals(bytes, minimized.getStatistics().getTotalBytes());
+    }
+
+    public void testSmallerTree() {
+        TreeStatistics full = buildTree().getStatistics();
+        GeneralizedSuffixTree tree = buildTree();
+        tree.minimize();
+        TreeStatistics minimized = tree.getStatistics();
+
+        assertTrue(minimized.getNodeCount() < full.getNodeCount() / 4);
+        assertTrue(minimized.getTotalBytes() < full.getTotalBytes() / 5);
+    }
+
+    public void testFrozen() {
+        GeneralizedSuffixTree tree = buildTree();
+        tree.minimize();
+        try {
+            tree.put("another key", 1000);
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertTrue(tree.search("another").isEmpty());
+    }
+
+    public void testOffHeapCopy() {
+        GeneralizedSuffixTree full = buildTree();
+        GeneralizedSuffixTree minimized = buildTree();
+        minimized.minimize();
+        OffHeapSuffixTree copy = OffHeapSuffixTree.copyOf(minimized);
+        try {
+            assertSameResults(full, copy, words.subList(0, 10));
+        } finally {
+            copy.close();
+        }
+    }
+}
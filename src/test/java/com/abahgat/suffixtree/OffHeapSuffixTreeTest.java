@@ -0,0 +1,86 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.util.HashSet;
+import junit.framework.TestCase;
+import static com.abahgat.suffixtree.TestUtils.PLACES;
+import static com.abahgat.suffixtree.TestUtils.buildTree;
+import static com.abahgat.suffixtree.Utils.getSubstrings;
+
+public class OffHeapSuffixTreeTest extends TestCase {
+
+    public void testSameResults() {
+        GeneralizedSuffixTree in = buildTree(PLACES);
+        OffHeapSuffixTree copy = OffHeapSuffixTree.copyOf(in);
+        try {
+            assertEquals(in.getStatistics().getNodeCount(), copy.getNodeCount());
+            for (String word : PLACES) {
+                for (String s : getSubstrings(word)) {
+                    assertEquals(s, new HashSet<Integer>(in.search(s)), new HashSet<Integer>(copy.search(s)));
+                    assertEquals(s, new HashSet<Integer>(in.startsWith(s)), new HashSet<Integer>(copy.startsWith(s)));
+                    assertEquals(s, new HashSet<Integer>(in.endsWith(s)), new HashSet<Integer>(copy.endsWith(s)));
+                    assertEquals(s, new HashSet<Integer>(in.searchWord(s)), new HashSet<Integer>(copy.searchWord(s)));
+                }
+            }
+            assertTrue(copy.search("houses").isEmpty());
+            assertTrue(copy.search("").isEmpty());
+            assertTrue(copy.startsWith("").isEmpty());
+            assertEquals(2, copy.searchWord("bethesda").size());
+            assertEquals(1, copy.search("house", 1).size());
+        } finally {
+            copy.close();
+        }
+    }
+
+    public void testSearchWithCount() {
+        GeneralizedSuffixTree in = buildTree(PLACES);
+        OffHeapSuffixTree copy = OffHeapSuffixTree.copyOf(in);
+        try {
+            GeneralizedSuffixTree.ResultInfo info = copy.searchWithCount("house", 2);
+            assertEquals(3, info.totalResults);
+            assertEquals(2, info.results.size());
+            assertEquals(0, copy.searchWithCount("xyz", 2).totalResults);
+        } finally {
+            copy.close();
+        }
+    }
+
+    public void testClose() {
+        OffHeapSuffixTree copy = OffHeapSuffixTree.copyOf(buildTree(PLACES));
+        assertTrue(copy.getOffHeapBytes() > 0);
+        assertFalse(copy.isClosed());
+        copy.close();
+        assertTrue(copy.isClosed());
+        copy.close();
+        try {
+            copy.search("house");
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    public void testEmptyTree() {
+        OffHeapSuffixTree copy = OffHeapSuffixTree.copyOf(new GeneralizedSuffixTree());
+        try {
+            assertEquals(1, copy.getNodeCount());
+            assertTrue(copy.search("a").isEmpty());
+        } finally {
+            copy.close();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import junit.framework.TestCase;
+import static com.abahgat.suffixtree.TestUtils.putAll;
+import static com.abahgat.suffixtree.TestUtils.randomWords;
+
+public class OrderedSearchTest extends TestCase {
+
+    private List<String> words;
+
+    @Override
+    protected void setUp() {
+        words = randomWords(5, 500, 20, 4);
+    }
+
+    private GeneralizedSuffixTree buildTree(GeneralizedSuffixTree tree) {
+        return putAll(tree, words, 0, 3);
+    }
+
+    private static void assertOrdered(GeneralizedSuffixTree tree, String word) {
+        List<Integer> all = new ArrayList<Integer>(tree.search(word));
+        Collections.sort(all);
+        for (int n : new int[] {1, 3, 10, all.size() + 1}) {
+            List<Integer> oldest = all.subList(0, Math.min(n, all.size()));
+            assertEquals(word, oldest, tree.searchOldest(word, n));
+
+            List<Integer> newest = new ArrayList<Integer>(all.subList(Math.max(0, all.size() - n), all.size()));
+            Collections.reverse(newest);
+            assertEquals(word, newest, tree.searchNewest(word, n));
+        }
+        assertEquals(word, all, tree.searchOldest(word, -1));
+    }
+
+    public void testSameAsSortedSearch() {
+        GeneralizedSuffixTree tree = buildTree(new GeneralizedSuffixTree());
+        for (String s : new String[] {"a", "ab", "abc", "cab", "dddd", "abcdabcd", "^a", "d$", "^ab$"}) {
+            assertOrdered(tree, s);
+        }
+        assertTrue(tree.searchNewest("x", 5).isEmpty());
+        assertTrue(tree.searchNewest("a", 0).isEmpty());
+    }
+
+    public void testDepthLimitedAndMinimized() {
+        GeneralizedSuffixTree limited = buildTree(new GeneralizedSuffixTree(3));
+        GeneralizedSuffixTree minimized = buildTree(new GeneralizedSuffixTree());
+        minimized.minimize();
+        for (String s : new String[] {"ab", "abcda", "bcdabc", "ddab"}) {
+            assertOrdered(limited, s);
+            assertOrdered(minimized, s);
+        }
+    }
+
+    public void testCountedTree() {
+        GeneralizedSuffixTree tree = buildTree(new GeneralizedSuffixTree());
+        String[] queries = {"a", "ab", "cab", "dddd", "^a", "d$"};
+        tree.computeCount();
+        for (String s : queries) {
+            assertOrdered(tree, s);
+        }
+        // the cached bounds are stale: the new keys must be found anyway
+        putAll(tree, randomWords(6, 100, 20, 4), 1000, 1);
+        for (String s : queries) {
+            assertOrdered(tree, s);
+        }
+        tree.computeCount();
+        for (String s : queries) {
+            assertOrdered(tree, s);
+        }
+        assertEquals(1099, (int) tree.searchNewest("a", 1).get(0));
+    }
+
+    public void testCountedTreeVisitsFewNodes() {
+        GeneralizedSuffixTree tree = buildTree(new GeneralizedSuffixTree());
+        tree.computeCount();
+        for (boolean descending : new boolean[] {true, false}) {
+            OrderedMerge lazy = new OrderedMerge(tree.getRoot(), descending, true);
+            OrderedMerge full = new OrderedMerge(tree.getRoot(), descending, false);
+            for (int i = 0; i < 10; i++) {
+                assertEquals(full.next(), lazy.next());
+            }
+            // every node is visited by the full merge, only the ones close to the first
+            // results by the lazy one
+            assertTrue(lazy.getVisitedNodes() + " of " + full.getVisitedNodes(),
+                    lazy.getVisitedNodes() * 10 < full.getVisitedNodes());
+        }
+    }
+
+    public void testCancelled() {
+        GeneralizedSuffixTree tree = buildTree(new GeneralizedSuffixTree());
+        Cancellation cancellation = new Cancellation();
+        cancellation.cancel();
+        cancellation.install();
+        try {
+            tree.searchNewest("a", 1);
+            fail("Expected CancellationException");
+        } catch (CancellationException e) {
+            // expected
+        } finally {
+            Cancellation.uninstall();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import junit.framework.TestCase;
+import static com.abahgat.suffixtree.TestUtils.buildTree;
+
+public class QueryTest extends TestCase {
+
+    private static final String[] WORDS = new String[] {"foobar", "foo", "bar", "foobaz", "bazbar", "qux", "barfoo"};
+
+    public void testTerms() {
+        GeneralizedSuffixTree in = buildTree(WORDS);
+        assertEquals(new HashSet<Integer>(in.search("ba")), in.query(Query.contains("ba")));
+        assertEquals(new HashSet<Integer>(in.startsWith("foo")), in.query(Query.startsWith("foo")));
+        assertEquals(new HashSet<Integer>(in.endsWith("bar")), in.query(Query.endsWith("bar")));
+        assertEquals(new HashSet<Integer>(in.searchWord("foo")), in.query(Query.word("foo")));
+        assertTrue(in.query(Query.contains("zzz")).isEmpty());
+        assertTrue(in.query(Query.startsWith("")).isEmpty());
+    }
+
+    public void testOperators() {
+        GeneralizedSuffixTree in = buildTree(WORDS);
+        assertEquals(set(0), in.query(Query.and(Query.contains("foo"), Query.contains("bar"),
+                Query.not(Query.contains("barf")))));
+        assertEquals(set(0, 1, 2, 3, 4, 6), in.query(Query.or(Query.contains("foo"), Query.contains("ba"))));
+        assertEquals(set(1, 5), in.query(Query.not(Query.contains("ba"))));
+        assertEquals(set(1, 5), in.query(Query.and(Query.not(Query.contains("ba")), Query.not(Query.word("bar")))));
+        assertEquals(set(1, 3), in.query(Query.and(Query.startsWith("foo"),
+                Query.or(Query.word("foo"), Query.endsWith("baz")))));
+        assertTrue(in.query(Query.and(Query.contains("zzz"), Query.contains("foo"))).isEmpty());
+    }
+
+    public void testRandomQueries() {
+        Random random = new Random(17);
+        GeneralizedSuffixTree in = new GeneralizedSuffixTree();
+        for (int i = 0; i < 500; ++i) {
+            in.put(randomWord(random, 1 + random.nextInt(10)), i);
+        }
+        if (random.nextBoolean()) {
+            in.computeCount();
+        }
+        for (int round = 0; round < 300; ++round) {
+            String a = randomWord(random, 1 + random.nextInt(3));
+            String b = randomWord(random, 1 + random.nextInt(3));
+            String c = randomWord(random, 1 + random.nextInt(2));
+            Set<Integer> all = new HashSet<Integer>(in.search("^"));
+            Set<Integer> expected = new HashSet<Integer>(in.search(a));
+            expected.retainAll(in.startsWith(b));
+            Set<Integer> either = new HashSet<Integer>(in.endsWith(c));
+            Set<Integer> notA = new HashSet<Integer>(all);
+            notA.removeAll(in.search(a));
+            either.addAll(notA);
+            expected.retainAll(either);
+
+            Query q = Query.and(Query.contains(a), Query.startsWith(b),
+                    Query.or(Query.endsWith(c), Query.not(Query.contains(a))));
+            assertEquals(q.toString(), expected, in.query(q));
+        }
+    }
+
+    public void testInvalidOperands() {
+        try {
+            Query.and();
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            Query.or(Query.contains("a"), null);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static String randomWord(Random random, int length) {
+        StringBuilder ret = new StringBuilder();
+        for (int i = 0; i < length; ++i) {
+            ret.append((char) ('a' + random.nextInt(3)));
+        }
+        return ret.toString();
+    }
+
+    private static Set<Integer> set(Integer... values) {
+        return new HashSet<Integer>(Arrays.asList(values));
+    }
+}
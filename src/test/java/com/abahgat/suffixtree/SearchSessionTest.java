@@ -0,0 +1,116 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.util.HashSet;
+import junit.framework.TestCase;
+import static com.abahgat.suffixtree.TestUtils.WORDS;
+import static com.abahgat.suffixtree.TestUtils.buildTree;
+import static com.abahgat.suffixtree.Utils.getSubstrings;
+
+public class SearchSessionTest extends TestCase {
+
+    public void testAppendMatchesSearch() {
+        GeneralizedSuffixTree in = buildTree(WORDS);
+        for (String word : WORDS) {
+            for (String s : getSubstrings(word)) {
+                SearchSession session = in.newSearchSession();
+                for (int i = 0; i < s.length(); ++i) {
+                    assertTrue(session.append(s.charAt(i)));
+                    assertEquals(new HashSet<Integer>(in.search(s.substring(0, i + 1))),
+                            new HashSet<Integer>(session.getResults()));
+                }
+            }
+        }
+    }
+
+    public void testStartsWithSession() {
+        GeneralizedSuffixTree in = buildTree(WORDS);
+        SearchSession session = in.newStartsWithSession();
+        assertEquals(0, session.length());
+        assertTrue(session.getResults().isEmpty());
+
+        String query = "caric";
+        for (int i = 0; i < query.length(); ++i) {
+            session.append(query.charAt(i));
+            assertEquals(new HashSet<Integer>(in.startsWith(query.substring(0, i + 1))),
+                    new HashSet<Integer>(session.getResults()));
+        }
+        assertFalse(session.append('x'));
+        assertTrue(session.getResults().isEmpty());
+    }
+
+    public void testBackspace() {
+        GeneralizedSuffixTree in = buildTree(WORDS);
+        SearchSession session = in.newSearchSession();
+        assertFalse(session.backspace());
+
+        for (char c : "cacaxyz".toCharArray()) {
+            session.append(c);
+        }
+        assertEquals(7, session.length());
+        assertFalse(session.hasMatches());
+
+        // remove the mismatching tail
+        for (int i = 0; i < 3; ++i) {
+            assertTrue(session.backspace());
+        }
+        assertTrue(session.hasMatches());
+        assertEquals(new HashSet<Integer>(in.search("caca")), new HashSet<Integer>(session.getResults()));
+
+        assertTrue(session.backspace());
+        assertEquals(new HashSet<Integer>(in.search("cac")), new HashSet<Integer>(session.getResults()));
+
+        session.reset();
+        assertEquals(0, session.length());
+        assertFalse(session.backspace());
+
+        SearchSession prefixSession = in.newStartsWithSession();
+        prefixSession.append('b');
+        assertTrue(prefixSession.backspace());
+        assertFalse(prefixSession.backspace());
+        assertTrue(prefixSession.append('b'));
+        assertEquals(new HashSet<Integer>(in.startsWith("b")), new HashSet<Integer>(prefixSession.getResults()));
+    }
+
+    public void testLimitBeyondIndexedDepth() {
+        GeneralizedSuffixTree in = new GeneralizedSuffixTree(2);
+        for (int i = 0; i < 50; ++i) {
+            in.put("abcdef" + i, i);
+        }
+        for (SearchSession session : new SearchSession[] {in.newSearchSession(), in.newStartsWithSession()}) {
+            for (char ch : "abcde".toCharArray()) {
+                session.append(ch);
+            }
+            // longer than the indexed depth, so the session falls back to the tree
+            assertEquals(3, session.getResults(3).size());
+            assertEquals(50, session.getResults().size());
+        }
+        assertEquals(3, in.startsWith("abcde", 3).size());
+    }
+
+    public void testEmptyTree() {
+        GeneralizedSuffixTree in = new GeneralizedSuffixTree();
+        SearchSession session = in.newStartsWithSession();
+        assertFalse(session.append('a'));
+        assertEquals(1, session.length());
+        assertTrue(session.backspace());
+        assertFalse(session.backspace());
+        session.reset();
+        assertFalse(session.hasMatches());
+        assertEquals(0, session.length());
+    }
+}
@@ -0,0 +1,255 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import com.abahgat.suffixtree.SubstringAnalytics.FrequentSubstring;
+import com.abahgat.suffixtree.SubstringAnalytics.Repeat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import junit.framework.TestCase;
+import static com.abahgat.suffixtree.TestUtils.buildTree;
+import static com.abahgat.suffixtree.TestUtils.randomWords;
+
+public class SubstringAnalyticsTest extends TestCase {
+
+    /**
+     * Computes the maximal (or supermaximal) repeats by enumerating all the substrings
+     */
+    private static Set<Repeat> bruteForce(List<String> words, int minLength, boolean supermaximal) {
+        Map<String, Integer> occurrences = new HashMap<String, Integer>();
+        Map<String, Set<Integer>> documents = new HashMap<String, Set<Integer>>();
+        // the left and right contexts, with a distinct negative value for each start and end of a key
+        Map<String, Set<Integer>> left = new HashMap<String, Set<Integer>>();
+        Map<String, Set<Integer>> right = new HashMap<String, Set<Integer>>();
+        for (int d = 0; d < words.size(); ++d) {
+            String word = words.get(d);
+            for (int i = 0; i < word.length(); ++i) {
+                for (int j = i + 1; j <= word.length(); ++j) {
+                    String s = word.substring(i, j);
+                    Integer count = occurrences.get(s);
+                    occurrences.put(s, count == null ? 1 : count + 1);
+                    if (!documents.containsKey(s)) {
+                        documents.put(s, new HashSet<Integer>());
+                        left.put(s, new HashSet<Integer>());
+                        right.put(s, new HashSet<Integer>());
+                    }
+                    documents.get(s).add(d);
+                    // the start and the end of each key are distinct contexts
+                    left.get(s).add(i == 0 ? -1 - 2 * (d * 1000 + i) : word.charAt(i - 1));
+                    right.get(s).add(j == word.length() ? -2 - 2 * (d * 1000 + i) : word.charAt(j));
+                }
+            }
+        }
+
+        Set<Repeat> repeats = new HashSet<Repeat>();
+        for (Map.Entry<String, Integer> entry : occurrences.entrySet()) {
+            String s = entry.getKey();
+            if (entry.getValue() < 2 || s.length() < minLength
+                    || left.get(s).size() < 2 || right.get(s).size() < 2) {
+                continue;
+            }
+            if (supermaximal && !extensionsUnique(s, occurrences)) {
+                continue;
+            }
+            repeats.add(new Repeat(s, entry.getValue(), documents.get(s).size()));
+        }
+        return repeats;
+    }
+
+    private static boolean extensionsUnique(String s, Map<String, Integer> occurrences) {
+        for (char c = 'a'; c <= 'z'; ++c) {
+            Integer before = occurrences.get(c + s);
+            Integer after = occurrences.get(s + c);
+            if ((before != null && before > 1) || (after != null && after > 1)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void testMaximalRepeatsMatchBruteForce() {
+        for (long seed = 0; seed < 10; ++seed) {
+            List<String> words = randomWords(seed, 40, 12, 3);
+            SubstringAnalytics analytics = new SubstringAnalytics(buildTree(words));
+            for (int minLength : new int[] {1, 3}) {
+                List<Repeat> found = analytics.maximalRepeats(minLength);
+                assertEquals("seed " + seed, bruteForce(words, minLength, false), new HashSet<Repeat>(found));
+                assertEquals("no duplicates", found.size(), new HashSet<Repeat>(found).size());
+            }
+        }
+    }
+
+    public void testSupermaximalRepeatsMatchBruteForce() {
+        for (long seed = 0; seed < 10; ++seed) {
+            List<String> words = randomWords(seed, 30, 15, 4);
+            SubstringAnalytics analytics = new SubstringAnalytics(buildTree(words));
+            assertEquals("seed " + seed, bruteForce(words, 2, true),
+                    new HashSet<Repeat>(analytics.supermaximalRepeats(2)));
+        }
+    }
+
+    public void testLongestRepeatedSubstring() {
+        List<String> words = new ArrayList<String>();
+        words.add("error: connection to db-1 refused");
+        words.add("warning: disk almost full");
+        words.add("error: connection to db-2 refused");
+        words.add("info: started");
+        SubstringAnalytics analytics = new SubstringAnalytics(buildTree(words));
+
+        Repeat longest = analytics.longestRepeatedSubstring();
+        assertEquals("error: connection to db-", longest.getString());
+        assertEquals(2, longest.getOccurrences());
+        assertEquals(2, longest.getDocumentCount());
+
+        List<Repeat> repeats = analytics.maximalRepeats(5);
+        assertEquals(longest, repeats.get(0));
+        TreeSet<String> strings = new TreeSet<String>();
+        for (Repeat r : repeats) {
+            strings.add(r.getString());
+        }
+        assertTrue(strings.contains(" refused"));
+
+        assertNull(new SubstringAnalytics(new GeneralizedSuffixTree()).longestRepeatedSubstring());
+    }
+
+    public void testSortedAndOnCustomPool() {
+        List<String> words = randomWords(42, 300, 30, 5);
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            List<Repeat> repeats = new SubstringAnalytics(buildTree(words), pool).maximalRepeats(4);
+            assertFalse(repeats.isEmpty());
+            for (int i = 1; i < repeats.size(); ++i) {
+                Repeat a = repeats.get(i - 1);
+                Repeat b = repeats.get(i);
+                assertTrue(a.getLength() > b.getLength()
+                        || (a.getLength() == b.getLength() && a.getString().compareTo(b.getString()) < 0));
+                assertTrue(b.getLength() >= 4);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static List<FrequentSubstring> bruteForceTop(List<String> words, int minLength, int maxLength, int n) {
+        Map<String, Set<Integer>> documents = new HashMap<String, Set<Integer>>();
+        for (int d = 0; d < words.size(); ++d) {
+            String word = words.get(d);
+            for (int i = 0; i < word.length(); ++i) {
+                for (int j = i + minLength; j <= Math.min(word.length(), i + maxLength); ++j) {
+                    String s = word.substring(i, j);
+                    if (!documents.containsKey(s)) {
+                        documents.put(s, new HashSet<Integer>());
+                    }
+                    documents.get(s).add(d);
+                }
+            }
+        }
+        List<FrequentSubstring> all = new ArrayList<FrequentSubstring>();
+        for (Map.Entry<String, Set<Integer>> entry : documents.entrySet()) {
+            all.add(new FrequentSubstring(entry.getKey(), entry.getValue().size()));
+        }
+        Collections.sort(all, new Comparator<FrequentSubstring>() {
+            @Override
+            public int compare(FrequentSubstring a, FrequentSubstring b) {
+                if (a.getDocumentCount() != b.getDocumentCount()) {
+                    return b.getDocumentCount() - a.getDocumentCount();
+                }
+                return a.getString().compareTo(b.getString());
+            }
+        });
+        return all.subList(0, Math.min(n, all.size()));
+    }
+
+    public void testTopSubstringsMatchBruteForce() {
+        for (long seed = 0; seed < 10; ++seed) {
+            List<String> words = randomWords(seed, 200, 15, 4);
+            SubstringAnalytics analytics = new SubstringAnalytics(buildTree(words));
+            assertEquals(bruteForceTop(words, 1, 3, 10), analytics.topSubstrings(1, 3, 10));
+            assertEquals(bruteForceTop(words, 3, 5, 50), analytics.topSubstrings(3, 5, 50));
+            assertEquals(bruteForceTop(words, 12, 20, 1000), analytics.topSubstrings(12, 20, 1000));
+        }
+    }
+
+    public void testTopSubstringsOnAnyTree() {
+        List<String> words = randomWords(7, 300, 40, 6);
+        List<FrequentSubstring> expected = bruteForceTop(words, 2, 6, 40);
+
+        GeneralizedSuffixTree limited = new GeneralizedSuffixTree(6);
+        GeneralizedSuffixTree minimized = buildTree(words);
+        for (int i = 0; i < words.size(); ++i) {
+            limited.put(words.get(i), i);
+        }
+        minimized.minimize();
+        assertEquals(expected, new SubstringAnalytics(limited).topSubstrings(2, 6, 40));
+        assertEquals(expected, new SubstringAnalytics(minimized).topSubstrings(2, 6, 40));
+        try {
+            new SubstringAnalytics(limited).topSubstrings(2, 7, 40);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testTopSubstringsMemoryBudget() {
+        List<String> words = randomWords(11, 300, 20, 5);
+        SubstringAnalytics analytics = new SubstringAnalytics(buildTree(words));
+        List<FrequentSubstring> unbounded = analytics.topSubstrings(3, 8, 100);
+
+        // room for a few walkers only
+        assertEquals(unbounded, analytics.topSubstrings(3, 8, 100, 20000));
+        try {
+            analytics.topSubstrings(3, 8, 100, 1000);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            analytics.topSubstrings(3, 2, 100);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testUnsupportedTrees() {
+        GeneralizedSuffixTree limited = new GeneralizedSuffixTree(4);
+        limited.put("banana", 0);
+        try {
+            new SubstringAnalytics(limited).maximalRepeats(1);
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        GeneralizedSuffixTree minimized = new GeneralizedSuffixTree();
+        minimized.put("banana", 0);
+        minimized.minimize();
+        try {
+            new SubstringAnalytics(minimized).maximalRepeats(1);
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import junit.framework.TestCase;
+
+public class SuffixArraysTest extends TestCase {
+
+    public void testBanana() {
+        // "banana" followed by the terminator
+        int[] text = new int[] {2, 1, 3, 1, 3, 1, 0};
+        assertTrue(Arrays.equals(new int[] {6, 5, 3, 1, 0, 4, 2}, SuffixArrays.sort(text, 4)));
+    }
+
+    public void testRandomTexts() {
+        Random random = new Random(3);
+        for (int round = 0; round < 200; ++round) {
+            int alphabet = 2 + random.nextInt(round % 2 == 0 ? 3 : 250);
+            int[] text = new int[1 + random.nextInt(300)];
+            for (int i = 0; i < text.length - 1; ++i) {
+                text[i] = 1 + random.nextInt(alphabet - 1);
+            }
+            assertTrue(Arrays.equals(naiveSort(text), SuffixArrays.sort(text, alphabet)));
+        }
+    }
+
+    public void testLcp() {
+        Random random = new Random(5);
+        for (int round = 0; round < 100; ++round) {
+            int[] text = new int[1 + random.nextInt(200)];
+            for (int i = 0; i < text.length - 1; ++i) {
+                text[i] = 1 + random.nextInt(3);
+            }
+            int[] sa = SuffixArrays.sort(text, 4);
+            int[] lcp = SuffixArrays.lcp(text, sa);
+            assertEquals(0, lcp[0]);
+            for (int i = 1; i < text.length; ++i) {
+                int h = 0;
+                while (text[sa[i - 1] + h] == text[sa[i] + h]) {
+                    h++;
+                }
+                assertEquals(h, lcp[i]);
+            }
+        }
+    }
+
+    static int[] naiveSort(final int[] text) {
+        Integer[] suffixes = new Integer[text.length];
+        for (int i = 0; i < text.length; ++i) {
+            suffixes[i] = i;
+        }
+        Arrays.sort(suffixes, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int i = a;
+                int j = b;
+                while (text[i] == text[j]) {
+                    i++;
+                    j++;
+                }
+                return text[i] - text[j];
+            }
+        });
+        int[] ret = new int[text.length];
+        for (int i = 0; i < text.length; ++i) {
+            ret[i] = suffixes[i];
+        }
+        return ret;
+    }
+}
@@ -15,6 +15,7 @@
  */
 package com.abahgat.suffixtree;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
@@ -259,6 +260,22 @@ public class SuffixTreeTest extends TestCase {
         }
     }
 
+    public void testInvalidKey() {
+        // a rejected key must not leave any of its suffixes in the tree
+        GeneralizedSuffixTree in = new GeneralizedSuffixTree();
+        in.put("world", 0);
+        assertFalse(in.isValidKey("wor\u00e9ld"));
+        try {
+            in.put("wor\u00e9ld", 1);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals(Arrays.asList(0), new ArrayList<Integer>(in.search("o")));
+        assertTrue(in.search("ld").contains(0));
+        assertFalse(in.search("wor").contains(1));
+    }
+
     public void testBananaAddition() {
         GeneralizedSuffixTree in = new GeneralizedSuffixTree();
         String[] words = new String[] {"banana", "bano", "ba"};
@@ -391,9 +408,9 @@ public class SuffixTreeTest extends TestCase {
     }
 
     private void testResultsCount(Node n) {
-        for (Edge e : n.getEdges().values()) {
+        for (Node child : n.getChildren()) {
             assertEquals(n.getData(-1).size(), n.getResultCount());
-            testResultsCount(e.getDest());
+            testResultsCount(child);
         }
     }
 
@@ -0,0 +1,106 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import static com.abahgat.suffixtree.Utils.getSubstrings;
+import static junit.framework.TestCase.assertEquals;
+
+/**
+ * Fixtures and assertions shared by the tests
+ */
+final class TestUtils {
+
+    /**
+     * Short keys that share many prefixes and suffixes
+     */
+    static final String[] WORDS = new String[] {"cacaor", "caricato", "cacato", "cacata", "caricata", "cacao", "banana"};
+    /**
+     * Longer keys, with a duplicate
+     */
+    static final String[] PLACES = new String[] {"libertypike", "franklintn", "carothersjohnhenryhouse",
+        "carothersezealhouse", "dightonma", "dightonrock", "lowgapky", "freerhouse", "bethesda", "bethesda"};
+
+    private TestUtils() {
+    }
+
+    /**
+     * Returns <tt>count</tt> random words of 1 to <tt>maxLength</tt> characters, taken from the
+     * first <tt>alphabet</tt> lowercase letters
+     */
+    static List<String> randomWords(Random random, int count, int maxLength, int alphabet) {
+        List<String> words = new ArrayList<String>();
+        for (int i = 0; i < count; ++i) {
+            StringBuilder word = new StringBuilder();
+            int length = 1 + random.nextInt(maxLength);
+            for (int j = 0; j < length; ++j) {
+                word.append((char) ('a' + random.nextInt(alphabet)));
+            }
+            words.add(word.toString());
+        }
+        return words;
+    }
+
+    static List<String> randomWords(long seed, int count, int maxLength, int alphabet) {
+        return randomWords(new Random(seed), count, maxLength, alphabet);
+    }
+
+    /**
+     * Returns a new tree where each word is stored with its position as index
+     */
+    static GeneralizedSuffixTree buildTree(String... words) {
+        return buildTree(Arrays.asList(words));
+    }
+
+    static GeneralizedSuffixTree buildTree(List<String> words) {
+        return putAll(new GeneralizedSuffixTree(), words, 0, 1);
+    }
+
+    /**
+     * Stores the words in the given tree, each group of <tt>wordsPerIndex</tt> consecutive words
+     * with the same index, starting from <tt>firstIndex</tt>
+     *
+     * @return the tree
+     */
+    static GeneralizedSuffixTree putAll(GeneralizedSuffixTree tree, List<String> words, int firstIndex, int wordsPerIndex) {
+        for (int i = 0; i < words.size(); ++i) {
+            tree.put(words.get(i), firstIndex + i / wordsPerIndex);
+        }
+        return tree;
+    }
+
+    /**
+     * Checks that both indexes return the same results for every substring of the given words
+     */
+    static void assertSameResults(SubstringIndex expected, SubstringIndex actual, List<String> words) {
+        for (String word : words) {
+            for (String s : getSubstrings(word)) {
+                assertEquals(s, new HashSet<Integer>(expected.search(s)), new HashSet<Integer>(actual.search(s)));
+                assertEquals(s, new HashSet<Integer>(expected.startsWith(s)), new HashSet<Integer>(actual.startsWith(s)));
+                assertEquals(s, new HashSet<Integer>(expected.endsWith(s)), new HashSet<Integer>(actual.endsWith(s)));
+                assertEquals(s, new HashSet<Integer>(expected.searchWord(s)), new HashSet<Integer>(actual.searchWord(s)));
+            }
+        }
+    }
+
+    static void assertSameResults(SubstringIndex expected, SubstringIndex actual, String... words) {
+        assertSameResults(expected, actual, Arrays.asList(words));
+    }
+}
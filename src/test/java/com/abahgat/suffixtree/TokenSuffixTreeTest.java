@@ -0,0 +1,201 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import junit.framework.TestCase;
+
+public class TokenSuffixTreeTest extends TestCase {
+
+    private static final String[] WORDS = {"the", "a", "connection", "to", "database", "refused",
+        "timeout", "user", "login", "failed", "from", "host", "retrying", "in", "seconds"};
+
+    private static List<String[]> randomPhrases(long seed, int count, int maxLength, int vocabulary) {
+        Random random = new Random(seed);
+        List<String[]> phrases = new ArrayList<String[]>();
+        for (int i = 0; i < count; ++i) {
+            String[] phrase = new String[1 + random.nextInt(maxLength)];
+            for (int j = 0; j < phrase.length; ++j) {
+                phrase[j] = WORDS[random.nextInt(vocabulary)];
+            }
+            phrases.add(phrase);
+        }
+        return phrases;
+    }
+
+    private static TokenSuffixTree buildTree(List<String[]> phrases) {
+        TokenSuffixTree tree = new TokenSuffixTree(new HashTokenDictionary());
+        for (int i = 0; i < phrases.size(); ++i) {
+            tree.put(phrases.get(i), i);
+        }
+        return tree;
+    }
+
+    private static int indexOf(String[] key, String[] phrase, int from) {
+        for (int i = from; i + phrase.length <= key.length; ++i) {
+            if (Arrays.equals(Arrays.copyOfRange(key, i, i + phrase.length), phrase)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void assertMatches(List<String[]> keys, TokenSuffixTree tree, String[] phrase) {
+        TreeSet<Integer> contains = new TreeSet<Integer>();
+        TreeSet<Integer> prefix = new TreeSet<Integer>();
+        TreeSet<Integer> suffix = new TreeSet<Integer>();
+        for (int i = 0; i < keys.size(); ++i) {
+            String[] key = keys.get(i);
+            if (indexOf(key, phrase, 0) >= 0) {
+                contains.add(i);
+            }
+            if (indexOf(key, phrase, 0) == 0) {
+                prefix.add(i);
+            }
+            if (key.length >= phrase.length && indexOf(key, phrase, key.length - phrase.length) >= 0) {
+                suffix.add(i);
+            }
+        }
+        String message = Arrays.toString(phrase);
+        assertEquals(message, contains, new TreeSet<Integer>(tree.search(phrase)));
+        assertEquals(message, prefix, new TreeSet<Integer>(tree.startsWith(phrase)));
+        assertEquals(message, suffix, new TreeSet<Integer>(tree.endsWith(phrase)));
+    }
+
+    public void testPhraseQueriesMatchBruteForce() {
+        for (long seed = 0; seed < 10; ++seed) {
+            // small vocabularies produce many repeated phrases, large ones wide nodes
+            int vocabulary = seed % 2 == 0 ? 3 : WORDS.length;
+            List<String[]> keys = randomPhrases(seed, 300, 10, vocabulary);
+            TokenSuffixTree tree = buildTree(keys);
+            for (String[] query : randomPhrases(seed + 100, 200, 4, vocabulary)) {
+                assertMatches(keys, tree, query);
+            }
+            for (String[] key : keys.subList(0, 20)) {
+                assertMatches(keys, tree, key);
+            }
+        }
+    }
+
+    public void testWideNodes() {
+        // more distinct tokens than the sorted layout of IntEdgeMap can hold
+        TokenSuffixTree tree = new TokenSuffixTree(new HashTokenDictionary());
+        for (int i = 0; i < 1000; ++i) {
+            tree.put(new int[] {i, i % 7, 5000 + i * 13}, i);
+        }
+        for (int i = 0; i < 1000; ++i) {
+            assertEquals(Arrays.asList(i), new ArrayList<Integer>(tree.search(new int[] {i, i % 7})));
+            assertEquals(Arrays.asList(i), new ArrayList<Integer>(tree.endsWith(new int[] {5000 + i * 13})));
+        }
+        assertEquals(1000 / 7 + 1, tree.search(new int[] {0}).size());
+        assertTrue(tree.search(new int[] {4999}).isEmpty());
+    }
+
+    public void testDictionary() {
+        TokenDictionary dictionary = new HashTokenDictionary();
+        TokenSuffixTree tree = new TokenSuffixTree(dictionary);
+        tree.put("connection to the database refused".split(" "), 0);
+        tree.put("connection to the cache refused".split(" "), 1);
+
+        assertEquals("database", dictionary.token(dictionary.lookup("database")));
+        assertEquals(TokenDictionary.NOT_FOUND, dictionary.lookup("timeout"));
+        // lookups do not add tokens
+        assertEquals(6, dictionary.size());
+
+        assertEquals(Arrays.asList(0, 1), new ArrayList<Integer>(tree.search("to", "the")));
+        assertEquals(Arrays.asList(1), new ArrayList<Integer>(tree.search("cache", "refused")));
+        assertEquals(Arrays.asList(0, 1), new ArrayList<Integer>(tree.startsWith("connection")));
+        assertTrue(tree.startsWith("to").isEmpty());
+        assertTrue(tree.search("timeout").isEmpty());
+        assertTrue(tree.search().isEmpty());
+        assertEquals(1, tree.search(new int[] {dictionary.lookup("connection")}, 1).size());
+    }
+
+    public void testFewerNodesThanCharacterTree() {
+        List<String[]> keys = randomPhrases(3, 500, 12, WORDS.length);
+        TokenSuffixTree tokens = buildTree(keys);
+        GeneralizedSuffixTree characters = new GeneralizedSuffixTree();
+        for (int i = 0; i < keys.size(); ++i) {
+            StringBuilder text = new StringBuilder();
+            for (String word : keys.get(i)) {
+                text.append(word).append(' ');
+            }
+            characters.put(text.toString().trim(), i);
+        }
+        long characterNodes = characters.getStatistics().getNodeCount();
+        assertTrue(tokens.countNodes() + " vs " + characterNodes, tokens.countNodes() * 3 < characterNodes);
+    }
+
+    public void testInvalidInput() {
+        TokenSuffixTree tree = new TokenSuffixTree(new HashTokenDictionary());
+        tree.put(new int[] {1, 2}, 5);
+        try {
+            tree.put(new int[] {1}, 4);
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        try {
+            tree.put(new int[] {-3}, 6);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        Collection<Integer> results = tree.search(new int[] {1, 2});
+        assertEquals(Arrays.asList(5), new ArrayList<Integer>(results));
+    }
+
+    public void testNegativeIds() {
+        TokenDictionary dictionary = new HashTokenDictionary();
+        TokenSuffixTree tree = new TokenSuffixTree(dictionary);
+        tree.put("foo bar".split(" "), 3);
+        // NOT_FOUND must not match the sentinel that starts every key
+        int[] phrase = {dictionary.lookup("nope"), dictionary.lookup("foo")};
+        try {
+            tree.search(phrase);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            tree.startsWith(new int[] {TokenDictionary.NOT_FOUND});
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            tree.endsWith(new int[] {dictionary.lookup("bar"), -2});
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertTrue(tree.search("nope", "foo").isEmpty());
+
+        // a rejected put does not add its tokens to the dictionary
+        try {
+            tree.put("new words".split(" "), 2);
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals(2, dictionary.size());
+    }
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+import static com.abahgat.suffixtree.TestUtils.assertSameResults;
+
+public class TreeMergeTest extends TestCase {
+
+    private final Random random = new Random(17);
+
+    private List<String> randomWords(int count) {
+        return TestUtils.randomWords(random, count, 12, 4);
+    }
+
+    private static void putAll(GeneralizedSuffixTree tree, List<String> words, int firstIndex) {
+        TestUtils.putAll(tree, words, firstIndex, 1);
+    }
+
+    public void testSameResultsAsRebuild() {
+        List<String> base = randomWords(200);
+        List<String> delta = randomWords(60);
+        GeneralizedSuffixTree merged = new GeneralizedSuffixTree();
+        putAll(merged, base, 0);
+        GeneralizedSuffixTree other = new GeneralizedSuffixTree();
+        putAll(other, delta, base.size());
+        long otherBytes = other.getStatistics().getTotalBytes();
+
+        merged.merge(other);
+        GeneralizedSuffixTree rebuilt = new GeneralizedSuffixTree();
+        putAll(rebuilt, base, 0);
+        putAll(rebuilt, delta, base.size());
+
+        List<String> all = new ArrayList<String>(base);
+        all.addAll(delta);
+        assertSameResults(rebuilt, merged, all);
+        assertEquals(rebuilt.computeCount(), merged.computeCount());
+        // the merged tree has no more nodes than the rebuilt one
+        assertEquals(rebuilt.getStatistics().getNodeCount(), merged.getStatistics().getNodeCount());
+        assertEquals(otherBytes, other.getStatistics().getTotalBytes());
+
+        // suffix links are consistent, so the merged tree can still be extended
+        List<String> more = randomWords(60);
+        putAll(merged, more, all.size());
+        putAll(rebuilt, more, all.size());
+        all.addAll(more);
+        assertSameResults(rebuilt, merged, all);
+    }
+
+    public void testInterleavedIndexes() {
+        List<String> words = randomWords(100);
+        GeneralizedSuffixTree even = new GeneralizedSuffixTree();
+        GeneralizedSuffixTree odd = new GeneralizedSuffixTree();
+        GeneralizedSuffixTree rebuilt = new GeneralizedSuffixTree();
+        for (int i = 0; i < words.size(); ++i) {
+            (i % 2 == 0 ? even : odd).put(words.get(i), i);
+            rebuilt.put(words.get(i), i);
+        }
+        even.merge(odd);
+        assertSameResults(rebuilt, even, words);
+
+        try {
+            even.put("abc", words.size() - 2);
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    public void testDepthLimited() {
+        List<String> base = randomWords(50);
+        base.add("abcdabcdabcdabcdddccbbaa");
+        List<String> delta = randomWords(20);
+        delta.add("dcbadcbadcbabcdabcdaaaaa");
+        GeneralizedSuffixTree merged = new GeneralizedSuffixTree(3);
+        putAll(merged, base, 0);
+        GeneralizedSuffixTree other = new GeneralizedSuffixTree(3);
+        putAll(other, delta, base.size());
+        merged.merge(other);
+
+        GeneralizedSuffixTree rebuilt = new GeneralizedSuffixTree();
+        putAll(rebuilt, base, 0);
+        putAll(rebuilt, delta, base.size());
+        for (String s : new String[] {"abcdabcd", "cbadcba", "ddccbbaa", "a"}) {
+            assertEquals(s, new HashSet<Integer>(rebuilt.search(s)), new HashSet<Integer>(merged.search(s)));
+        }
+    }
+
+    public void testInvalidMerges() {
+        GeneralizedSuffixTree tree = new GeneralizedSuffixTree();
+        tree.put("cacao", 0);
+        try {
+            tree.merge(tree);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            tree.merge(new GeneralizedSuffixTree(4));
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        GeneralizedSuffixTree minimized = new GeneralizedSuffixTree();
+        minimized.put("banana", 0);
+        minimized.minimize();
+        try {
+            tree.merge(minimized);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            minimized.merge(tree);
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.io.File;
+import java.util.List;
+import com.abahgat.suffixtree.TreeMetrics.Operation;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import junit.framework.TestCase;
+import static com.abahgat.suffixtree.TestUtils.WORDS;
+import static com.abahgat.suffixtree.TestUtils.buildTree;
+
+public class TreeMetricsTest extends TestCase {
+
+    public void testDisabledByDefault() {
+        GeneralizedSuffixTree in = new GeneralizedSuffixTree();
+        assertNull(in.getMetrics());
+        in.put("cacao", 0);
+        assertFalse(in.search("ca").isEmpty());
+    }
+
+    public void testLatencies() {
+        GeneralizedSuffixTree in = new GeneralizedSuffixTree();
+        TreeMetrics metrics = new TreeMetrics();
+        in.setMetrics(metrics);
+
+        for (int i = 0; i < WORDS.length; ++i) {
+            in.put(WORDS[i], i);
+        }
+        in.computeCount();
+
+        int collected = 0;
+        collected += in.search("ca").size();
+        collected += in.search("ca", 2).size();
+        collected += in.startsWith("ca").size();
+        collected += in.endsWith("to").size();
+        collected += in.searchWord("cacao").size();
+        collected += in.searchWithCount("an", -1).results.size();
+
+        assertEquals(WORDS.length, metrics.getLatency(Operation.PUT).getCount());
+        assertEquals(2, metrics.getLatency(Operation.SEARCH).getCount());
+        assertEquals(1, metrics.getLatency(Operation.STARTS_WITH).getCount());
+        assertEquals(1, metrics.getLatency(Operation.ENDS_WITH).getCount());
+        assertEquals(1, metrics.getLatency(Operation.SEARCH_WORD).getCount());
+        assertEquals(1, metrics.getLatency(Operation.SEARCH_WITH_COUNT).getCount());
+        // the subtrees hold duplicates, which are visited but not returned
+        assertTrue(metrics.getCollectedIndexes() > collected);
+        assertTrue(metrics.getNodeSplits() > 0);
+        assertTrue(metrics.getSuffixHops() > 0);
+
+        LatencyHistogram puts = metrics.getLatency(Operation.PUT);
+        assertTrue(puts.getMaxNanos() > 0);
+        assertTrue(puts.getPercentileNanos(50) <= puts.getPercentileNanos(100));
+        assertEquals(puts.getMaxNanos(), puts.getPercentileNanos(100));
+
+        in.setMetrics(null);
+        in.search("ca");
+        assertEquals(2, metrics.getLatency(Operation.SEARCH).getCount());
+
+        metrics.reset();
+        assertEquals(0, metrics.getLatency(Operation.PUT).getCount());
+        assertEquals(0, metrics.getNodeSplits());
+    }
+
+    public void testOperationsAndVisitedIndexes() {
+        GeneralizedSuffixTree in = buildTree(WORDS);
+        TreeMetrics metrics = new TreeMetrics();
+        in.setMetrics(metrics);
+
+        assertEquals(6, in.count("ca"));
+        in.searchNewest("ca", 1);
+        in.searchOldest("ca", 2);
+        in.searchOldest("a", -1);
+        assertEquals(1, metrics.getLatency(Operation.COUNT).getCount());
+        assertEquals(1, metrics.getLatency(Operation.SEARCH_NEWEST).getCount());
+        assertEquals(2, metrics.getLatency(Operation.SEARCH_OLDEST).getCount());
+        assertEquals(0, metrics.getLatency(Operation.SEARCH).getCount());
+        assertEquals(0, metrics.getLatency(Operation.SEARCH_WITH_COUNT).getCount());
+
+        // a limited search stops visiting the subtree once it has enough results
+        metrics.reset();
+        in.search("a", 1);
+        long limited = metrics.getCollectedIndexes();
+        metrics.reset();
+        int all = in.search("a").size();
+        assertTrue(limited >= 1);
+        assertTrue(limited < all);
+        assertTrue(metrics.getCollectedIndexes() >= all);
+    }
+
+    public void testHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentileNanos(99));
+        for (int i = 0; i < 99; ++i) {
+            histogram.record(1000);
+        }
+        histogram.record(1000000);
+        assertEquals(100, histogram.getCount());
+        assertEquals(1000000, histogram.getMaxNanos());
+        assertTrue(histogram.getPercentileNanos(50) >= 1000 && histogram.getPercentileNanos(50) < 2048);
+        assertTrue(histogram.getPercentileNanos(99) < 2048);
+        assertEquals(1000000, histogram.getPercentileNanos(100));
+    }
+
+    public void testSlowOperationEvents() throws Exception {
+        GeneralizedSuffixTree in = new GeneralizedSuffixTree();
+        TreeMetrics metrics = new TreeMetrics();
+        metrics.setSlowThresholdNanos(0);
+        in.setMetrics(metrics);
+
+        File dump = File.createTempFile("suffixtree", ".jfr");
+        try {
+            Recording recording = new Recording();
+            recording.enable("com.abahgat.suffixtree.SlowOperation");
+            recording.start();
+            in.put("cacao", 0);
+            in.search("ca");
+            recording.stop();
+            recording.dump(dump.toPath());
+            recording.close();
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(dump.toPath());
+            int found = 0;
+            for (RecordedEvent event : events) {
+                if ("com.abahgat.suffixtree.SlowOperation".equals(event.getEventType().getName())) {
+                    found++;
+                }
+            }
+            assertEquals(2, found);
+        } finally {
+            dump.delete();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import junit.framework.TestCase;
+import static com.abahgat.suffixtree.TestUtils.WORDS;
+import static com.abahgat.suffixtree.TestUtils.buildTree;
+
+public class TreeStatisticsTest extends TestCase {
+
+    public void testEmptyTree() {
+        TreeStatistics stats = new GeneralizedSuffixTree().getStatistics();
+        assertEquals(1, stats.getNodeCount());
+        assertEquals(0, stats.getEdgeCount());
+        assertEquals(0, stats.getLabelCharacters());
+        assertEquals(1, stats.getDepthHistogram().length);
+        assertEquals(Node.SHALLOW_SIZE, stats.getTotalBytes());
+    }
+
+    public void testShape() {
+        GeneralizedSuffixTree in = buildTree(WORDS);
+        TreeStatistics stats = in.getStatistics();
+
+        assertEquals(stats.getNodeCount() - 1, stats.getEdgeCount());
+        assertEquals(stats.getNodeCount(), stats.getLeafCount() + stats.getInternalNodeCount() + 1);
+
+        long nodes = 0;
+        long edges = 0;
+        long[] fanOut = stats.getFanOutHistogram();
+        for (int i = 0; i < fanOut.length; ++i) {
+            nodes += fanOut[i];
+            edges += i * fanOut[i];
+        }
+        assertEquals(stats.getNodeCount(), nodes);
+        assertEquals(stats.getEdgeCount(), edges);
+        assertEquals(stats.getLeafCount(), fanOut[0]);
+
+        long depthTotal = 0;
+        for (long count : stats.getDepthHistogram()) {
+            depthTotal += count;
+        }
+        assertEquals(stats.getNodeCount(), depthTotal);
+        assertEquals(1, stats.getDepthHistogram()[0]);
+
+        assertTrue(stats.getSuffixLinkCoverage() > 0 && stats.getSuffixLinkCoverage() <= 1);
+        assertEquals(stats.getNodeCount() * Node.SHALLOW_SIZE, stats.getNodeBytes());
+        assertEquals(0, stats.getEdgeBytes());
+        assertEquals(stats.getNodeBytes() + stats.getEdgeBagBytes() + stats.getEdgeBytes()
+                + stats.getLabelBytes() + stats.getDataBytes(), stats.getTotalBytes());
+    }
+
+    public void testGrowth() {
+        GeneralizedSuffixTree in = buildTree(WORDS);
+        TreeStatistics before = in.getStatistics();
+        in.put("bookkeeper", 10);
+        TreeStatistics after = in.getStatistics();
+        assertTrue(after.getNodeCount() > before.getNodeCount());
+        assertTrue(after.getLabelCharacters() > before.getLabelCharacters());
+        assertTrue(after.getPostings() > before.getPostings());
+        assertTrue(after.getTotalBytes() > before.getTotalBytes());
+    }
+
+    public void testMonitor() throws Exception {
+        GeneralizedSuffixTree in = buildTree(WORDS);
+        SuffixTreeMonitor monitor = new SuffixTreeMonitor(in);
+        ObjectName name = monitor.register("test");
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertTrue(server.isRegistered(name));
+            assertEquals(in.getStatistics().getNodeCount(), server.getAttribute(name, "NodeCount"));
+
+            in.put("bookkeeper", 10);
+            // attributes are not updated until the next refresh
+            assertEquals(monitor.getNodeCount(), server.getAttribute(name, "NodeCount"));
+            server.invoke(name, "refresh", new Object[0], new String[0]);
+            assertEquals(in.getStatistics().getNodeCount(), server.getAttribute(name, "NodeCount"));
+            assertTrue(monitor.getLastRefreshTime() > 0);
+        } finally {
+            monitor.unregister();
+        }
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    }
+
+    public void testMonitorWithPipeline() throws Exception {
+        GeneralizedSuffixTree in = new GeneralizedSuffixTree();
+        IngestPipeline pipeline = new IngestPipeline(in, 0, 16, 4);
+        SuffixTreeMonitor monitor = new SuffixTreeMonitor(pipeline);
+        for (String word : WORDS) {
+            pipeline.submit(word);
+        }
+        pipeline.flush().get();
+        monitor.refresh();
+        assertEquals(buildTree(WORDS).getStatistics().getNodeCount(), monitor.getNodeCount());
+        pipeline.close();
+    }
+
+    public void testMonitorWaitsForWriters() throws Exception {
+        GeneralizedSuffixTree in = buildTree(WORDS);
+        ReadWriteLock lock = new ReentrantReadWriteLock();
+        final SuffixTreeMonitor monitor = new SuffixTreeMonitor(in, lock.readLock());
+        lock.writeLock().lock();
+        Thread refresher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                monitor.refresh();
+            }
+        });
+        try {
+            refresher.start();
+            refresher.join(100);
+            // the snapshot is not taken while a writer holds the lock
+            assertTrue(refresher.isAlive());
+            assertEquals(0, monitor.getLastRefreshTime());
+            in.put("bookkeeper", 10);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        refresher.join();
+        assertEquals(in.getStatistics().getNodeCount(), monitor.getNodeCount());
+    }
+}
@@ -0,0 +1,161 @@
+/**
+ * Copyright 2012 Alessandro Bahgat Shehata
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.abahgat.suffixtree.server;
+
+import com.abahgat.suffixtree.GeneralizedSuffixTree;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import junit.framework.TestCase;
+
+public class SearchServerTest extends TestCase {
+
+    private ExecutorService executor;
+    private SearchServer server;
+    private URI base;
+
+    @Override
+    protected void setUp() throws IOException {
+        GeneralizedSuffixTree tree = new GeneralizedSuffixTree();
+        tree.put("cacao", 0);
+        tree.put("cacaor", 1);
+        executor = Executors.newFixedThreadPool(8);
+        server = new SearchServer(tree, 2, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), executor);
+        server.start();
+        base = URI.create("http://localhost:" + server.getAddress().getPort());
+    }
+
+    @Override
+    protected void tearDown() {
+        server.close();
+        executor.shutdown();
+    }
+
+    private HttpURLConnection open(String path) throws IOException {
+        return (HttpURLConnection) new URL(base + path).openConnection();
+    }
+
+    private static byte[] read(HttpURLConnection connection) throws IOException {
+        InputStream in = connection.getResponseCode() < 400 ? connection.getInputStream() : connection.getErrorStream();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+            out.write(buffer, 0, n);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+    private String get(String path) throws IOException {
+        HttpURLConnection connection = open(path);
+        assertEquals(path, 200, connection.getResponseCode());
+        return new String(read(connection), StandardCharsets.UTF_8);
+    }
+
+    private HttpURLConnection post(String body) throws IOException {
+        HttpURLConnection connection = open("/ingest");
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        OutputStream out = connection.getOutputStream();
+        out.write(body.getBytes(StandardCharsets.UTF_8));
+        out.close();
+        return connection;
+    }
+
+    private String ingest(String body) throws IOException {
+        HttpURLConnection connection = post(body);
+        assertEquals(200, connection.getResponseCode());
+        return new String(read(connection), StandardCharsets.UTF_8);
+    }
+
+    public void testQueries() throws IOException {
+        assertEquals("{\"count\":2,\"results\":[0,1]}", get("/search?q=cac"));
+        assertEquals("{\"count\":1,\"results\":[0]}", get("/search?q=cac&limit=1"));
+        assertEquals("{\"count\":1,\"results\":[1]}", get("/endsWith?q=or"));
+        assertEquals("{\"count\":2,\"results\":[0,1]}", get("/startsWith?q=ca"));
+        assertEquals("{\"count\":1,\"results\":[0]}", get("/searchWord?q=cacao"));
+        assertEquals("{\"count\":0,\"results\":[]}", get("/search?q=banana"));
+        assertEquals("{\"count\":2}", get("/count?q=aca"));
+
+        HttpURLConnection connection = open("/search?q=ao&format=binary");
+        DataInputStream in = new DataInputStream(connection.getInputStream());
+        assertEquals(2, in.readInt());
+        assertEquals(0, in.readInt());
+        assertEquals(1, in.readInt());
+        assertEquals(-1, in.read());
+        in.close();
+        assertEquals(8, server.getQueryCount());
+    }
+
+    public void testIngest() throws IOException {
+        assertEquals("{\"first\":2}", ingest("banana\n\nbandana\n"));
+        assertEquals("{\"first\":4}", ingest("cabana"));
+        assertEquals("{\"count\":3,\"results\":[2,3,4]}", get("/search?q=ana"));
+        assertEquals("{\"count\":1,\"results\":[3]}", get("/search?q=and"));
+    }
+
+    public void testInvalidIngest() throws IOException {
+        // no key of a rejected request is added, and no index is consumed
+        assertEquals(400, post("banana\nwor\u00e9ld\n").getResponseCode());
+        assertEquals("{\"count\":0,\"results\":[]}", get("/search?q=ban"));
+        assertEquals("{\"count\":0,\"results\":[]}", get("/search?q=wor"));
+        assertEquals("{\"count\":0}", get("/count?q=ld"));
+        assertEquals("{\"first\":2}", ingest("world"));
+    }
+
+    public void testInvalidQuery() throws IOException {
+        // a character outside of the byte range, as UTF-8
+        for (String path : new String[] {"/search", "/startsWith", "/endsWith", "/searchWord", "/count"}) {
+            assertEquals(path, 400, open(path + "?q=ca%C3%A9").getResponseCode());
+        }
+        assertEquals("{\"count\":0,\"results\":[]}", get("/search?q=%5Eb"));
+    }
+
+    public void testErrors() throws IOException {
+        assertEquals(400, open("/search").getResponseCode());
+        assertEquals(400, open("/search?q=a&limit=x").getResponseCode());
+        assertEquals(404, open("/searching?q=a").getResponseCode());
+        assertEquals(404, open("/nothing").getResponseCode());
+        assertEquals(405, open("/ingest").getResponseCode());
+        HttpURLConnection connection = open("/ingest");
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.getOutputStream().close();
+        assertEquals(400, connection.getResponseCode());
+    }
+
+    public void testLoadGenerator() throws Exception {
+        LoadGenerator generator = new LoadGenerator(base, Arrays.asList("ca", "cao", "r", "acao"), 8);
+        LoadGenerator.Report report = generator.run(400);
+        assertEquals(400, report.getRequests());
+        assertEquals(0, report.getErrors());
+        assertTrue(report.getThroughput() > 0);
+        assertTrue(report.getPercentileNanos(0.5) <= report.getPercentileNanos(0.99));
+        assertEquals(400, server.getQueryCount());
+        assertTrue(server.getCoalescedCount() < 400);
+    }
+}